@@ -0,0 +1,29 @@
+package it.unisannio.g2j.benchmarks;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Entry point of the benchmark jar: runs the benchmarks with the GC profiler, so that
+ * the report has the allocation rate ({@code gc.alloc.rate.norm}, bytes per operation)
+ * next to the throughput. The usual JMH options are accepted, e.g.
+ * {@code java -jar target/benchmarks.jar parsing -p grammar=SQL}.
+ */
+public class BenchmarkRunner {
+
+    public static void main(String[] args) throws RunnerException, CommandLineOptionException {
+        CommandLineOptions commandLine = new CommandLineOptions(args);
+        OptionsBuilder builder = new OptionsBuilder();
+        builder.parent(commandLine);
+        if (commandLine.getIncludes().isEmpty()) {
+            builder.include(PipelinePhaseBenchmarks.class.getSimpleName());
+        }
+        Options options = builder.addProfiler(GCProfiler.class).build();
+        new Runner(options).run();
+    }
+}
@@ -0,0 +1,52 @@
+package it.unisannio.g2j.benchmarks;
+
+import it.unisannio.g2j.generator.SyntheticGrammarGenerator;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Grammars used as benchmark inputs: the examples bundled with G2J
+ * ({@code Tiny}, {@code C}, {@code Python}, {@code Java}, {@code SQL}) and
+ * synthetic grammars of a given size ({@code synthetic-<rules>}), built by
+ * the {@link SyntheticGrammarGenerator}.
+ */
+final class GrammarInputs {
+
+    private static final String SYNTHETIC_PREFIX = "synthetic-";
+    private static final long SYNTHETIC_SEED = 42;
+
+    private GrammarInputs() {
+    }
+
+    /**
+     * Gets the text of a benchmark grammar
+     * @param name Name of a bundled example or {@code synthetic-<rules>}
+     * @return Grammar text
+     */
+    static String load(String name) throws IOException {
+        if (name.startsWith(SYNTHETIC_PREFIX)) {
+            return synthetic(Integer.parseInt(name.substring(SYNTHETIC_PREFIX.length())));
+        }
+        String resource = "/" + name + "_Example_Input.txt";
+        try (InputStream in = GrammarInputs.class.getResourceAsStream(resource)) {
+            if (in == null) {
+                throw new IOException("Grammatica di esempio non trovata: " + resource);
+            }
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+
+    /**
+     * Synthetic grammar with the given number of rules and the default
+     * settings of the generator, always with the same seed
+     */
+    private static String synthetic(int rules) {
+        return new SyntheticGrammarGenerator()
+                .setSeed(SYNTHETIC_SEED)
+                .setNonTerminals(rules)
+                .setTerminals(Math.max(20, rules / 10))
+                .generate();
+    }
+}
@@ -0,0 +1,103 @@
+package it.unisannio.g2j.benchmarks;
+
+import it.unisannio.g2j.analysis.FirstFollowSets;
+import it.unisannio.g2j.analysis.LookaheadAnalysis;
+import it.unisannio.g2j.emitters.GrammarEmitter;
+import it.unisannio.g2j.symbols.SymbolTable;
+import it.unisannio.g2j.visitors.AntlrVisitor;
+import it.unisannio.g2j.visitors.JavaCCVisitor;
+import it.unisannio.g2j.visitors.SemanticVisitor;
+import org.antlr.v4.runtime.CommonTokenStream;
+import org.antlr.v4.runtime.tree.ParseTree;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.Writer;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One benchmark for each phase of the G2J pipeline, in pipeline order.
+ * Run them through {@link BenchmarkRunner} to get the allocation rate as well.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PipelinePhaseBenchmarks {
+
+    @Benchmark
+    public CommonTokenStream lexing(PipelineState state) {
+        return PipelineState.lex(state.text);
+    }
+
+    @Benchmark
+    public ParseTree parsing(PipelineState state) {
+        return PipelineState.parse(state.tokens);
+    }
+
+    @Benchmark
+    public SemanticVisitor checkSemantics(PipelineState state) {
+        state.analyzedVisitor.checkSemantics();
+        return state.analyzedVisitor;
+    }
+
+    @Benchmark
+    public FirstFollowSets firstFollowSets(PipelineState state) {
+        return FirstFollowSets.of(state.analyzedVisitor.getSymbolTable());
+    }
+
+    @Benchmark
+    public SemanticVisitor eliminateLeftRecursion(PipelineState.FreshVisitor fresh) {
+        fresh.visitor.eliminateLeftRecursion();
+        return fresh.visitor;
+    }
+
+    @Benchmark
+    public SemanticVisitor eliminateRightRecursion(PipelineState.RecursionFreeVisitor recursionFree) {
+        recursionFree.visitor.eliminateRightRecursion();
+        return recursionFree.visitor;
+    }
+
+    @Benchmark
+    public SemanticVisitor inlineRules(PipelineState.RecursionFreeVisitor recursionFree) {
+        recursionFree.visitor.inlineRules();
+        return recursionFree.visitor;
+    }
+
+    @Benchmark
+    public SemanticVisitor factorizeCommonPrefixes(PipelineState.RecursionFreeVisitor recursionFree) {
+        recursionFree.visitor.factorizeCommonPrefixes();
+        return recursionFree.visitor;
+    }
+
+    @Benchmark
+    public SemanticVisitor calcMetrics(PipelineState state) {
+        state.optimizedVisitor.calcMetrics();
+        return state.optimizedVisitor;
+    }
+
+    @Benchmark
+    public LookaheadAnalysis lookaheadAnalysis(PipelineState state) {
+        return LookaheadAnalysis.of(state.optimizedGrammar);
+    }
+
+    @Benchmark
+    public SymbolTable javaCCEmitter(PipelineState state) {
+        GrammarEmitter emitter = new GrammarEmitter().addBackend(new JavaCCVisitor(Writer.nullWriter()));
+        emitter.emit(state.optimizedGrammar);
+        return emitter.getSymbolTable();
+    }
+
+    @Benchmark
+    public SymbolTable antlrEmitter(PipelineState state) {
+        GrammarEmitter emitter = new GrammarEmitter().addBackend(new AntlrVisitor(Writer.nullWriter()));
+        emitter.emit(state.optimizedGrammar);
+        return emitter.getSymbolTable();
+    }
+}
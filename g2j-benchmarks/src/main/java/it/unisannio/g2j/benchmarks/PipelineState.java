@@ -0,0 +1,136 @@
+package it.unisannio.g2j.benchmarks;
+
+import it.unisannio.g2j.G2JLexer;
+import it.unisannio.g2j.G2JParser;
+import it.unisannio.g2j.ir.GrammarIR;
+import it.unisannio.g2j.visitors.SemanticVisitor;
+import org.antlr.v4.runtime.BailErrorStrategy;
+import org.antlr.v4.runtime.CharStreams;
+import org.antlr.v4.runtime.CommonTokenStream;
+import org.antlr.v4.runtime.ListTokenSource;
+import org.antlr.v4.runtime.Token;
+import org.antlr.v4.runtime.atn.PredictionMode;
+import org.antlr.v4.runtime.misc.ParseCancellationException;
+import org.antlr.v4.runtime.tree.ParseTree;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.List;
+
+/**
+ * Input of every pipeline phase, prepared once per grammar: each benchmark
+ * only measures its own phase, starting from the output of the previous ones.
+ * <p>
+ * The console output of the phases is discarded, so that it does not mix with
+ * the JMH report (the cost of formatting it is still measured).
+ */
+@State(Scope.Benchmark)
+public class PipelineState {
+
+    @Param({"Tiny", "C", "Python", "Java", "SQL", "synthetic-100", "synthetic-1000", "synthetic-10000"})
+    public String grammar;
+
+    String text;
+    List<? extends Token> tokens;
+    ParseTree tree;
+
+    // Visitor after the semantic analysis, and after the optimization
+    SemanticVisitor analyzedVisitor;
+    SemanticVisitor optimizedVisitor;
+    GrammarIR optimizedGrammar;
+
+    private PrintStream originalOut;
+    private PrintStream originalErr;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        originalOut = System.out;
+        originalErr = System.err;
+        PrintStream discard = new PrintStream(OutputStream.nullOutputStream());
+        System.setOut(discard);
+        System.setErr(discard);
+
+        text = GrammarInputs.load(grammar);
+        tokens = lex(text).getTokens();
+        tree = parse(tokens);
+
+        analyzedVisitor = analyze(tree);
+        analyzedVisitor.checkSemantics();
+
+        optimizedVisitor = analyze(tree);
+        optimizedVisitor.checkSemantics();
+        optimizedVisitor.optimizeInput();
+        optimizedGrammar = optimizedVisitor.getOptimizedGrammar();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        System.setOut(originalOut);
+        System.setErr(originalErr);
+    }
+
+    static CommonTokenStream lex(String text) {
+        CommonTokenStream tokens = new CommonTokenStream(new G2JLexer(CharStreams.fromString(text)));
+        tokens.fill();
+        return tokens;
+    }
+
+    /**
+     * Parses like the compiler does: SLL first, full LL only if SLL fails
+     */
+    static ParseTree parse(List<? extends Token> tokens) {
+        G2JParser parser = new G2JParser(new CommonTokenStream(new ListTokenSource(tokens)));
+        parser.removeErrorListeners();
+        parser.setErrorHandler(new BailErrorStrategy());
+        parser.getInterpreter().setPredictionMode(PredictionMode.SLL);
+        try {
+            return parser.grammarFile();
+        } catch (ParseCancellationException e) {
+            parser = new G2JParser(new CommonTokenStream(new ListTokenSource(tokens)));
+            parser.removeErrorListeners();
+            return parser.grammarFile();
+        }
+    }
+
+    static SemanticVisitor analyze(ParseTree tree) {
+        SemanticVisitor visitor = new SemanticVisitor();
+        visitor.visit(tree);
+        return visitor;
+    }
+
+    /**
+     * Fresh visitor for the phases that modify it, rebuilt before every invocation
+     */
+    @State(Scope.Thread)
+    public static class FreshVisitor {
+        SemanticVisitor visitor;
+
+        @Setup(Level.Invocation)
+        public void setUp(PipelineState state) {
+            visitor = analyze(state.tree);
+            visitor.checkSemantics();
+        }
+    }
+
+    /**
+     * Visitor whose left recursion has already been removed, rebuilt before every invocation
+     */
+    @State(Scope.Thread)
+    public static class RecursionFreeVisitor {
+        SemanticVisitor visitor;
+
+        @Setup(Level.Invocation)
+        public void setUp(PipelineState state) {
+            visitor = analyze(state.tree);
+            visitor.checkSemantics();
+            visitor.eliminateLeftRecursion();
+        }
+    }
+}
@@ -1,94 +1,118 @@
 package it.unisannio.g2j;
 
-import it.unisannio.g2j.errors.CustomErrorStrategy;
-import it.unisannio.g2j.errors.CollectingErrorListener;
-import it.unisannio.g2j.visitors.AntlrVisitor;
-import it.unisannio.g2j.visitors.JavaCCVisitor;
-import it.unisannio.g2j.visitors.SemanticVisitor;
-import org.antlr.v4.runtime.*;
-import org.antlr.v4.runtime.tree.ParseTree;
-
-import java.io.FileInputStream;
-import java.io.InputStream;
-import java.util.ArrayList;
+import it.unisannio.g2j.pipeline.BatchCompiler;
+import it.unisannio.g2j.pipeline.CompilationCache;
+import it.unisannio.g2j.pipeline.CompilationResult;
+import it.unisannio.g2j.pipeline.CompilerOptions;
+import it.unisannio.g2j.pipeline.GrammarCompiler;
+import it.unisannio.g2j.pipeline.GrammarWatcher;
+import it.unisannio.g2j.pipeline.MetricsReport;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.List;
 
 public class Main {
-    public static void main(String[] args) throws Exception {
 
-        // ============= ANALISI LESSICALE, SINTATTICA E SEMANTICA DEL FILE DI INPUT =================
+    private static final String USAGE =
+            "Uso: Main [file_grammatica] [--out <dir>] [--dump-optimized] [--loops] [--incremental] [--cache-dir <dir>] [--verify-incremental] [--metrics <json|csv>]\n" +
+            "     Main --batch <directory|glob> [--out <dir>] [--jobs <n>] [--dump-optimized] [--loops] [--incremental] [--cache-dir <dir>] [--verify-incremental] [--metrics <json|csv>]\n" +
+            "     Main --watch [file_grammatica|--batch <directory|glob>] [--debounce <ms>] [altre opzioni]";
+
+    public static void main(String[] args) throws Exception {
 
         String fileName = "src/main/resources/Tiny_Example_Input.txt";
     //    String fileName = "src/main/resources/C_Example_Input.txt";
     //      String fileName = "src/main/resources/Python_Example_Input.txt";
     //    String fileName = "src/main/resources/Java_Example_Input.txt";
     //    String fileName = "src/main/resources/SQL_Example_Input.txt";
-        InputStream input = new FileInputStream(fileName);
-
-        // Crea il listener
-        CollectingErrorListener errorListener = new CollectingErrorListener();
-
-        // Lexer
-        G2JLexer lexer = new G2JLexer(CharStreams.fromStream(input));
-        lexer.removeErrorListeners();
-        lexer.addErrorListener(errorListener);
-
-        // Parser
-        CommonTokenStream tokens = new CommonTokenStream(lexer);
-        G2JParser parser = new G2JParser(tokens);
-
-        ANTLRErrorStrategy errorStrategy = new CustomErrorStrategy();
-        parser.setErrorHandler(errorStrategy);
-
-        parser.setBuildParseTree(true);
-
-        System.out.println("Inizio parsing con recovery attivato...");
-
-        // Esegui il parsing
-        ParseTree tree = parser.grammarFile();
-
-        if (errorListener.hasErrors() || CustomErrorStrategy.sintaxErrorNum > 0 ) {
-            if (errorListener.hasErrors()){
-                System.err.println("Sono stati rilevati errori durante la fase di analisi:");
-                for (String err : errorListener.getErrors()) {
-                    System.err.println(err);
-                }
+        String batchInput = null;
+        String outputDir = "output";
+        int jobs = Runtime.getRuntime().availableProcessors();
+        CompilerOptions options = new CompilerOptions();
+        boolean watch = false;
+        long debounceMillis = GrammarWatcher.DEFAULT_DEBOUNCE_MILLIS;
+
+        // Lettura degli argomenti da linea di comando
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--batch":
+                    batchInput = requireValue(args, ++i);
+                    break;
+                case "--out":
+                    outputDir = requireValue(args, ++i);
+                    break;
+                case "--jobs":
+                    jobs = Integer.parseInt(requireValue(args, ++i));
+                    break;
+                case "--dump-optimized":
+                    options.setDumpOptimizedGrammar(true);
+                    break;
+                case "--loops":
+                    options.setLeftRecursionLoops(true);
+                    break;
+                case "--incremental":
+                    if (options.getCacheDirectory() == null) {
+                        options.setCacheDirectory(Paths.get(CompilationCache.DEFAULT_DIRECTORY));
+                    }
+                    break;
+                case "--watch":
+                    watch = true;
+                    break;
+                case "--debounce":
+                    debounceMillis = Long.parseLong(requireValue(args, ++i));
+                    break;
+                case "--cache-dir":
+                    options.setCacheDirectory(Paths.get(requireValue(args, ++i)));
+                    break;
+                case "--verify-incremental":
+                    options.setVerifyIncremental(true);
+                    break;
+                case "--metrics":
+                    options.setMetricsFormat(MetricsReport.Format.of(requireValue(args, ++i)));
+                    break;
+                default:
+                    if (args[i].startsWith("--")) {
+                        System.err.println("Opzione sconosciuta: " + args[i]);
+                        System.err.println(USAGE);
+                        System.exit(2);
+                    }
+                    fileName = args[i];
             }
-            System.out.println("Parsing con recovery terminato");
-            return;
-        } else {
-            System.out.println("Parsing completato senza errori sintattici.");
         }
 
-        // Analisi semantica e ottimizzazione dell'input
-        SemanticVisitor semanticVisitor = new SemanticVisitor();
-        semanticVisitor.visit(tree);
-        semanticVisitor.checkSemantics();
-
-        semanticVisitor.optimizeInput();
+        GrammarCompiler compiler = new GrammarCompiler(options);
 
+        // ============= MODALITÀ WATCH: RICOMPILAZIONE AD OGNI MODIFICA =================
 
-        // ============= GENERAZIONE DEI FILE DI OUTPUT DALL'INPUT OTTIMIZZATO =================
-
-        String optimized_fileName = "output/optimized_input.txt";
-        InputStream optimized_input = new FileInputStream(optimized_fileName);
-        G2JLexer lexer2 = new G2JLexer(CharStreams.fromStream(optimized_input));
-        CommonTokenStream tokens2 = new CommonTokenStream(lexer2);
-        G2JParser parser2 = new G2JParser(tokens2);
-
-        ParseTree tree2 = parser2.grammarFile();
+        if (watch) {
+            new GrammarWatcher(compiler, jobs, debounceMillis)
+                    .watch(batchInput != null ? batchInput : fileName, Paths.get(outputDir));
+            return;
+        }
 
-        // Generazione dei file di specifica per JavaCC e ANTLR
-        JavaCCVisitor javaCCVisitor = new JavaCCVisitor();
-        javaCCVisitor.visit(tree2);
-        javaCCVisitor.writeOutputToFile("output/GrammarOut.jj");
+        // ============= COMPILAZIONE BATCH DI PIÙ GRAMMATICHE =================
 
-        AntlrVisitor antlrVisitor = new AntlrVisitor();
-        antlrVisitor.visit(tree2);
-        antlrVisitor.writeOutputToFile("output/GrammarOut.g4");
+        if (batchInput != null) {
+            List<CompilationResult> results = new BatchCompiler(jobs, compiler).compile(batchInput, Paths.get(outputDir));
+            boolean allSucceeded = !results.isEmpty() && results.stream().allMatch(CompilationResult::isSuccess);
+            System.exit(allSucceeded ? 0 : 1);
+        }
 
+        // ============= COMPILAZIONE DI UNA SINGOLA GRAMMATICA =================
 
-        semanticVisitor.calcMetrics();
+        Path grammarFile = Paths.get(fileName);
+        if (!compiler.compile(grammarFile, Paths.get(outputDir)).isSuccess()) {
+            System.exit(1);
+        }
+    }
 
+    private static String requireValue(String[] args, int index) {
+        if (index >= args.length) {
+            System.err.println("Valore mancante per l'opzione " + args[index - 1]);
+            System.err.println(USAGE);
+            System.exit(2);
+        }
+        return args[index];
     }
-}
\ No newline at end of file
+}
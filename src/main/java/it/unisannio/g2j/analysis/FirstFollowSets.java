@@ -0,0 +1,697 @@
+package it.unisannio.g2j.analysis;
+
+import it.unisannio.g2j.ir.Alternative;
+import it.unisannio.g2j.ir.Element;
+import it.unisannio.g2j.ir.GrammarIR;
+import it.unisannio.g2j.ir.ParserRule;
+import it.unisannio.g2j.symbols.SymbolTable;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * FIRST, FOLLOW and nullable sets of a grammar, with full support for the
+ * {@code ()}, {@code []}, {@code {}} and {@code {[ ]}} blocks.
+ * <p>
+ * Terminal sets are {@link BitSet}s indexed by terminal: terminals are numbered
+ * densely in declaration order and the end of input ({@value #END_OF_INPUT_NAME})
+ * takes the index {@link #getEndOfInput()}. The productions are encoded once as
+ * arrays of terminal and non-terminal codes and {@link SymbolTable} block opcodes.
+ * <p>
+ * The sets are computed in dependency order instead of by repeated sweeps over
+ * the whole grammar:
+ * <ul>
+ *     <li>nullable with a worklist seeded sinks first, where a rule is evaluated
+ *     again only when one of the rules it references becomes nullable;</li>
+ *     <li>FIRST and FOLLOW over the strongly connected components of their
+ *     inclusion graphs (FIRST(A) contains FIRST(B), FOLLOW(B) contains FOLLOW(A)):
+ *     the rules of a component share the same set, so every component is computed
+ *     once, after the components it includes.</li>
+ * </ul>
+ * The whole analysis is linear in the size of the grammar times the number of
+ * words of a terminal set.
+ */
+public final class FirstFollowSets {
+
+    public static final String END_OF_INPUT_NAME = "EOF";
+
+    private static final String START_SYMBOL = "<Program>";
+
+    private final List<String> terminals = new ArrayList<>();
+    private final Map<String, Integer> terminalIndexes = new HashMap<>();
+    private final List<String> nonTerminals = new ArrayList<>();
+    private final Map<String, Integer> nonTerminalIndexes = new HashMap<>();
+
+    // Productions by non-terminal index: codes up to the end of input are terminals,
+    // the following ones non-terminals (see nonTerminalCode), negative codes are block opcodes
+    private final List<List<EncodedProduction>> productions = new ArrayList<>();
+
+    private final BitSet nullable = new BitSet();
+    private BitSet[] first;
+    private BitSet[] follow;
+
+    private FirstFollowSets() {
+    }
+
+    /**
+     * Analyzes the input grammar of a symbol table, starting from &lt;Program&gt;
+     * @param symbolTable Symbol table of the input grammar
+     * @return Computed sets
+     */
+    public static FirstFollowSets of(SymbolTable symbolTable) {
+        FirstFollowSets sets = new FirstFollowSets();
+        for (String terminal : symbolTable.getOrderedTerminals()) {
+            sets.addTerminal(terminal);
+        }
+        for (String nonTerminal : symbolTable.getOrderedNonTerminals()) {
+            sets.addNonTerminal(nonTerminal);
+        }
+
+        // Symbol ID -> code of this analysis
+        int[] codes = new int[symbolTable.getIdCount()];
+        for (int id = 0; id < codes.length; id++) {
+            String name = symbolTable.getName(id);
+            codes[id] = symbolTable.isTerminal(id) ? sets.terminalIndexes.get(name)
+                    : symbolTable.isNonTerminal(id) ? sets.nonTerminalCode(sets.nonTerminalIndexes.get(name))
+                    : SymbolTable.NO_SYMBOL;
+        }
+        for (int n = 0; n < sets.nonTerminals.size(); n++) {
+            List<EncodedProduction> encoded = sets.productions.get(n);
+            for (int[] production : symbolTable.getEncodedProductions(symbolTable.getId(sets.nonTerminals.get(n)))) {
+                int[] translated = new int[production.length];
+                for (int i = 0; i < production.length; i++) {
+                    translated[i] = production[i] >= 0 ? codes[production[i]] : production[i];
+                }
+                encoded.add(new EncodedProduction(translated));
+            }
+        }
+
+        sets.compute();
+        return sets;
+    }
+
+    /**
+     * Analyzes a grammar in memory, such as the optimized grammar handed over to the emitters,
+     * starting from &lt;Program&gt;
+     * @param grammar Grammar to analyze
+     * @return Computed sets
+     */
+    public static FirstFollowSets of(GrammarIR grammar) {
+        FirstFollowSets sets = new FirstFollowSets();
+        grammar.getLexicalRules().forEach(rule -> sets.addTerminal(rule.getName()));
+        grammar.getParserRules().forEach(rule -> sets.addNonTerminal(rule.getName()));
+
+        // Terminals and non-terminals referenced without a rule
+        for (ParserRule rule : grammar.getParserRules()) {
+            for (Alternative alternative : rule.getAlternatives()) {
+                sets.addReferencedSymbols(alternative.getElements());
+            }
+        }
+        for (ParserRule rule : grammar.getParserRules()) {
+            List<EncodedProduction> encoded = sets.productions.get(sets.nonTerminalIndexes.get(rule.getName()));
+            for (Alternative alternative : rule.getAlternatives()) {
+                encoded.add(new EncodedProduction(sets.encode(alternative.getElements())));
+            }
+        }
+
+        sets.compute();
+        return sets;
+    }
+
+    // ============================== QUERY API ==============================
+
+    /**
+     * Checks if a non-terminal can derive the empty string
+     * @param nonTerminal Non-terminal name
+     * @return True if the non-terminal is nullable, false if it is not nullable or unknown
+     */
+    public boolean isNullable(String nonTerminal) {
+        Integer index = nonTerminalIndexes.get(nonTerminal);
+        return index != null && nullable.get(index);
+    }
+
+    /**
+     * Checks if an alternative can derive the empty string
+     * @param alternative Alternative of a rule of the analyzed grammar
+     * @return True if the alternative is nullable
+     */
+    public boolean isNullable(Alternative alternative) {
+        EncodedProduction production = new EncodedProduction(encode(alternative.getElements()));
+        return isNullable(production, 0, production.codes.length);
+    }
+
+    /**
+     * Gets the terminals that can start a non-terminal
+     * @param nonTerminal Non-terminal name
+     * @return Terminal indexes (a copy), empty for an unknown non-terminal
+     */
+    public BitSet getFirst(String nonTerminal) {
+        Integer index = nonTerminalIndexes.get(nonTerminal);
+        return index == null ? new BitSet() : (BitSet) first[index].clone();
+    }
+
+    /**
+     * Gets the terminals that can start an alternative
+     * @param alternative Alternative of a rule of the analyzed grammar
+     * @return Terminal indexes
+     */
+    public BitSet getFirst(Alternative alternative) {
+        EncodedProduction production = new EncodedProduction(encode(alternative.getElements()));
+        BitSet result = new BitSet();
+        addFirst(production, 0, production.codes.length, result);
+        return result;
+    }
+
+    /**
+     * Gets the terminals that can follow a non-terminal, including the end of input
+     * @param nonTerminal Non-terminal name
+     * @return Terminal indexes (a copy), empty for an unknown non-terminal
+     */
+    public BitSet getFollow(String nonTerminal) {
+        Integer index = nonTerminalIndexes.get(nonTerminal);
+        return index == null ? new BitSet() : (BitSet) follow[index].clone();
+    }
+
+    /**
+     * Gets the terminals that can start a non-terminal
+     * @param nonTerminal Non-terminal name
+     * @return Terminal names in declaration order
+     */
+    public Set<String> getFirstTerminals(String nonTerminal) {
+        return terminalNames(getFirst(nonTerminal));
+    }
+
+    /**
+     * Gets the terminals that can follow a non-terminal
+     * @param nonTerminal Non-terminal name
+     * @return Terminal names in declaration order, {@value #END_OF_INPUT_NAME} last
+     */
+    public Set<String> getFollowTerminals(String nonTerminal) {
+        return terminalNames(getFollow(nonTerminal));
+    }
+
+    /**
+     * Converts a terminal set into names
+     * @param terminalSet Terminal indexes
+     * @return Terminal names in index order
+     */
+    public Set<String> terminalNames(BitSet terminalSet) {
+        Set<String> names = new LinkedHashSet<>();
+        for (int t = terminalSet.nextSetBit(0); t >= 0; t = terminalSet.nextSetBit(t + 1)) {
+            names.add(getTerminalName(t));
+        }
+        return names;
+    }
+
+    /**
+     * Gets the index of a terminal in the terminal sets
+     * @param terminal Terminal name ({@value #END_OF_INPUT_NAME} for the end of input)
+     * @return Terminal index, or -1 if unknown
+     */
+    public int getTerminalIndex(String terminal) {
+        if (terminal.equals(END_OF_INPUT_NAME)) {
+            return getEndOfInput();
+        }
+        Integer index = terminalIndexes.get(terminal);
+        return index == null ? -1 : index;
+    }
+
+    /**
+     * Gets the terminal of an index of the terminal sets
+     * @param index Terminal index
+     * @return Terminal name
+     */
+    public String getTerminalName(int index) {
+        return index == getEndOfInput() ? END_OF_INPUT_NAME : terminals.get(index);
+    }
+
+    /**
+     * Gets the index of the end of input in the terminal sets
+     * @return Index after the last terminal
+     */
+    public int getEndOfInput() {
+        return terminals.size();
+    }
+
+    /**
+     * Gets the analyzed non-terminals
+     * @return Non-terminal names in declaration order
+     */
+    public List<String> getNonTerminals() {
+        return Collections.unmodifiableList(nonTerminals);
+    }
+
+    // ============================== ENCODING ==============================
+
+    private void addTerminal(String name) {
+        if (!name.equals(END_OF_INPUT_NAME) && !terminalIndexes.containsKey(name)) {
+            terminalIndexes.put(name, terminals.size());
+            terminals.add(name);
+        }
+    }
+
+    private void addNonTerminal(String name) {
+        if (!nonTerminalIndexes.containsKey(name)) {
+            nonTerminalIndexes.put(name, nonTerminals.size());
+            nonTerminals.add(name);
+            productions.add(new ArrayList<>());
+        }
+    }
+
+    private void addReferencedSymbols(List<Element> elements) {
+        for (Element element : elements) {
+            switch (element.getKind()) {
+                case TERMINAL:
+                    addTerminal(element.getName());
+                    break;
+                case NON_TERMINAL:
+                    addNonTerminal(element.getName());
+                    break;
+                default:
+                    addReferencedSymbols(element.getChildren());
+            }
+        }
+    }
+
+    /**
+     * Encodes a sequence of elements; must be called after all the terminals have been added
+     */
+    private int[] encode(List<Element> elements) {
+        List<Integer> codes = new ArrayList<>();
+        encode(elements, codes);
+        int[] result = new int[codes.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = codes.get(i);
+        }
+        return result;
+    }
+
+    private void encode(List<Element> elements, List<Integer> codes) {
+        for (Element element : elements) {
+            switch (element.getKind()) {
+                case TERMINAL:
+                    Integer terminal = terminalIndexes.get(element.getName());
+                    codes.add(terminal != null ? terminal : getEndOfInput());
+                    break;
+                case NON_TERMINAL:
+                    Integer nonTerminal = nonTerminalIndexes.get(element.getName());
+                    codes.add(nonTerminal != null ? nonTerminalCode(nonTerminal) : SymbolTable.NO_SYMBOL);
+                    break;
+                case GROUPING:
+                    codes.add(SymbolTable.GROUP_OPEN);
+                    encode(element.getChildren(), codes);
+                    codes.add(SymbolTable.GROUP_CLOSE);
+                    break;
+                case OPTIONALITY:
+                    codes.add(SymbolTable.OPTIONAL_OPEN);
+                    encode(element.getChildren(), codes);
+                    codes.add(SymbolTable.OPTIONAL_CLOSE);
+                    break;
+                case REPETIVITY:
+                    codes.add(SymbolTable.REPEAT_OPEN);
+                    encode(element.getChildren(), codes);
+                    codes.add(SymbolTable.REPEAT_CLOSE);
+                    break;
+                case REP_OPT:
+                    codes.add(SymbolTable.REPEAT_OPEN);
+                    codes.add(SymbolTable.OPTIONAL_OPEN);
+                    encode(element.getChildren(), codes);
+                    codes.add(SymbolTable.OPTIONAL_CLOSE);
+                    codes.add(SymbolTable.REPEAT_CLOSE);
+                    break;
+            }
+        }
+    }
+
+    // ============================== ANALYSIS ==============================
+
+    private void compute() {
+        computeNullable();
+        computeFirst();
+        computeFollow();
+    }
+
+    /**
+     * Worklist over the non-terminals, seeded sinks first: a non-terminal is evaluated
+     * again only when a non-terminal it references becomes nullable
+     */
+    private void computeNullable() {
+        int count = nonTerminals.size();
+        IntList[] referencedBy = new IntList[count];
+        int[][] references = new int[count][];
+        int[] lastReferrer = new int[count];
+        Arrays.fill(lastReferrer, -1);
+        for (int n = 0; n < count; n++) {
+            referencedBy[n] = new IntList();
+        }
+        for (int n = 0; n < count; n++) {
+            IntList referenced = new IntList();
+            for (EncodedProduction production : productions.get(n)) {
+                for (int code : production.codes) {
+                    // Every reference once per rule
+                    if (isNonTerminalCode(code) && lastReferrer[nonTerminalOf(code)] != n) {
+                        lastReferrer[nonTerminalOf(code)] = n;
+                        referenced.add(nonTerminalOf(code));
+                        referencedBy[nonTerminalOf(code)].add(n);
+                    }
+                }
+            }
+            references[n] = referenced.toArray();
+        }
+
+        int[] worklist = new int[count];
+        int head = 0;
+        int size = 0;
+        BitSet queued = new BitSet(count);
+        for (int[] component : StronglyConnectedComponents.compute(references)) {
+            for (int n : component) {
+                worklist[size++] = n;
+                queued.set(n);
+            }
+        }
+
+        // Circular queue: a non-terminal is queued at most once at a time
+        while (size > 0) {
+            int n = worklist[head];
+            head = (head + 1) % count;
+            size--;
+            queued.clear(n);
+            if (nullable.get(n) || !hasNullableProduction(n)) {
+                continue;
+            }
+            nullable.set(n);
+            IntList dependents = referencedBy[n];
+            for (int i = 0; i < dependents.size; i++) {
+                int dependent = dependents.items[i];
+                if (!nullable.get(dependent) && !queued.get(dependent)) {
+                    worklist[(head + size) % count] = dependent;
+                    size++;
+                    queued.set(dependent);
+                }
+            }
+        }
+    }
+
+    private boolean hasNullableProduction(int nonTerminal) {
+        for (EncodedProduction production : productions.get(nonTerminal)) {
+            if (isNullable(production, 0, production.codes.length)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * FIRST(A) is the union of the terminals that start its productions and of FIRST(B)
+     * for every B that can start them: solved over the components of the A -&gt; B graph
+     */
+    private void computeFirst() {
+        int count = nonTerminals.size();
+        BitSet[] local = new BitSet[count];
+        IntList[] includes = new IntList[count];
+        for (int n = 0; n < count; n++) {
+            local[n] = new BitSet();
+            includes[n] = new IntList();
+            for (EncodedProduction production : productions.get(n)) {
+                collectFirst(production, 0, production.codes.length, local[n], includes[n]);
+            }
+        }
+
+        first = new BitSet[count];
+        solve(includes, local, first);
+    }
+
+    /**
+     * FOLLOW(B) is the union of the terminals that can come after B in a production and
+     * of FOLLOW(A) for every rule A that can end with B: solved over the components of the
+     * B -&gt; A graph
+     */
+    private void computeFollow() {
+        int count = nonTerminals.size();
+        BitSet[] local = new BitSet[count];
+        IntList[] includes = new IntList[count];
+        for (int n = 0; n < count; n++) {
+            local[n] = new BitSet();
+            includes[n] = new IntList();
+        }
+        Integer start = nonTerminalIndexes.get(START_SYMBOL);
+        if (start != null) {
+            local[start].set(getEndOfInput());
+        }
+
+        for (int n = 0; n < count; n++) {
+            for (EncodedProduction production : productions.get(n)) {
+                Trailer trailer = new Trailer();
+                trailer.reachesEnd = true;
+                collectFollow(n, production, 0, production.codes.length, trailer, local, includes);
+            }
+        }
+
+        follow = new BitSet[count];
+        solve(includes, local, follow);
+    }
+
+    /**
+     * Solves set[n] = local[n] + the union of set[m] for every m in includes[n], one component at a time
+     */
+    private void solve(IntList[] includes, BitSet[] local, BitSet[] result) {
+        int[][] successors = new int[includes.length][];
+        for (int n = 0; n < includes.length; n++) {
+            successors[n] = includes[n].toArray();
+        }
+
+        // Components come sinks first, so the sets of the included components are already final
+        for (int[] component : StronglyConnectedComponents.compute(successors)) {
+            BitSet set = new BitSet();
+            for (int n : component) {
+                set.or(local[n]);
+                for (int included : successors[n]) {
+                    if (result[included] != null) {
+                        set.or(result[included]);
+                    }
+                }
+            }
+            for (int n : component) {
+                result[n] = set;
+            }
+        }
+    }
+
+    /**
+     * Checks if codes[from, to) can derive the empty string with the current nullable set
+     */
+    private boolean isNullable(EncodedProduction production, int from, int to) {
+        int[] codes = production.codes;
+        for (int i = from; i < to; i++) {
+            int code = codes[i];
+            if (code == SymbolTable.NO_SYMBOL) {
+                continue;
+            }
+            if (code >= 0) {
+                if (!isNonTerminalCode(code) || !nullable.get(nonTerminalOf(code))) {
+                    return false;
+                }
+                continue;
+            }
+            int close = production.partner[i];
+            if (code != SymbolTable.OPTIONAL_OPEN && !isNullable(production, i + 1, close)) {
+                return false;
+            }
+            i = close;
+        }
+        return true;
+    }
+
+    /**
+     * Adds to terminalSet the terminals that can start codes[from, to), with the final FIRST sets
+     * @return True if the sequence is nullable
+     */
+    private boolean addFirst(EncodedProduction production, int from, int to, BitSet terminalSet) {
+        int[] codes = production.codes;
+        for (int i = from; i < to; i++) {
+            int code = codes[i];
+            if (code == SymbolTable.NO_SYMBOL) {
+                continue;
+            }
+            if (code >= 0) {
+                if (!isNonTerminalCode(code)) {
+                    terminalSet.set(code);
+                    return false;
+                }
+                int n = nonTerminalOf(code);
+                terminalSet.or(first[n]);
+                if (!nullable.get(n)) {
+                    return false;
+                }
+                continue;
+            }
+            int close = production.partner[i];
+            boolean blockNullable = addFirst(production, i + 1, close, terminalSet);
+            if (code != SymbolTable.OPTIONAL_OPEN && !blockNullable) {
+                return false;
+            }
+            i = close;
+        }
+        return true;
+    }
+
+    /**
+     * Like addFirst, but collects the non-terminals that can start the sequence instead of their FIRST sets
+     */
+    private boolean collectFirst(EncodedProduction production, int from, int to, BitSet terminalSet,
+                                 IntList startNonTerminals) {
+        int[] codes = production.codes;
+        for (int i = from; i < to; i++) {
+            int code = codes[i];
+            if (code == SymbolTable.NO_SYMBOL) {
+                continue;
+            }
+            if (code >= 0) {
+                if (!isNonTerminalCode(code)) {
+                    terminalSet.set(code);
+                    return false;
+                }
+                int n = nonTerminalOf(code);
+                startNonTerminals.add(n);
+                if (!nullable.get(n)) {
+                    return false;
+                }
+                continue;
+            }
+            int close = production.partner[i];
+            boolean blockNullable = collectFirst(production, i + 1, close, terminalSet, startNonTerminals);
+            if (code != SymbolTable.OPTIONAL_OPEN && !blockNullable) {
+                return false;
+            }
+            i = close;
+        }
+        return true;
+    }
+
+    /**
+     * Walks codes[from, to) right to left. On entry the trailer describes what can follow
+     * position to, on exit what can follow position from.
+     */
+    private void collectFollow(int owner, EncodedProduction production, int from, int to, Trailer trailer,
+                               BitSet[] local, IntList[] includes) {
+        int[] codes = production.codes;
+        for (int i = to - 1; i >= from; i--) {
+            int code = codes[i];
+            if (code == SymbolTable.NO_SYMBOL) {
+                continue;
+            }
+            if (code >= 0) {
+                if (!isNonTerminalCode(code)) {
+                    trailer.terminals.clear();
+                    trailer.terminals.set(code);
+                    trailer.reachesEnd = false;
+                    continue;
+                }
+                int n = nonTerminalOf(code);
+                local[n].or(trailer.terminals);
+                if (trailer.reachesEnd) {
+                    includes[n].add(owner);
+                }
+                if (!nullable.get(n)) {
+                    trailer.terminals.clear();
+                    trailer.reachesEnd = false;
+                }
+                trailer.terminals.or(first[n]);
+                continue;
+            }
+
+            // Closing delimiter: the block goes from its opening delimiter to i
+            int open = production.partner[i];
+            switch (codes[open]) {
+                case SymbolTable.OPTIONAL_OPEN: {
+                    // The block can be skipped: what follows it can also follow what precedes it
+                    BitSet skipped = (BitSet) trailer.terminals.clone();
+                    boolean skippedReachesEnd = trailer.reachesEnd;
+                    collectFollow(owner, production, open + 1, i, trailer, local, includes);
+                    trailer.terminals.or(skipped);
+                    trailer.reachesEnd |= skippedReachesEnd;
+                    break;
+                }
+                case SymbolTable.REPEAT_OPEN:
+                    // The end of an iteration can be followed by the start of the next one
+                    addFirst(production, open + 1, i, trailer.terminals);
+                    collectFollow(owner, production, open + 1, i, trailer, local, includes);
+                    break;
+                default:
+                    collectFollow(owner, production, open + 1, i, trailer, local, includes);
+            }
+            i = open;
+        }
+    }
+
+    private int nonTerminalCode(int nonTerminal) {
+        return getEndOfInput() + 1 + nonTerminal;
+    }
+
+    private int nonTerminalOf(int code) {
+        return code - getEndOfInput() - 1;
+    }
+
+    private boolean isNonTerminalCode(int code) {
+        return code > getEndOfInput();
+    }
+
+    /**
+     * Encoded production, with the position of the matching delimiter of every block delimiter
+     */
+    private static final class EncodedProduction {
+        private final int[] codes;
+        private final int[] partner;
+
+        private EncodedProduction(int[] codes) {
+            this.codes = codes;
+            this.partner = new int[codes.length];
+            int[] open = new int[codes.length];
+            int depth = 0;
+            for (int i = 0; i < codes.length; i++) {
+                if (codes[i] == SymbolTable.GROUP_OPEN || codes[i] == SymbolTable.OPTIONAL_OPEN
+                        || codes[i] == SymbolTable.REPEAT_OPEN) {
+                    open[depth++] = i;
+                } else if (SymbolTable.isOpcode(codes[i])) {
+                    int opening = open[--depth];
+                    partner[opening] = i;
+                    partner[i] = opening;
+                }
+            }
+        }
+    }
+
+    /**
+     * Growable list of ints
+     */
+    private static final class IntList {
+        private int[] items = new int[4];
+        private int size;
+
+        private void add(int item) {
+            if (size == items.length) {
+                items = Arrays.copyOf(items, size * 2);
+            }
+            items[size++] = item;
+        }
+
+        private int[] toArray() {
+            return Arrays.copyOf(items, size);
+        }
+    }
+
+    /**
+     * What can follow a position of a production: the terminals, and whether the end of the rule
+     */
+    private static final class Trailer {
+        private final BitSet terminals = new BitSet();
+        private boolean reachesEnd;
+    }
+}
@@ -0,0 +1,190 @@
+package it.unisannio.g2j.analysis;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Size and complexity metrics of a set of productions, computed with a single
+ * visit of every production:
+ * <ul>
+ *     <li>number of non-terminals, terminals and productions;</li>
+ *     <li>unit productions, with exactly one symbol on the right-hand side;</li>
+ *     <li>RHS max and mean, the largest and the average number of symbols on the
+ *     right-hand side, without the delimiters of the EBNF blocks;</li>
+ *     <li>ALT, the average number of alternatives per non-terminal;</li>
+ *     <li>McCabe complexity: 1, plus 1 for every alternative beyond the first of a
+ *     rule and for every block {@code []}, {@code {}} and {@code {[ ]}}.</li>
+ * </ul>
+ */
+public final class GrammarMetrics {
+
+    private final int nonTerminalCount;
+    private final int terminalCount;
+    private final int productionCount;
+    private final int unitProductionCount;
+    private final int rhsMax;
+    private final long rhsSymbolCount;
+    private final int mcCabeComplexity;
+
+    private GrammarMetrics(int nonTerminalCount, int terminalCount, int productionCount, int unitProductionCount,
+                           int rhsMax, long rhsSymbolCount, int mcCabeComplexity) {
+        this.nonTerminalCount = nonTerminalCount;
+        this.terminalCount = terminalCount;
+        this.productionCount = productionCount;
+        this.unitProductionCount = unitProductionCount;
+        this.rhsMax = rhsMax;
+        this.rhsSymbolCount = rhsSymbolCount;
+        this.mcCabeComplexity = mcCabeComplexity;
+    }
+
+    /**
+     * Computes the metrics of a set of productions
+     * @param productions      Productions by rule, as symbols and delimiters
+     * @param nonTerminalCount Number of non-terminals of the grammar
+     * @param terminalCount    Number of terminals of the grammar
+     * @return Metrics of the productions
+     */
+    public static GrammarMetrics compute(Map<String, List<List<String>>> productions,
+                                         int nonTerminalCount, int terminalCount) {
+        int productionCount = 0;
+        int unitProductionCount = 0;
+        int rhsMax = 0;
+        long rhsSymbolCount = 0;
+        int complexity = 1;
+
+        for (List<List<String>> rule : productions.values()) {
+            if (rule == null) {
+                continue;
+            }
+            productionCount += rule.size();
+            if (rule.size() > 1) {
+                complexity += rule.size() - 1;
+            }
+
+            for (List<String> production : rule) {
+                int symbols = 0;
+                // Blocks still open, a closing delimiter without its opening one is not counted
+                int openRepeatedOptionals = 0;
+                int openOptionals = 0;
+                int openRepetitions = 0;
+
+                for (int i = 0; i < production.size(); i++) {
+                    String current = production.get(i);
+                    boolean hasNext = i < production.size() - 1;
+
+                    if (hasNext && current.equals("{") && production.get(i + 1).equals("[")) {
+                        openRepeatedOptionals++;
+                        i++;
+                    } else if (hasNext && current.equals("]") && production.get(i + 1).equals("}")) {
+                        if (openRepeatedOptionals > 0) {
+                            complexity++;
+                            openRepeatedOptionals--;
+                        }
+                        i++;
+                    } else if (current.equals("[")) {
+                        openOptionals++;
+                    } else if (current.equals("]")) {
+                        if (openOptionals > 0) {
+                            complexity++;
+                            openOptionals--;
+                        }
+                    } else if (current.equals("{")) {
+                        openRepetitions++;
+                    } else if (current.equals("}")) {
+                        if (openRepetitions > 0) {
+                            complexity++;
+                            openRepetitions--;
+                        }
+                    } else if (!current.equals("(") && !current.equals(")")) {
+                        symbols++;
+                        // Optional symbol with attached delimiters, as in the optimized rules
+                        if (current.startsWith("[") && current.endsWith("]")) {
+                            complexity++;
+                        }
+                    }
+                }
+
+                if (symbols == 1) {
+                    unitProductionCount++;
+                }
+                rhsMax = Math.max(rhsMax, symbols);
+                rhsSymbolCount += symbols;
+            }
+        }
+
+        return new GrammarMetrics(nonTerminalCount, terminalCount, productionCount, unitProductionCount,
+                rhsMax, rhsSymbolCount, complexity);
+    }
+
+    /**
+     * Gets the number of non-terminals
+     * @return Number of non-terminals
+     */
+    public int getNonTerminalCount() {
+        return nonTerminalCount;
+    }
+
+    /**
+     * Gets the number of terminals
+     * @return Number of terminals
+     */
+    public int getTerminalCount() {
+        return terminalCount;
+    }
+
+    /**
+     * Gets the number of productions, one for every alternative of every rule
+     * @return Number of productions
+     */
+    public int getProductionCount() {
+        return productionCount;
+    }
+
+    /**
+     * Gets the number of productions with exactly one symbol on the right-hand side
+     * @return Number of unit productions
+     */
+    public int getUnitProductionCount() {
+        return unitProductionCount;
+    }
+
+    /**
+     * Gets the largest number of symbols on the right-hand side of a production
+     * @return RHS max
+     */
+    public int getRhsMax() {
+        return rhsMax;
+    }
+
+    /**
+     * Gets the total number of symbols on the right-hand side of all the productions
+     * @return Number of RHS symbols
+     */
+    public long getRhsSymbolCount() {
+        return rhsSymbolCount;
+    }
+
+    /**
+     * Gets the average number of symbols on the right-hand side of a production
+     * @return RHS mean, NaN if there are no productions
+     */
+    public double getRhsMean() {
+        return (double) rhsSymbolCount / productionCount;
+    }
+
+    /**
+     * Gets the average number of alternatives per non-terminal
+     * @return ALT, NaN if there are no non-terminals
+     */
+    public double getAlt() {
+        return (double) productionCount / nonTerminalCount;
+    }
+
+    /**
+     * Gets the McCabe complexity of the productions
+     * @return McCabe complexity
+     */
+    public int getMcCabeComplexity() {
+        return mcCabeComplexity;
+    }
+}
@@ -0,0 +1,74 @@
+package it.unisannio.g2j.analysis;
+
+import it.unisannio.g2j.ir.Element;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Lookahead needed by a choice point of the grammar to pick the right way:
+ * either a bounded number of tokens, or a syntactic lookahead that tries the
+ * whole expansion of the way to take.
+ */
+public final class Lookahead {
+
+    private final int depth;
+    private final List<Element> expansion;
+
+    private Lookahead(int depth, List<Element> expansion) {
+        this.depth = depth;
+        this.expansion = expansion;
+    }
+
+    /**
+     * Creates a lookahead of a bounded number of tokens
+     * @param depth Number of tokens (1 only to take a conflicting way greedily, it is the default of the parsers)
+     */
+    static Lookahead bounded(int depth) {
+        return new Lookahead(depth, null);
+    }
+
+    /**
+     * Creates a syntactic lookahead
+     * @param expansion Elements to try before taking the way
+     */
+    static Lookahead syntactic(List<Element> expansion) {
+        return new Lookahead(0, Collections.unmodifiableList(expansion));
+    }
+
+    /**
+     * Checks if the lookahead tries a whole expansion instead of a bounded number of tokens
+     * @return True for a syntactic lookahead
+     */
+    public boolean isSyntactic() {
+        return expansion != null;
+    }
+
+    /**
+     * Gets the number of tokens of a bounded lookahead
+     * @return Number of tokens, 0 for a syntactic lookahead
+     */
+    public int getDepth() {
+        return depth;
+    }
+
+    /**
+     * Gets the expansion tried by a syntactic lookahead
+     * @return Elements of the way to take, null for a bounded lookahead
+     */
+    public List<Element> getExpansion() {
+        return expansion;
+    }
+
+    /**
+     * Renders the lookahead in the G2J EBNF notation, e.g. {@code 2} or {@code ( ID ASSIGNMENT )}
+     */
+    @Override
+    public String toString() {
+        if (!isSyntactic()) {
+            return String.valueOf(depth);
+        }
+        return "( " + expansion.stream().map(Element::toString).collect(Collectors.joining(" ")) + " )";
+    }
+}
@@ -0,0 +1,796 @@
+package it.unisannio.g2j.analysis;
+
+import it.unisannio.g2j.ir.Alternative;
+import it.unisannio.g2j.ir.Element;
+import it.unisannio.g2j.ir.ElementKind;
+import it.unisannio.g2j.ir.GrammarIR;
+import it.unisannio.g2j.ir.ParserRule;
+import it.unisannio.g2j.ir.PrecedenceChain;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.IntFunction;
+import java.util.function.Supplier;
+
+/**
+ * LL(k) analysis of the choice points of a grammar, for the parser generators
+ * that decide with a fixed lookahead (JavaCC): the alternatives of a rule and
+ * the {@code []}, {@code {}} and {@code {[ ]}} blocks, where the parser either
+ * enters the block or leaves it.
+ * <p>
+ * Like the generated parsers, the ways of a choice point are tried in order: a way
+ * is taken when the next tokens match the start of its own expansion, so it must
+ * be told apart from the input of all the following ways, what follows the choice
+ * point included. For every way the analysis looks for the minimal k, up to
+ * {@value #MAX_DEPTH}, that separates its FIRST_k strings from the FIRST_k strings
+ * of the following ways; one token needs no hint. When no bounded k is enough the
+ * way gets a syntactic lookahead on its whole expansion, unless no lookahead can
+ * tell it apart: when the way ends before the tokens that would, or when all its
+ * inputs are inputs of the following ways too (the dangling else), the way is taken
+ * greedily with an explicit bounded lookahead and the conflict is reported.
+ * <p>
+ * FIRST_1 and FOLLOW_1 come from {@link FirstFollowSets}; the strings of k &gt; 1
+ * tokens are computed only for the choice points that one token does not decide,
+ * memoized by non-terminal and length, iterating over the recursive cycles until
+ * they are stable.
+ */
+public final class LookaheadAnalysis {
+
+    public static final int MAX_DEPTH = 3;
+
+    private static final String START_SYMBOL = "<Program>";
+
+    // Beyond these limits the strings of a set are not enumerated and the set conflicts with everything
+    private static final int MAX_STRINGS = 4096;
+    private static final int MAX_NESTING = 500;
+
+    // A token string is packed in a long: its length in the lowest bits, then one symbol every SYMBOL_BITS bits
+    private static final int LENGTH_BITS = 2;
+    private static final int SYMBOL_BITS = 20;
+    private static final long EMPTY_STRING = 0L;
+
+    private final FirstFollowSets sets;
+    private final Set<String> analyzedNonTerminals;
+    private final int endOfInput;
+
+    // Productions by non-terminal, with the precedence chains written as primary {[ operator primary ]}
+    private final Map<String, List<List<Element>>> productions = new HashMap<>();
+    private final Map<String, Integer> nonTerminalIndexes = new HashMap<>();
+    // Positions that follow every reference to a non-terminal
+    private final Map<String, List<Frame>> occurrences = new HashMap<>();
+
+    private final Map<Object, Lookahead> lookaheads = new IdentityHashMap<>();
+    private final List<String> syntacticRules = new ArrayList<>();
+    private final List<String> unresolvedRules = new ArrayList<>();
+    private int decisions;
+    private int boundedDecisions;
+
+    // Memoized FIRST_k and FOLLOW_k sets, and the state of the cycle iteration
+    private final Map<Long, Entry> memo = new HashMap<>();
+    private final List<Long> provisional = new ArrayList<>();
+    private int inProgress;
+    private int lowLink = Integer.MAX_VALUE;
+    private int changes;
+
+    private LookaheadAnalysis(FirstFollowSets sets) {
+        this.sets = sets;
+        this.analyzedNonTerminals = new HashSet<>(sets.getNonTerminals());
+        this.endOfInput = sets.getEndOfInput();
+        if (endOfInput >= 1 << SYMBOL_BITS) {
+            throw new IllegalArgumentException("Troppi terminali per l'analisi del lookahead: " + endOfInput);
+        }
+    }
+
+    /**
+     * Analyzes the choice points of a grammar in memory, such as the optimized grammar
+     * handed over to the emitters, starting from &lt;Program&gt;
+     * @param grammar Grammar to analyze
+     * @return Lookahead of every choice point
+     */
+    public static LookaheadAnalysis of(GrammarIR grammar) {
+        LookaheadAnalysis analysis = new LookaheadAnalysis(FirstFollowSets.of(grammar));
+        for (ParserRule rule : grammar.getParserRules()) {
+            analysis.addRule(rule);
+        }
+        for (ParserRule rule : grammar.getParserRules()) {
+            // The chains are rendered with their own operator-precedence lookahead
+            if (rule.getPrecedenceChain() == null) {
+                analysis.analyzeRule(rule);
+            }
+        }
+        return analysis;
+    }
+
+    // ============================== QUERY API ==============================
+
+    /**
+     * Gets the lookahead needed to take an alternative of a rule
+     * @param alternative Alternative of a rule of the analyzed grammar
+     * @return Lookahead, or null if the next token is enough
+     */
+    public Lookahead getLookahead(Alternative alternative) {
+        return lookaheads.get(alternative);
+    }
+
+    /**
+     * Gets the lookahead needed to enter a [], {} or {[ ]} block (again)
+     * @param block Block of the analyzed grammar
+     * @return Lookahead, or null if the next token is enough
+     */
+    public Lookahead getLookahead(Element block) {
+        return lookaheads.get(block);
+    }
+
+    /**
+     * Gets the number of analyzed choice points
+     * @return Number of ways that must be told apart from the following ones
+     */
+    public int getDecisionCount() {
+        return decisions;
+    }
+
+    /**
+     * Gets the number of choice points that need a bounded lookahead of more than one token
+     * @return Number of bounded lookaheads
+     */
+    public int getBoundedLookaheadCount() {
+        return boundedDecisions;
+    }
+
+    /**
+     * Gets the rules of the choice points that need a syntactic lookahead
+     * @return Rule names, once per choice point, in grammar order
+     */
+    public List<String> getSyntacticLookaheadRules() {
+        return Collections.unmodifiableList(syntacticRules);
+    }
+
+    /**
+     * Gets the rules of the choice points that no lookahead on the way to take can decide
+     * @return Rule names, once per choice point, in grammar order
+     */
+    public List<String> getUnresolvedConflictRules() {
+        return Collections.unmodifiableList(unresolvedRules);
+    }
+
+    // ============================== GRAMMAR ==============================
+
+    private void addRule(ParserRule rule) {
+        String name = rule.getName();
+        List<List<Element>> alternatives = new ArrayList<>();
+        PrecedenceChain chain = rule.getPrecedenceChain();
+        if (chain == null) {
+            for (Alternative alternative : rule.getAlternatives()) {
+                alternatives.add(alternative.getElements());
+            }
+        } else {
+            // chain ::= primary {[ operators primary ]}, operators ::= OP1 | OP2 | ...
+            String operatorsName = name + "#operators";
+            List<List<Element>> operators = new ArrayList<>();
+            for (List<String> levelOperators : chain.getOperators()) {
+                for (String operator : levelOperators) {
+                    operators.add(Collections.singletonList(Element.terminal(operator)));
+                }
+            }
+            addProductions(operatorsName, operators);
+            alternatives.add(Arrays.asList(Element.nonTerminal(chain.getPrimary()),
+                    Element.block(ElementKind.REP_OPT, Arrays.asList(
+                            Element.nonTerminal(operatorsName), Element.nonTerminal(chain.getPrimary())))));
+        }
+        addProductions(name, alternatives);
+    }
+
+    private void addProductions(String name, List<List<Element>> alternatives) {
+        productions.put(name, alternatives);
+        nonTerminalIndexes.put(name, nonTerminalIndexes.size());
+        for (List<Element> elements : alternatives) {
+            addOccurrences(name, elements, null, null);
+        }
+    }
+
+    private void addOccurrences(String rule, List<Element> elements, Element repetition, Frame outer) {
+        for (int i = 0; i < elements.size(); i++) {
+            Element element = elements.get(i);
+            if (element.getKind() == ElementKind.NON_TERMINAL) {
+                occurrences.computeIfAbsent(element.getName(), k -> new ArrayList<>())
+                        .add(new Frame(rule, elements, i + 1, repetition, outer));
+            } else if (!element.isSymbol()) {
+                addOccurrences(rule, element.getChildren(), isRepetition(element) ? element : null,
+                        new Frame(rule, elements, i + 1, repetition, outer));
+            }
+        }
+    }
+
+    // ============================== CHOICE POINTS ==============================
+
+    private void analyzeRule(ParserRule rule) {
+        String name = rule.getName();
+        List<Alternative> alternatives = rule.getAlternatives();
+        for (int i = 0; i + 1 < alternatives.size(); i++) {
+            List<Alternative> following = alternatives.subList(i + 1, alternatives.size());
+            decide(name, alternatives.get(i), alternatives.get(i).getElements(), depth -> {
+                TokenStrings strings = new TokenStrings();
+                for (Alternative alternative : following) {
+                    strings.addAll(firstOfRest(new Frame(name, alternative.getElements(), 0, null, null), depth));
+                }
+                return strings;
+            });
+        }
+        for (Alternative alternative : alternatives) {
+            analyzeBlocks(name, alternative.getElements(), null, null);
+        }
+    }
+
+    private void analyzeBlocks(String rule, List<Element> elements, Element repetition, Frame outer) {
+        for (int i = 0; i < elements.size(); i++) {
+            Element element = elements.get(i);
+            if (element.isSymbol()) {
+                continue;
+            }
+            Frame after = new Frame(rule, elements, i + 1, repetition, outer);
+            if (element.getKind() != ElementKind.GROUPING) {
+                // Entering the block competes with what follows it
+                decide(rule, element, element.getChildren(), depth -> firstOfRest(after, depth));
+            }
+            analyzeBlocks(rule, element.getChildren(), isRepetition(element) ? element : null, after);
+        }
+    }
+
+    /**
+     * Finds the lookahead of a way of a choice point
+     * @param key         Alternative or block the lookahead is recorded for
+     * @param way         Expansion of the way
+     * @param competitors Strings of the following ways, by length
+     */
+    private void decide(String rule, Object key, List<Element> way, IntFunction<TokenStrings> competitors) {
+        decisions++;
+        for (int depth = 1; depth <= MAX_DEPTH; depth++) {
+            TokenStrings wayStrings = first(way, 0, depth);
+            TokenStrings competitorStrings = competitors.apply(depth);
+            if (wayStrings.isSaturated() || competitorStrings.isSaturated()) {
+                // Too many strings to tell apart, and there are more with more tokens
+                break;
+            }
+            Conflict conflict = conflict(wayStrings, competitorStrings, depth);
+            if (conflict == Conflict.NONE) {
+                if (depth > 1) {
+                    lookaheads.put(key, Lookahead.bounded(depth));
+                    boundedDecisions++;
+                }
+                return;
+            }
+            if (conflict == Conflict.WAY_ENDS) {
+                // A longer lookahead on the way does not see further than its end: the way is taken greedily
+                int wayDepth = 1;
+                for (long string : wayStrings.toArray()) {
+                    wayDepth = Math.max(wayDepth, length(string));
+                }
+                lookaheads.put(key, Lookahead.bounded(wayDepth));
+                if (wayDepth > 1) {
+                    boundedDecisions++;
+                }
+                unresolvedRules.add(rule);
+                return;
+            }
+            if (depth == MAX_DEPTH && contains(competitorStrings, wayStrings)) {
+                // Every input of the way is also an input of the following ways, like the dangling else:
+                // a syntactic lookahead would only confirm it, the way is taken greedily
+                lookaheads.put(key, Lookahead.bounded(1));
+                unresolvedRules.add(rule);
+                return;
+            }
+        }
+        lookaheads.put(key, Lookahead.syntactic(way));
+        syntacticRules.add(rule);
+    }
+
+    private enum Conflict {
+        NONE,
+        // Only strings where the way ends before the given length conflict
+        WAY_ENDS,
+        // Strings of the given length conflict
+        TOKENS
+    }
+
+    private Conflict conflict(TokenStrings way, TokenStrings competitors, int depth) {
+        if (competitors.isEmpty()) {
+            return Conflict.NONE;
+        }
+        TokenStrings competitorPrefixes = null;
+        boolean wayEnds = false;
+        for (long string : way.toArray()) {
+            if (isComplete(string, depth)) {
+                if (competitors.contains(string)) {
+                    return Conflict.TOKENS;
+                }
+            } else if (!wayEnds) {
+                // The way ends here: it is taken whatever follows
+                if (competitorPrefixes == null) {
+                    competitorPrefixes = prefixes(competitors);
+                }
+                wayEnds = competitorPrefixes.contains(string);
+            }
+        }
+        return wayEnds ? Conflict.WAY_ENDS : Conflict.NONE;
+    }
+
+    private static boolean contains(TokenStrings competitors, TokenStrings way) {
+        TokenStrings competitorPrefixes = prefixes(competitors);
+        for (long string : way.toArray()) {
+            if (!competitorPrefixes.contains(string)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static TokenStrings prefixes(TokenStrings strings) {
+        TokenStrings result = new TokenStrings();
+        for (long string : strings.toArray()) {
+            for (int length = 0; length <= length(string); length++) {
+                result.add(prefix(string, length));
+            }
+        }
+        return result;
+    }
+
+    // ============================== FIRST_k ==============================
+
+    /**
+     * Strings of at most {@code depth} tokens that start a sequence of elements, shorter where the sequence ends
+     */
+    private TokenStrings first(List<Element> elements, int from, int depth) {
+        TokenStrings result = TokenStrings.of(EMPTY_STRING);
+        for (int i = from; i < elements.size() && !isComplete(result, depth); i++) {
+            Element element = elements.get(i);
+            result = extend(result, depth, length -> first(element, length));
+        }
+        return result;
+    }
+
+    private TokenStrings first(Element element, int depth) {
+        switch (element.getKind()) {
+            case TERMINAL:
+                int terminal = sets.getTerminalIndex(element.getName());
+                return TokenStrings.of(append(EMPTY_STRING, terminal < 0 ? endOfInput : terminal));
+            case NON_TERMINAL:
+                return firstOfRule(element.getName(), depth);
+            case GROUPING:
+                return first(element.getChildren(), 0, depth);
+            case OPTIONALITY:
+                TokenStrings optional = new TokenStrings();
+                optional.addAll(first(element.getChildren(), 0, depth));
+                optional.add(EMPTY_STRING);
+                return optional;
+            case REPETIVITY:
+                return extend(first(element.getChildren(), 0, depth), depth,
+                        length -> repetitions(element.getChildren(), length));
+            default:
+                return repetitions(element.getChildren(), depth);
+        }
+    }
+
+    /**
+     * Strings that start zero or more repetitions of a sequence, computed by increasing length
+     */
+    private TokenStrings repetitions(List<Element> elements, int depth) {
+        TokenStrings[] byLength = new TokenStrings[depth + 1];
+        byLength[0] = TokenStrings.of(EMPTY_STRING);
+        for (int length = 1; length <= depth; length++) {
+            TokenStrings result = TokenStrings.of(EMPTY_STRING);
+            TokenStrings once = first(elements, 0, length);
+            if (once.isSaturated()) {
+                return once;
+            }
+            for (long string : once.toArray()) {
+                // An empty repetition adds nothing to the following ones
+                if (string != EMPTY_STRING) {
+                    result.addConcatenation(string, isComplete(string, length)
+                            ? TokenStrings.of(EMPTY_STRING) : byLength[length - length(string)]);
+                }
+            }
+            byLength[length] = result;
+        }
+        return byLength[depth];
+    }
+
+    private TokenStrings firstOfRule(String nonTerminal, int depth) {
+        Integer index = nonTerminalIndexes.get(nonTerminal);
+        if (index == null) {
+            return new TokenStrings();
+        }
+        if (depth == 1 && analyzedNonTerminals.contains(nonTerminal)) {
+            return memoized(key(index, depth, false), () -> {
+                TokenStrings strings = singleTokens(sets.getFirst(nonTerminal));
+                if (sets.isNullable(nonTerminal)) {
+                    strings.add(EMPTY_STRING);
+                }
+                return strings;
+            });
+        }
+        return memoized(key(index, depth, false), () -> {
+            TokenStrings strings = new TokenStrings();
+            for (List<Element> elements : productions.get(nonTerminal)) {
+                strings.addAll(first(elements, 0, depth));
+            }
+            return strings;
+        });
+    }
+
+    // ============================== FOLLOW_k ==============================
+
+    /**
+     * Strings of {@code depth} tokens that can follow a position of a rule (shorter only when they end the input)
+     */
+    private TokenStrings firstOfRest(Frame frame, int depth) {
+        return extend(first(frame.elements, frame.index, depth), depth, length -> afterSequence(frame, length));
+    }
+
+    private TokenStrings afterSequence(Frame frame, int depth) {
+        if (frame.repetition != null) {
+            return extend(repetitions(frame.repetition.getChildren(), depth), depth,
+                    length -> afterBlock(frame, length));
+        }
+        return afterBlock(frame, depth);
+    }
+
+    private TokenStrings afterBlock(Frame frame, int depth) {
+        return frame.outer == null ? follow(frame.rule, depth) : firstOfRest(frame.outer, depth);
+    }
+
+    private TokenStrings follow(String nonTerminal, int depth) {
+        int index = nonTerminalIndexes.get(nonTerminal);
+        if (depth == 1 && analyzedNonTerminals.contains(nonTerminal)) {
+            return memoized(key(index, depth, true), () -> singleTokens(sets.getFollow(nonTerminal)));
+        }
+        return memoized(key(index, depth, true), () -> {
+            TokenStrings strings = new TokenStrings();
+            if (nonTerminal.equals(START_SYMBOL)) {
+                strings.add(append(EMPTY_STRING, endOfInput));
+            }
+            for (Frame frame : occurrences.getOrDefault(nonTerminal, Collections.emptyList())) {
+                strings.addAll(firstOfRest(frame, depth));
+            }
+            return strings;
+        });
+    }
+
+    // ============================== SET OPERATIONS ==============================
+
+    /**
+     * Completes the strings shorter than {@code depth} with the strings that can follow them
+     * @param tail Strings that follow, by the number of missing tokens
+     */
+    private TokenStrings extend(TokenStrings strings, int depth, IntFunction<TokenStrings> tail) {
+        if (strings.isSaturated() || isComplete(strings, depth)) {
+            return strings;
+        }
+        if (strings.size() == 1 && strings.contains(EMPTY_STRING)) {
+            // Nothing to complete but the empty string: the tail itself, shared like the memoized sets
+            return tail.apply(depth);
+        }
+        TokenStrings result = new TokenStrings();
+        TokenStrings[] tails = new TokenStrings[depth + 1];
+        for (long string : strings.toArray()) {
+            if (isComplete(string, depth)) {
+                result.add(string);
+            } else {
+                int missing = depth - length(string);
+                if (tails[missing] == null) {
+                    tails[missing] = tail.apply(missing);
+                }
+                result.addConcatenation(string, tails[missing]);
+            }
+            if (result.isSaturated()) {
+                break;
+            }
+        }
+        return result;
+    }
+
+    private TokenStrings singleTokens(BitSet terminals) {
+        TokenStrings strings = new TokenStrings();
+        for (int t = terminals.nextSetBit(0); t >= 0; t = terminals.nextSetBit(t + 1)) {
+            strings.add(append(EMPTY_STRING, t));
+        }
+        return strings;
+    }
+
+    /**
+     * Checks if a string cannot be extended: it has {@code depth} tokens or it ends the input
+     */
+    private boolean isComplete(long string, int depth) {
+        int length = length(string);
+        return length == depth || (length > 0 && symbol(string, length - 1) == endOfInput);
+    }
+
+    private boolean isComplete(TokenStrings strings, int depth) {
+        for (long string : strings.toArray()) {
+            if (!isComplete(string, depth)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int length(long string) {
+        return (int) (string & ((1 << LENGTH_BITS) - 1));
+    }
+
+    private static int symbol(long string, int position) {
+        return (int) (string >>> (LENGTH_BITS + position * SYMBOL_BITS)) & ((1 << SYMBOL_BITS) - 1);
+    }
+
+    private static long append(long string, int symbol) {
+        int length = length(string);
+        return (string - length) | ((long) symbol << (LENGTH_BITS + length * SYMBOL_BITS)) | (length + 1);
+    }
+
+    private static long prefix(long string, int length) {
+        long symbols = length == 0 ? 0 : (string >>> LENGTH_BITS) & ((1L << (length * SYMBOL_BITS)) - 1);
+        return (symbols << LENGTH_BITS) | length;
+    }
+
+    private static long concatenate(long string, long tail) {
+        for (int i = 0; i < length(tail); i++) {
+            string = append(string, symbol(tail, i));
+        }
+        return string;
+    }
+
+    private static boolean isRepetition(Element element) {
+        return element.getKind() == ElementKind.REPETIVITY || element.getKind() == ElementKind.REP_OPT;
+    }
+
+    // ============================== MEMOIZATION ==============================
+
+    private long key(int nonTerminal, int depth, boolean follow) {
+        return ((long) nonTerminal * (MAX_DEPTH + 1) + depth) * 2 + (follow ? 1 : 0);
+    }
+
+    /**
+     * Computes a set once. The sets of a recursive cycle are evaluated again, starting from
+     * their previous values, until an iteration of the outermost one changes none of them;
+     * only then are they final.
+     */
+    private TokenStrings memoized(long key, Supplier<TokenStrings> evaluation) {
+        Entry entry = memo.get(key);
+        if (entry != null && !entry.stale) {
+            lowLink = Math.min(lowLink, entry.lowLink);
+            return entry.strings;
+        }
+        if (inProgress >= MAX_NESTING) {
+            return TokenStrings.saturated();
+        }
+
+        if (entry == null) {
+            entry = new Entry();
+            memo.put(key, entry);
+        }
+        TokenStrings previous = entry.strings;
+        entry.stale = false;
+        entry.stackIndex = inProgress++;
+        entry.lowLink = entry.stackIndex;
+        int provisionalMark = provisional.size();
+        int outerLowLink = lowLink;
+        while (true) {
+            lowLink = Integer.MAX_VALUE;
+            int changesBefore = changes;
+            TokenStrings strings = evaluation.get();
+            boolean grown = grown(strings, entry.strings);
+            entry.strings = strings;
+            if (lowLink < entry.stackIndex) {
+                // Depends on a set still being computed: provisional until that one is final
+                entry.lowLink = lowLink;
+                provisional.add(key);
+                if (grown(strings, previous)) {
+                    changes++;
+                }
+                break;
+            }
+            List<Long> computedMeanwhile = provisional.subList(provisionalMark, provisional.size());
+            if (lowLink == entry.stackIndex && (grown || changes != changesBefore)) {
+                for (Long provisionalKey : computedMeanwhile) {
+                    memo.get(provisionalKey).stale = true;
+                }
+                computedMeanwhile.clear();
+                continue;
+            }
+            for (Long provisionalKey : computedMeanwhile) {
+                memo.get(provisionalKey).lowLink = Integer.MAX_VALUE;
+            }
+            computedMeanwhile.clear();
+            entry.lowLink = Integer.MAX_VALUE;
+            lowLink = Integer.MAX_VALUE;
+            break;
+        }
+        inProgress--;
+        lowLink = Math.min(outerLowLink, lowLink);
+        return entry.strings;
+    }
+
+    private static boolean grown(TokenStrings strings, TokenStrings previous) {
+        return strings.size() != previous.size() || strings.isSaturated() != previous.isSaturated();
+    }
+
+    /**
+     * Memoized set. The low link is the position of the outermost set still being computed
+     * it depends on, or Integer.MAX_VALUE once it is final; a stale set is evaluated again
+     * the next time it is needed.
+     */
+    private static final class Entry {
+        private int stackIndex;
+        private int lowLink;
+        private boolean stale;
+        private TokenStrings strings = new TokenStrings();
+    }
+
+    /**
+     * Position in a production: the elements from {@code index} on, then another repetition of
+     * {@code repetition} if the elements are its content, then the position {@code outer} after
+     * the enclosing block, or the end of the rule
+     */
+    private static final class Frame {
+        private final String rule;
+        private final List<Element> elements;
+        private final int index;
+        private final Element repetition;
+        private final Frame outer;
+
+        private Frame(String rule, List<Element> elements, int index, Element repetition, Frame outer) {
+            this.rule = rule;
+            this.elements = elements;
+            this.index = index;
+            this.repetition = repetition;
+            this.outer = outer;
+        }
+    }
+
+    /**
+     * Set of packed token strings (open addressing); past {@value #MAX_STRINGS} strings it is saturated
+     */
+    private static final class TokenStrings {
+        private long[] slots = new long[8];
+        private boolean used;
+        private int size;
+        private boolean saturated;
+
+        private static TokenStrings of(long string) {
+            TokenStrings strings = new TokenStrings();
+            strings.add(string);
+            return strings;
+        }
+
+        private static TokenStrings saturated() {
+            TokenStrings strings = new TokenStrings();
+            strings.saturated = true;
+            return strings;
+        }
+
+        private void add(long string) {
+            if (saturated) {
+                return;
+            }
+            if (string == EMPTY_STRING) {
+                // The empty string is the only string equal to 0, the marker of the free slots
+                if (!used) {
+                    used = true;
+                    size++;
+                }
+                return;
+            }
+            int mask = slots.length - 1;
+            int slot = hash(string) & mask;
+            while (slots[slot] != 0) {
+                if (slots[slot] == string) {
+                    return;
+                }
+                slot = (slot + 1) & mask;
+            }
+            if (size >= MAX_STRINGS) {
+                saturated = true;
+                return;
+            }
+            slots[slot] = string;
+            size++;
+            if (size * 2 > slots.length) {
+                rehash();
+            }
+        }
+
+        private boolean contains(long string) {
+            if (string == EMPTY_STRING) {
+                return used;
+            }
+            int mask = slots.length - 1;
+            for (int slot = hash(string) & mask; slots[slot] != 0; slot = (slot + 1) & mask) {
+                if (slots[slot] == string) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private void addAll(TokenStrings strings) {
+            if (strings.saturated) {
+                saturated = true;
+                return;
+            }
+            if (size == 0) {
+                slots = strings.slots.clone();
+                used = strings.used;
+                size = strings.size;
+                return;
+            }
+            for (long string : strings.toArray()) {
+                add(string);
+                if (saturated) {
+                    return;
+                }
+            }
+        }
+
+        private void addConcatenation(long string, TokenStrings tails) {
+            if (tails.saturated) {
+                saturated = true;
+                return;
+            }
+            for (long tail : tails.toArray()) {
+                add(concatenate(string, tail));
+                if (saturated) {
+                    return;
+                }
+            }
+        }
+
+        private long[] toArray() {
+            long[] strings = new long[size];
+            int count = 0;
+            if (used) {
+                strings[count++] = EMPTY_STRING;
+            }
+            for (long slot : slots) {
+                if (slot != 0) {
+                    strings[count++] = slot;
+                }
+            }
+            return strings;
+        }
+
+        private void rehash() {
+            long[] old = slots;
+            slots = new long[old.length * 2];
+            size = used ? 1 : 0;
+            for (long string : old) {
+                if (string != 0) {
+                    add(string);
+                }
+            }
+        }
+
+        private int size() {
+            return size;
+        }
+
+        private boolean isEmpty() {
+            return size == 0;
+        }
+
+        private boolean isSaturated() {
+            return saturated;
+        }
+
+        private static int hash(long string) {
+            long h = string * 0x9E3779B97F4A7C15L;
+            return (int) (h ^ (h >>> 32));
+        }
+    }
+}
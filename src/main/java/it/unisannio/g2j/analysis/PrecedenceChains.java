@@ -0,0 +1,114 @@
+package it.unisannio.g2j.analysis;
+
+import it.unisannio.g2j.ir.PrecedenceChain;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Predicate;
+
+/**
+ * Recognizes the binary-operator precedence chains of a grammar.
+ * <p>
+ * A rule is a precedence level when its productions are exactly
+ * {@code A ::= A op1 B | ... | A opn B | B}, with single-terminal operators.
+ * Every level whose operand is a level too starts a chain, which follows the
+ * operands down to the first rule that is not a level (the primary).
+ */
+public final class PrecedenceChains {
+
+    private PrecedenceChains() {
+    }
+
+    /**
+     * Finds the precedence chains of a grammar
+     * @param productions Flat productions by non-terminal
+     * @param isTerminal  Tells whether a symbol is a terminal
+     * @return Chains with at least two levels, by non-terminal of their first level
+     */
+    public static Map<String, PrecedenceChain> detect(Map<String, List<List<String>>> productions,
+                                                      Predicate<String> isTerminal) {
+        Map<String, List<String>> levelOperators = new HashMap<>();
+        Map<String, String> operands = new HashMap<>();
+        for (Map.Entry<String, List<List<String>>> entry : productions.entrySet()) {
+            analyzeLevel(entry.getKey(), entry.getValue(), productions, isTerminal, levelOperators, operands);
+        }
+
+        Map<String, PrecedenceChain> chains = new LinkedHashMap<>();
+        for (String first : productions.keySet()) {
+            if (!levelOperators.containsKey(first) || !levelOperators.containsKey(operands.get(first))) {
+                continue;
+            }
+
+            List<String> levels = new ArrayList<>();
+            List<List<String>> operators = new ArrayList<>();
+            Set<String> seenOperators = new HashSet<>();
+            String current = first;
+            boolean valid = true;
+            while (valid && levelOperators.containsKey(current)) {
+                List<String> currentOperators = levelOperators.get(current);
+                // A cycle of levels has no primary, an operator in two levels has no single precedence
+                if (levels.contains(current)) {
+                    valid = false;
+                }
+                for (String operator : currentOperators) {
+                    valid &= seenOperators.add(operator);
+                }
+                levels.add(current);
+                operators.add(currentOperators);
+                current = operands.get(current);
+            }
+
+            // The primary must not start with a level, or the chain would be left-recursive through it
+            for (List<String> production : productions.get(current)) {
+                if (valid && !production.isEmpty() && levels.contains(production.get(0))) {
+                    valid = false;
+                }
+            }
+            if (valid) {
+                chains.put(first, new PrecedenceChain(levels, operators, current));
+            }
+        }
+        return chains;
+    }
+
+    private static void analyzeLevel(String rule, List<List<String>> ruleProductions,
+                                     Map<String, List<List<String>>> productions, Predicate<String> isTerminal,
+                                     Map<String, List<String>> levelOperators, Map<String, String> operands) {
+        String operand = null;
+        boolean base = false;
+        Set<String> operators = new LinkedHashSet<>();
+
+        for (List<String> production : ruleProductions) {
+            String next;
+            if (production.size() == 1) {
+                // A ::= B
+                if (base) {
+                    return;
+                }
+                base = true;
+                next = production.get(0);
+            } else if (production.size() == 3 && production.get(0).equals(rule) && isTerminal.test(production.get(1))) {
+                // A ::= A op B
+                operators.add(production.get(1));
+                next = production.get(2);
+            } else {
+                return;
+            }
+            if (next.equals(rule) || !productions.containsKey(next) || (operand != null && !operand.equals(next))) {
+                return;
+            }
+            operand = next;
+        }
+
+        if (base && !operators.isEmpty()) {
+            levelOperators.put(rule, new ArrayList<>(operators));
+            operands.put(rule, operand);
+        }
+    }
+}
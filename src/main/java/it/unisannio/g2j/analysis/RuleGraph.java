@@ -0,0 +1,313 @@
+package it.unisannio.g2j.analysis;
+
+import it.unisannio.g2j.ir.GrammarIRBuilder;
+import it.unisannio.g2j.ir.PrecedenceChain;
+import it.unisannio.g2j.symbols.SymbolTable;
+import it.unisannio.g2j.symbols.SymbolTableSnapshot;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Reference graph of the non-terminals of a grammar, with the two passes that find
+ * the useless rules:
+ * <ul>
+ *     <li>reachability: the rules that &lt;Program&gt; reaches, with a depth-first
+ *     visit, so that a group of rules that only reference each other is not
+ *     reachable;</li>
+ *     <li>productivity: the rules that derive at least one string of terminals, with
+ *     a worklist where every production counts the references it still waits for and
+ *     a rule is processed once, when its first production becomes productive.</li>
+ * </ul>
+ * The graph is stored as adjacency arrays indexed by non-terminal (the successors of
+ * node n are {@code successors[offsets[n]]} to {@code successors[offsets[n + 1] - 1]}),
+ * so both passes are linear in the size of the grammar.
+ * <p>
+ * The references inside {@code []} and {@code {[ ]}} are edges of the graph but are
+ * not needed by productivity. References to undefined non-terminals are reported by
+ * the other semantic checks and ignored here.
+ */
+public final class RuleGraph {
+
+    private static final String START_SYMBOL = "<Program>";
+
+    private final List<String> nonTerminals;
+    private final Map<String, Integer> indexes;
+    private final BitSet defined = new BitSet();
+
+    // Non-terminals referenced by every non-terminal
+    private final int[] offsets;
+    private final int[] successors;
+
+    // Productions that need every non-terminal to be productive (once per reference)
+    private final int[] requiredOffsets;
+    private final int[] requiredBy;
+    private final int[] productionOwners;
+    private final int[] requiredCounts;
+
+    private final BitSet reachable = new BitSet();
+    private final BitSet productive = new BitSet();
+
+    private RuleGraph(List<String> nonTerminals, Map<String, Integer> indexes, List<int[]> productions,
+                      List<int[]> required, int[] productionOwners) {
+        this.nonTerminals = nonTerminals;
+        this.indexes = indexes;
+        int nodeCount = nonTerminals.size();
+        this.productionOwners = productionOwners;
+
+        // Adjacency arrays: count, prefix sums, fill
+        offsets = new int[nodeCount + 1];
+        requiredOffsets = new int[nodeCount + 1];
+        requiredCounts = new int[productionOwners.length];
+        for (int p = 0; p < productionOwners.length; p++) {
+            offsets[productionOwners[p] + 1] += productions.get(p).length;
+            for (int reference : required.get(p)) {
+                requiredOffsets[reference + 1]++;
+            }
+            requiredCounts[p] = required.get(p).length;
+        }
+        for (int n = 0; n < nodeCount; n++) {
+            offsets[n + 1] += offsets[n];
+            requiredOffsets[n + 1] += requiredOffsets[n];
+        }
+        successors = new int[offsets[nodeCount]];
+        requiredBy = new int[requiredOffsets[nodeCount]];
+        int[] nextSuccessor = Arrays.copyOf(offsets, nodeCount);
+        int[] nextRequired = Arrays.copyOf(requiredOffsets, nodeCount);
+        for (int p = 0; p < productionOwners.length; p++) {
+            for (int reference : productions.get(p)) {
+                successors[nextSuccessor[productionOwners[p]]++] = reference;
+            }
+            for (int reference : required.get(p)) {
+                requiredBy[nextRequired[reference]++] = p;
+            }
+            defined.set(productionOwners[p]);
+        }
+
+        computeReachable();
+        computeProductive();
+    }
+
+    /**
+     * Builds the graph of the input grammar of a symbol table
+     * @param symbolTable Snapshot of the symbol table of the input grammar
+     * @return Graph with the reachable and productive rules
+     */
+    public static RuleGraph of(SymbolTableSnapshot symbolTable) {
+        List<String> nonTerminals = symbolTable.getOrderedNonTerminals();
+        Map<String, Integer> indexes = indexesOf(nonTerminals);
+
+        // Symbol ID -> node, -1 for the terminals and the undefined symbols
+        int[] nodes = new int[symbolTable.getIdCount()];
+        for (int id = 0; id < nodes.length; id++) {
+            nodes[id] = symbolTable.isNonTerminal(id) ? indexes.get(symbolTable.getName(id)) : -1;
+        }
+
+        Encoder encoder = new Encoder();
+        for (int n = 0; n < nonTerminals.size(); n++) {
+            for (int[] production : symbolTable.getEncodedProductions(symbolTable.getId(nonTerminals.get(n)))) {
+                int optionalDepth = 0;
+                for (int code : production) {
+                    if (code == SymbolTable.OPTIONAL_OPEN) {
+                        optionalDepth++;
+                    } else if (code == SymbolTable.OPTIONAL_CLOSE) {
+                        optionalDepth--;
+                    } else if (code >= 0 && nodes[code] >= 0) {
+                        encoder.addReference(nodes[code], optionalDepth == 0);
+                    }
+                }
+                encoder.endProduction(n);
+            }
+        }
+        return encoder.build(nonTerminals, indexes);
+    }
+
+    /**
+     * Builds the graph of a set of productions, such as the optimized grammar
+     * @param nonTerminals      Rules, in the order of the reports
+     * @param productions       Productions by rule, as symbols and delimiters
+     * @param precedenceChains  Rules rendered as precedence chains: they reference only their primary
+     * @return Graph with the reachable and productive rules
+     */
+    public static RuleGraph of(List<String> nonTerminals, Map<String, List<List<String>>> productions,
+                               Map<String, PrecedenceChain> precedenceChains) {
+        Map<String, Integer> indexes = indexesOf(nonTerminals);
+        Encoder encoder = new Encoder();
+        for (int n = 0; n < nonTerminals.size(); n++) {
+            String nonTerminal = nonTerminals.get(n);
+            PrecedenceChain chain = precedenceChains.get(nonTerminal);
+            List<List<String>> rule = chain != null
+                    ? Collections.singletonList(Collections.singletonList(chain.getPrimary()))
+                    : productions.getOrDefault(nonTerminal, Collections.emptyList());
+            for (List<String> production : rule) {
+                int optionalDepth = 0;
+                for (String symbol : GrammarIRBuilder.splitDelimiters(production)) {
+                    Integer node = indexes.get(symbol);
+                    if (symbol.equals("[")) {
+                        optionalDepth++;
+                    } else if (symbol.equals("]")) {
+                        optionalDepth--;
+                    } else if (node != null) {
+                        encoder.addReference(node, optionalDepth == 0);
+                    }
+                }
+                encoder.endProduction(n);
+            }
+        }
+        return encoder.build(nonTerminals, indexes);
+    }
+
+    private static Map<String, Integer> indexesOf(List<String> nonTerminals) {
+        Map<String, Integer> indexes = new HashMap<>();
+        for (int n = 0; n < nonTerminals.size(); n++) {
+            indexes.put(nonTerminals.get(n), n);
+        }
+        return indexes;
+    }
+
+    // ============================== QUERY API ==============================
+
+    /**
+     * Checks if &lt;Program&gt; reaches a rule
+     * @param nonTerminal Non-terminal name
+     * @return True if the rule is &lt;Program&gt; or is referenced by a reachable rule
+     */
+    public boolean isReachable(String nonTerminal) {
+        Integer index = indexes.get(nonTerminal);
+        return index != null && reachable.get(index);
+    }
+
+    /**
+     * Checks if a rule derives at least one string of terminals
+     * @param nonTerminal Non-terminal name
+     * @return True if the rule is productive
+     */
+    public boolean isProductive(String nonTerminal) {
+        Integer index = indexes.get(nonTerminal);
+        return index != null && productive.get(index);
+    }
+
+    /**
+     * Gets the rules that &lt;Program&gt; does not reach
+     * @return Names of the rules with productions, in graph order
+     */
+    public List<String> getUnreachableNonTerminals() {
+        BitSet unreachable = (BitSet) defined.clone();
+        unreachable.andNot(reachable);
+        return namesOf(unreachable);
+    }
+
+    /**
+     * Gets the rules that derive no string of terminals
+     * @return Names of the rules with productions, in graph order
+     */
+    public List<String> getNonProductiveNonTerminals() {
+        BitSet nonProductive = (BitSet) defined.clone();
+        nonProductive.andNot(productive);
+        return namesOf(nonProductive);
+    }
+
+    private List<String> namesOf(BitSet nodes) {
+        if (nodes.isEmpty()) {
+            return Collections.emptyList();
+        }
+        List<String> names = new ArrayList<>(nodes.cardinality());
+        for (int n = nodes.nextSetBit(0); n >= 0; n = nodes.nextSetBit(n + 1)) {
+            names.add(nonTerminals.get(n));
+        }
+        return names;
+    }
+
+    // ============================== PASSES ==============================
+
+    private void computeReachable() {
+        Integer start = indexes.get(START_SYMBOL);
+        if (start == null) {
+            return;
+        }
+        int[] stack = new int[nonTerminals.size()];
+        int size = 0;
+        stack[size++] = start;
+        reachable.set(start);
+        while (size > 0) {
+            int node = stack[--size];
+            for (int i = offsets[node]; i < offsets[node + 1]; i++) {
+                int next = successors[i];
+                if (!reachable.get(next)) {
+                    reachable.set(next);
+                    stack[size++] = next;
+                }
+            }
+        }
+    }
+
+    private void computeProductive() {
+        int[] worklist = new int[nonTerminals.size()];
+        int size = 0;
+        int[] missing = requiredCounts.clone();
+        for (int p = 0; p < missing.length; p++) {
+            if (missing[p] == 0 && !productive.get(productionOwners[p])) {
+                productive.set(productionOwners[p]);
+                worklist[size++] = productionOwners[p];
+            }
+        }
+        while (size > 0) {
+            int node = worklist[--size];
+            for (int i = requiredOffsets[node]; i < requiredOffsets[node + 1]; i++) {
+                int production = requiredBy[i];
+                if (--missing[production] == 0 && !productive.get(productionOwners[production])) {
+                    productive.set(productionOwners[production]);
+                    worklist[size++] = productionOwners[production];
+                }
+            }
+        }
+    }
+
+    /**
+     * Collects the references of the productions, one production at a time
+     */
+    private static final class Encoder {
+        private final List<int[]> productions = new ArrayList<>();
+        private final List<int[]> required = new ArrayList<>();
+        private int[] owners = new int[16];
+
+        private int[] references = new int[16];
+        private int referenceCount;
+        private int[] requiredReferences = new int[16];
+        private int requiredCount;
+
+        private void addReference(int node, boolean isRequired) {
+            if (referenceCount == references.length) {
+                references = Arrays.copyOf(references, referenceCount * 2);
+            }
+            references[referenceCount++] = node;
+            if (isRequired) {
+                if (requiredCount == requiredReferences.length) {
+                    requiredReferences = Arrays.copyOf(requiredReferences, requiredCount * 2);
+                }
+                requiredReferences[requiredCount++] = node;
+            }
+        }
+
+        private void endProduction(int owner) {
+            if (productions.size() == owners.length) {
+                owners = Arrays.copyOf(owners, owners.length * 2);
+            }
+            owners[productions.size()] = owner;
+            productions.add(Arrays.copyOf(references, referenceCount));
+            required.add(Arrays.copyOf(requiredReferences, requiredCount));
+            referenceCount = 0;
+            requiredCount = 0;
+        }
+
+        private RuleGraph build(List<String> nonTerminals, Map<String, Integer> indexes) {
+            return new RuleGraph(nonTerminals, indexes, productions, required,
+                    Arrays.copyOf(owners, productions.size()));
+        }
+    }
+}
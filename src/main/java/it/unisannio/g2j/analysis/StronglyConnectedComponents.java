@@ -0,0 +1,188 @@
+package it.unisannio.g2j.analysis;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+
+/**
+ * Tarjan's algorithm for the strongly connected components of a directed graph,
+ * written iteratively so that long dependency chains do not overflow the stack.
+ * Runs in O(V + E).
+ */
+public final class StronglyConnectedComponents {
+
+    private StronglyConnectedComponents() {
+    }
+
+    /**
+     * Computes the strongly connected components of a graph
+     * @param nodes      Nodes of the graph (iteration order decides the order of unrelated components)
+     * @param successors Successors of a node; successors that are not nodes of the graph are ignored
+     * @return Components in reverse topological order: every component comes after
+     *         all the components it has edges to
+     */
+    public static <T> List<List<T>> compute(Set<T> nodes, Function<T, ? extends Collection<T>> successors) {
+        Map<T, Integer> index = new HashMap<>();
+        Map<T, Integer> lowLink = new HashMap<>();
+        Map<T, Boolean> onStack = new HashMap<>();
+        Deque<T> stack = new ArrayDeque<>();
+        List<List<T>> components = new ArrayList<>();
+
+        Deque<T> callStack = new ArrayDeque<>();
+        Deque<Iterator<T>> iterators = new ArrayDeque<>();
+        int counter = 0;
+
+        for (T root : nodes) {
+            if (index.containsKey(root)) {
+                continue;
+            }
+
+            index.put(root, counter);
+            lowLink.put(root, counter);
+            counter++;
+            stack.push(root);
+            onStack.put(root, true);
+            callStack.push(root);
+            iterators.push(successorsOf(root, successors));
+
+            while (!callStack.isEmpty()) {
+                T node = callStack.peek();
+                Iterator<T> it = iterators.peek();
+
+                if (it.hasNext()) {
+                    T next = it.next();
+                    if (!nodes.contains(next)) {
+                        continue;
+                    }
+                    if (!index.containsKey(next)) {
+                        // Descend into the successor
+                        index.put(next, counter);
+                        lowLink.put(next, counter);
+                        counter++;
+                        stack.push(next);
+                        onStack.put(next, true);
+                        callStack.push(next);
+                        iterators.push(successorsOf(next, successors));
+                    } else if (onStack.getOrDefault(next, false)) {
+                        lowLink.put(node, Math.min(lowLink.get(node), index.get(next)));
+                    }
+                    continue;
+                }
+
+                // All successors visited: close the node
+                callStack.pop();
+                iterators.pop();
+                if (!callStack.isEmpty()) {
+                    T parent = callStack.peek();
+                    lowLink.put(parent, Math.min(lowLink.get(parent), lowLink.get(node)));
+                }
+
+                if (lowLink.get(node).equals(index.get(node))) {
+                    List<T> component = new ArrayList<>();
+                    T member;
+                    do {
+                        member = stack.pop();
+                        onStack.put(member, false);
+                        component.add(member);
+                    } while (!member.equals(node));
+                    components.add(component);
+                }
+            }
+        }
+        return components;
+    }
+
+    /**
+     * Computes the strongly connected components of a graph whose nodes are dense indexes,
+     * on primitive arrays, without hashing or boxing
+     * @param successors Successors of every node, from 0 to successors.length (exclusive)
+     * @return Components in reverse topological order, like {@link #compute(Set, Function)};
+     *         unrelated components come in index order
+     */
+    public static List<int[]> compute(int[][] successors) {
+        int nodeCount = successors.length;
+        int[] index = new int[nodeCount];
+        int[] lowLink = new int[nodeCount];
+        Arrays.fill(index, -1);
+        boolean[] onStack = new boolean[nodeCount];
+        int[] stack = new int[nodeCount];
+        int stackSize = 0;
+        List<int[]> components = new ArrayList<>();
+
+        // Explicit call stack: node and position of the next successor to visit
+        int[] callNodes = new int[nodeCount];
+        int[] callPositions = new int[nodeCount];
+        int counter = 0;
+
+        for (int root = 0; root < nodeCount; root++) {
+            if (index[root] >= 0) {
+                continue;
+            }
+
+            int depth = 0;
+            callNodes[0] = root;
+            callPositions[0] = 0;
+            index[root] = lowLink[root] = counter++;
+            stack[stackSize++] = root;
+            onStack[root] = true;
+
+            while (depth >= 0) {
+                int node = callNodes[depth];
+                int[] nodeSuccessors = successors[node];
+
+                if (callPositions[depth] < nodeSuccessors.length) {
+                    int next = nodeSuccessors[callPositions[depth]++];
+                    if (index[next] < 0) {
+                        // Descend into the successor
+                        index[next] = lowLink[next] = counter++;
+                        stack[stackSize++] = next;
+                        onStack[next] = true;
+                        depth++;
+                        callNodes[depth] = next;
+                        callPositions[depth] = 0;
+                    } else if (onStack[next]) {
+                        lowLink[node] = Math.min(lowLink[node], index[next]);
+                    }
+                    continue;
+                }
+
+                // All successors visited: close the node
+                depth--;
+                if (depth >= 0) {
+                    int parent = callNodes[depth];
+                    lowLink[parent] = Math.min(lowLink[parent], lowLink[node]);
+                }
+
+                if (lowLink[node] == index[node]) {
+                    int start = stackSize;
+                    do {
+                        start--;
+                        onStack[stack[start]] = false;
+                    } while (stack[start] != node);
+                    // Same member order as the generic version: last pushed first
+                    int[] component = new int[stackSize - start];
+                    for (int i = 0; i < component.length; i++) {
+                        component[i] = stack[stackSize - 1 - i];
+                    }
+                    stackSize = start;
+                    components.add(component);
+                }
+            }
+        }
+        return components;
+    }
+
+    private static <T> Iterator<T> successorsOf(T node, Function<T, ? extends Collection<T>> successors) {
+        Collection<T> result = successors.apply(node);
+        return result == null ? Collections.emptyIterator() : result.iterator();
+    }
+}
@@ -0,0 +1,169 @@
+package it.unisannio.g2j.emitters;
+
+import it.unisannio.g2j.analysis.Lookahead;
+import it.unisannio.g2j.analysis.LookaheadAnalysis;
+import it.unisannio.g2j.ir.LexicalRule;
+import it.unisannio.g2j.ir.ParserRule;
+import it.unisannio.g2j.ir.PrecedenceChain;
+
+/**
+ * Target of the {@link GrammarEmitter}: receives the grammar one construct at a
+ * time, in the order of a single depth-first walk, and renders it in its own format.
+ * <p>
+ * Every callback does nothing by default, so a backend only overrides what it needs.
+ */
+public interface EmitterBackend {
+
+    /**
+     * Gets the identifier of the output format, used to store rendered fragments
+     * @return Format identifier (e.g. the file extension)
+     */
+    default String getFormat() {
+        return getClass().getSimpleName();
+    }
+
+    /**
+     * Called after every rule that is not captured as a fragment: a streaming backend
+     * can write the text rendered so far and forget it
+     */
+    default void flush() {
+    }
+
+    /**
+     * Starts capturing the text rendered for the next rule
+     */
+    default void beginFragment() {
+    }
+
+    /**
+     * Stops capturing the text rendered since {@link #beginFragment()}
+     * @return Rendered text, or null if the backend cannot capture fragments
+     */
+    default String endFragment() {
+        return null;
+    }
+
+    /**
+     * Appends a fragment previously returned by {@link #endFragment()}, instead of rendering the rule again
+     * @param fragment Rendered text of a rule
+     */
+    default void appendFragment(String fragment) {
+    }
+
+    /**
+     * Called once, before any rule
+     */
+    default void onGrammarStart() {
+    }
+
+    /**
+     * Called for every lexical rule, in order
+     * @param rule Lexical rule
+     */
+    default void onLexicalRule(LexicalRule rule) {
+    }
+
+    /**
+     * Called when a parser rule starts
+     * @param rule Parser rule
+     */
+    default void onRule(ParserRule rule) {
+    }
+
+    /**
+     * Called before every alternative of the current rule
+     * @param index Position of the alternative, starting from 0
+     */
+    default void onAlternative(int index) {
+    }
+
+    /**
+     * Tells if the backend renders the lookahead of the choice points, see {@link #onLookahead(Lookahead)}
+     * @return True to have the grammar analyzed by {@link LookaheadAnalysis} before the walk
+     */
+    default boolean requiresLookahead() {
+        return false;
+    }
+
+    /**
+     * Called right after {@link #onAlternative(int)}, {@link #onOptionalStart()} or
+     * {@link #onRepetitionStart(boolean)} when one token does not decide whether to take
+     * the alternative or to enter the block
+     * @param lookahead Lookahead needed by the choice point
+     */
+    default void onLookahead(Lookahead lookahead) {
+    }
+
+    /**
+     * Called for a reference to a non-terminal
+     * @param name Non-terminal name, including angle brackets
+     */
+    default void onNonTerminal(String name) {
+    }
+
+    /**
+     * Called for a reference to a terminal (EOF included)
+     * @param name Terminal name
+     */
+    default void onTerminal(String name) {
+    }
+
+    /**
+     * Called when a grouping ( ... ) starts
+     */
+    default void onGroupingStart() {
+    }
+
+    /**
+     * Called when a grouping ( ... ) ends
+     */
+    default void onGroupingEnd() {
+    }
+
+    /**
+     * Called when an optionality [ ... ] starts
+     */
+    default void onOptionalStart() {
+    }
+
+    /**
+     * Called when an optionality [ ... ] ends
+     */
+    default void onOptionalEnd() {
+    }
+
+    /**
+     * Called when a repetition starts
+     * @param optional False for { ... } (one or more), true for {[ ... ]} (zero or more)
+     */
+    default void onRepetitionStart(boolean optional) {
+    }
+
+    /**
+     * Called when a repetition ends
+     * @param optional False for { ... } (one or more), true for {[ ... ]} (zero or more)
+     */
+    default void onRepetitionEnd(boolean optional) {
+    }
+
+    /**
+     * Called when a parser rule ends
+     * @param rule Parser rule
+     */
+    default void onRuleEnd(ParserRule rule) {
+    }
+
+    /**
+     * Called, in place of the rule callbacks, for a parser rule that starts a precedence
+     * chain: the backend renders the whole chain as a single rule with that name
+     * @param chain Precedence chain
+     */
+    default void onPrecedenceChain(PrecedenceChain chain) {
+    }
+
+    /**
+     * Called once, after the last rule
+     */
+    default void onGrammarEnd() {
+    }
+}
@@ -0,0 +1,349 @@
+package it.unisannio.g2j.emitters;
+
+import it.unisannio.g2j.analysis.Lookahead;
+import it.unisannio.g2j.analysis.LookaheadAnalysis;
+import it.unisannio.g2j.ir.Alternative;
+import it.unisannio.g2j.ir.Element;
+import it.unisannio.g2j.ir.ElementKind;
+import it.unisannio.g2j.ir.GrammarIR;
+import it.unisannio.g2j.ir.LexicalRule;
+import it.unisannio.g2j.ir.ParserRule;
+import it.unisannio.g2j.ir.PrecedenceChain;
+import it.unisannio.g2j.symbols.SymbolTable;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Walks a grammar once and forwards every construct to all the registered
+ * backends, so that all the output formats are produced by a single traversal.
+ * The symbol bookkeeping is done here, once, for all the backends.
+ * <p>
+ * On request, the text rendered for each rule is captured as a fragment per format;
+ * fragments rendered by a previous run can be passed back to skip rendering unchanged
+ * rules. Without capture the backends are flushed after every rule, so a streaming
+ * backend only holds the rule being rendered.
+ * The lookahead of a rule also depends on the rules that use it, so a fragment is
+ * replayed only if the rule still has the lookahead it was rendered with.
+ */
+public class GrammarEmitter {
+
+    private final List<EmitterBackend> backends = new ArrayList<>();
+    private final SymbolTable symbolTable = new SymbolTable();
+    private final Map<String, Map<String, String>> renderedFragments = new HashMap<>();
+
+    // Pseudo-format of the fragments that records the lookahead of the rule
+    private static final String LOOKAHEAD_FORMAT = "lookahead";
+    private LookaheadAnalysis lookaheadAnalysis;
+
+    // Backends that receive the callbacks of the rule being walked (none when replaying a fragment)
+    private List<EmitterBackend> active = backends;
+
+    /**
+     * Registers a backend
+     * @param backend Backend that receives the walk callbacks
+     * @return This emitter
+     */
+    public GrammarEmitter addBackend(EmitterBackend backend) {
+        backends.add(backend);
+        return this;
+    }
+
+    /**
+     * Walks the grammar, feeding every registered backend, without capturing fragments
+     * @param grammar Grammar to emit
+     */
+    public void emit(GrammarIR grammar) {
+        emit(grammar, Collections.emptyMap(), false);
+    }
+
+    /**
+     * Walks the grammar, feeding every registered backend and capturing the fragments
+     * of the rendered rules; the rules that have a cached fragment for every backend
+     * are not rendered again
+     * @param grammar         Grammar to emit
+     * @param cachedFragments Fragments rendered by a previous run, by rule name and format
+     */
+    public void emit(GrammarIR grammar, Map<String, Map<String, String>> cachedFragments) {
+        emit(grammar, cachedFragments, true);
+    }
+
+    /**
+     * Walks the grammar, feeding every registered backend; the rules that have a
+     * cached fragment for every backend are not rendered again
+     * @param grammar          Grammar to emit
+     * @param cachedFragments  Fragments rendered by a previous run, by rule name and format
+     * @param captureFragments True to capture the fragments of the rendered rules, see {@link #getRenderedFragments()}
+     */
+    public void emit(GrammarIR grammar, Map<String, Map<String, String>> cachedFragments, boolean captureFragments) {
+        lookaheadAnalysis = null;
+        renderedFragments.clear();
+        for (EmitterBackend backend : backends) {
+            if (backend.requiresLookahead()) {
+                lookaheadAnalysis = LookaheadAnalysis.of(grammar);
+                break;
+            }
+        }
+
+        for (EmitterBackend backend : backends) {
+            backend.onGrammarStart();
+        }
+
+        for (LexicalRule rule : grammar.getLexicalRules()) {
+            symbolTable.addTerminal(rule.getName(), rule.getDefinition());
+            if (!replayFragments(rule.getName(), null, cachedFragments)) {
+                beginFragments(captureFragments);
+                for (EmitterBackend backend : backends) {
+                    backend.onLexicalRule(rule);
+                }
+                endFragments(captureFragments, rule.getName(), null);
+            }
+        }
+
+        for (ParserRule rule : grammar.getParserRules()) {
+            String lookahead = describeLookahead(rule);
+            if (replayFragments(rule.getName(), lookahead, cachedFragments)) {
+                // Symbol bookkeeping only
+                active = Collections.emptyList();
+                emitRule(rule);
+                active = backends;
+            } else {
+                beginFragments(captureFragments);
+                emitRule(rule);
+                endFragments(captureFragments, rule.getName(), lookahead);
+            }
+        }
+
+        for (EmitterBackend backend : backends) {
+            backend.onGrammarEnd();
+        }
+    }
+
+    private boolean replayFragments(String ruleName, String lookahead, Map<String, Map<String, String>> cachedFragments) {
+        Map<String, String> fragments = cachedFragments.get(ruleName);
+        if (fragments == null || !Objects.equals(fragments.get(LOOKAHEAD_FORMAT), lookahead)) {
+            return false;
+        }
+        for (EmitterBackend backend : backends) {
+            if (!fragments.containsKey(backend.getFormat())) {
+                return false;
+            }
+        }
+        for (EmitterBackend backend : backends) {
+            backend.appendFragment(fragments.get(backend.getFormat()));
+        }
+        return true;
+    }
+
+    private void beginFragments(boolean captureFragments) {
+        if (captureFragments) {
+            for (EmitterBackend backend : backends) {
+                backend.beginFragment();
+            }
+        }
+    }
+
+    private void endFragments(boolean captureFragments, String ruleName, String lookahead) {
+        if (!captureFragments) {
+            for (EmitterBackend backend : backends) {
+                backend.flush();
+            }
+            return;
+        }
+        Map<String, String> fragments = new HashMap<>();
+        for (EmitterBackend backend : backends) {
+            String fragment = backend.endFragment();
+            if (fragment != null) {
+                fragments.put(backend.getFormat(), fragment);
+            }
+        }
+        if (lookahead != null) {
+            fragments.put(LOOKAHEAD_FORMAT, lookahead);
+        }
+        renderedFragments.put(ruleName, fragments);
+    }
+
+    /**
+     * Describes the lookahead of the choice points of a rule, in walk order
+     * @return Description, or null if no choice point of the rule needs a lookahead
+     */
+    private String describeLookahead(ParserRule rule) {
+        if (lookaheadAnalysis == null || rule.getPrecedenceChain() != null) {
+            return null;
+        }
+        List<Lookahead> lookaheads = new ArrayList<>();
+        for (Alternative alternative : rule.getAlternatives()) {
+            lookaheads.add(lookaheadAnalysis.getLookahead(alternative));
+            collectLookahead(alternative.getElements(), lookaheads);
+        }
+        return lookaheads.stream().allMatch(Objects::isNull) ? null : lookaheads.toString();
+    }
+
+    private void collectLookahead(List<Element> elements, List<Lookahead> lookaheads) {
+        for (Element element : elements) {
+            if (!element.isSymbol()) {
+                lookaheads.add(lookaheadAnalysis.getLookahead(element));
+                collectLookahead(element.getChildren(), lookaheads);
+            }
+        }
+    }
+
+    private void emitRule(ParserRule rule) {
+        if (rule.getPrecedenceChain() != null) {
+            emitPrecedenceChain(rule.getPrecedenceChain());
+            return;
+        }
+
+        String nonTerminal = rule.getName();
+        symbolTable.addNonTerminal(nonTerminal);
+        for (EmitterBackend backend : active) {
+            backend.onRule(rule);
+        }
+
+        List<Alternative> alternatives = rule.getAlternatives();
+        for (int i = 0; i < alternatives.size(); i++) {
+            for (EmitterBackend backend : active) {
+                backend.onAlternative(i);
+            }
+            notifyLookahead(alternatives.get(i));
+
+            // For tracking symbols in this production to add to the symbol table later
+            List<String> productionSymbols = new ArrayList<>();
+            for (Element element : alternatives.get(i).getElements()) {
+                if (element.isSymbol() && !element.getName().equals("EOF")) {
+                    productionSymbols.add(element.getName());
+                }
+                emitElement(element);
+            }
+            symbolTable.addProduction(nonTerminal, productionSymbols);
+        }
+
+        for (EmitterBackend backend : active) {
+            backend.onRuleEnd(rule);
+        }
+    }
+
+    private void emitPrecedenceChain(PrecedenceChain chain) {
+        // Bookkeeping of the single rule rendered: chain ::= chain op chain | ... | primary
+        String nonTerminal = chain.getName();
+        symbolTable.addNonTerminal(nonTerminal);
+        symbolTable.markAsUsed(nonTerminal);
+        symbolTable.markAsUsed(chain.getPrimary());
+        for (List<String> operators : chain.getOperators()) {
+            for (String operator : operators) {
+                symbolTable.markAsUsedTerminal(operator);
+                symbolTable.addProduction(nonTerminal, Arrays.asList(nonTerminal, operator, nonTerminal));
+            }
+        }
+        symbolTable.addProduction(nonTerminal, Collections.singletonList(chain.getPrimary()));
+
+        for (EmitterBackend backend : active) {
+            backend.onPrecedenceChain(chain);
+        }
+    }
+
+    private void emitElement(Element element) {
+        switch (element.getKind()) {
+            case NON_TERMINAL:
+                symbolTable.markAsUsed(element.getName());
+                for (EmitterBackend backend : active) {
+                    backend.onNonTerminal(element.getName());
+                }
+                break;
+            case TERMINAL:
+                if (!element.getName().equals("EOF")) {
+                    symbolTable.markAsUsedTerminal(element.getName());
+                }
+                for (EmitterBackend backend : active) {
+                    backend.onTerminal(element.getName());
+                }
+                break;
+            case GROUPING:
+                for (EmitterBackend backend : active) {
+                    backend.onGroupingStart();
+                }
+                emitElements(element.getChildren());
+                for (EmitterBackend backend : active) {
+                    backend.onGroupingEnd();
+                }
+                break;
+            case OPTIONALITY:
+                for (EmitterBackend backend : active) {
+                    backend.onOptionalStart();
+                }
+                notifyLookahead(element);
+                emitElements(element.getChildren());
+                for (EmitterBackend backend : active) {
+                    backend.onOptionalEnd();
+                }
+                break;
+            case REPETIVITY:
+            case REP_OPT:
+                boolean optional = element.getKind() == ElementKind.REP_OPT;
+                for (EmitterBackend backend : active) {
+                    backend.onRepetitionStart(optional);
+                }
+                notifyLookahead(element);
+                emitElements(element.getChildren());
+                for (EmitterBackend backend : active) {
+                    backend.onRepetitionEnd(optional);
+                }
+                break;
+        }
+    }
+
+    private void notifyLookahead(Alternative alternative) {
+        if (lookaheadAnalysis != null) {
+            notifyLookahead(lookaheadAnalysis.getLookahead(alternative));
+        }
+    }
+
+    private void notifyLookahead(Element block) {
+        if (lookaheadAnalysis != null) {
+            notifyLookahead(lookaheadAnalysis.getLookahead(block));
+        }
+    }
+
+    private void notifyLookahead(Lookahead lookahead) {
+        if (lookahead != null) {
+            for (EmitterBackend backend : active) {
+                backend.onLookahead(lookahead);
+            }
+        }
+    }
+
+    private void emitElements(List<Element> elements) {
+        for (Element element : elements) {
+            emitElement(element);
+        }
+    }
+
+    /**
+     * Gets the fragments rendered during the walk
+     * @return Rendered text by rule name and format, empty if the fragments were not captured
+     */
+    public Map<String, Map<String, String>> getRenderedFragments() {
+        return renderedFragments;
+    }
+
+    /**
+     * Gets the lookahead analysis of the last walk
+     * @return Lookahead of the choice points, or null if no backend requires it
+     */
+    public LookaheadAnalysis getLookaheadAnalysis() {
+        return lookaheadAnalysis;
+    }
+
+    /**
+     * Gets the symbol table built during the walk
+     * @return Symbol table containing the emitted symbols
+     */
+    public SymbolTable getSymbolTable() {
+        return symbolTable;
+    }
+}
@@ -0,0 +1,43 @@
+package it.unisannio.g2j.emitters;
+
+import it.unisannio.g2j.G2JParser;
+import org.antlr.v4.runtime.misc.Interval;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Text already rendered by a backend for the regular expressions of the lexical rules,
+ * so that every distinct regex subtree is rendered only once per output format.
+ * Regexes are identified by their source text, read straight from the input stream.
+ */
+public class RegexFragmentCache {
+
+    private final Map<String, String> fragments = new HashMap<>();
+
+    /**
+     * Gets the text rendered for an identical regex
+     * @param regex Regex subtree
+     * @return Rendered text, or null if no identical regex has been rendered yet
+     */
+    public String get(G2JParser.RegexContext regex) {
+        return fragments.get(sourceText(regex));
+    }
+
+    /**
+     * Saves the text rendered for a regex
+     * @param regex    Regex subtree
+     * @param fragment Rendered text
+     */
+    public void put(G2JParser.RegexContext regex, String fragment) {
+        fragments.put(sourceText(regex), fragment);
+    }
+
+    private static String sourceText(G2JParser.RegexContext regex) {
+        if (regex.start == null || regex.stop == null || regex.stop.getStopIndex() < regex.start.getStartIndex()) {
+            return regex.getText();
+        }
+        return regex.start.getInputStream().getText(
+                Interval.of(regex.start.getStartIndex(), regex.stop.getStopIndex()));
+    }
+}
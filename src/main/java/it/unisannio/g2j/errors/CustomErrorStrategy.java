@@ -14,7 +14,8 @@ import java.util.Map;
  */
 public class CustomErrorStrategy extends DefaultErrorStrategy {
 
-    public static int sintaxErrorNum = 0;
+    // Contatore per istanza: ogni parser ha la propria strategia, anche in compilazione parallela
+    private int sintaxErrorNum = 0;
 
     // Mappature parentesi aperte → chiuse
     private static final Map<Integer, Integer> openToCloseDelimMap = new HashMap<>();
@@ -30,6 +31,13 @@ public class CustomErrorStrategy extends DefaultErrorStrategy {
         delimiterNames.put(G2JParser.LEFT_CURLY_BRACKET, "parentesi graffa");
     }
 
+    /**
+     * Restituisce il numero di errori sintattici gestiti durante il parsing.
+     */
+    public int getSintaxErrorNum() {
+        return sintaxErrorNum;
+    }
+
     // Disabilita il sync automatico (default di ANTLR)
     @Override
     public void sync(Parser recognizer) {
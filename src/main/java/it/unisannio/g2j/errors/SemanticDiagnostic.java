@@ -0,0 +1,97 @@
+package it.unisannio.g2j.errors;
+
+import it.unisannio.g2j.symbols.SourcePosition;
+
+import java.util.Comparator;
+
+/**
+ * Finding of a semantic check, about one symbol of the grammar
+ */
+public final class SemanticDiagnostic {
+
+    /**
+     * Orders the diagnostics as they appear in the grammar file, the ones without a position last
+     */
+    public static final Comparator<SemanticDiagnostic> BY_POSITION = Comparator
+            .comparingInt((SemanticDiagnostic diagnostic) ->
+                    diagnostic.position == null ? Integer.MAX_VALUE : diagnostic.position.getLine())
+            .thenComparingInt(diagnostic -> diagnostic.position == null ? 0 : diagnostic.position.getColumn())
+            .thenComparing(diagnostic -> diagnostic.kind)
+            .thenComparing(diagnostic -> diagnostic.symbol);
+
+    /**
+     * Kinds of findings, one for each semantic check
+     */
+    public enum Kind {
+        UNDEFINED_NON_TERMINAL("Non terminale usato ma NON DEFINITO"),
+        UNDEFINED_TERMINAL("Terminale usato ma NON DEFINITO"),
+        UNUSED_NON_TERMINAL("Non terminale definito ma NON USATO (non raggiungibile da <Program>)"),
+        UNUSED_TERMINAL("Terminale definito ma NON USATO"),
+        NON_PRODUCTIVE_NON_TERMINAL("Non terminale NON PRODUTTIVO (non genera stringhe di terminali)");
+
+        private final String description;
+
+        Kind(String description) {
+            this.description = description;
+        }
+
+        /**
+         * Gets the description of the finding
+         * @return Description, in the language of the console messages
+         */
+        public String getDescription() {
+            return description;
+        }
+    }
+
+    private final Kind kind;
+    private final String symbol;
+    private final SourcePosition position;
+
+    /**
+     * Creates a new diagnostic
+     * @param kind     Kind of finding
+     * @param symbol   Symbol the finding is about
+     * @param position Position of the symbol in the grammar file (its definition, or its first
+     *                 use for the undefined symbols), null if unknown
+     */
+    public SemanticDiagnostic(Kind kind, String symbol, SourcePosition position) {
+        this.kind = kind;
+        this.symbol = symbol;
+        this.position = position;
+    }
+
+    /**
+     * Gets the kind of finding
+     * @return Kind of finding
+     */
+    public Kind getKind() {
+        return kind;
+    }
+
+    /**
+     * Gets the symbol the finding is about
+     * @return Symbol name
+     */
+    public String getSymbol() {
+        return symbol;
+    }
+
+    /**
+     * Gets the position of the symbol in the grammar file
+     * @return Position, or null if unknown
+     */
+    public SourcePosition getPosition() {
+        return position;
+    }
+
+    /**
+     * Renders the diagnostic like the syntax errors, e.g.
+     * {@code Errore semantico alla linea 12:4 - Terminale usato ma NON DEFINITO: NUM}
+     */
+    @Override
+    public String toString() {
+        return "Errore semantico" + (position == null ? "" : " alla linea " + position)
+                + " - " + kind.getDescription() + ": " + symbol;
+    }
+}
@@ -1,7 +0,0 @@
-package it.unisannio.g2j.exceptions;
-
-public class SemanticException extends RuntimeException{
-    public SemanticException(String message) {
-        super(message);
-    }
-}
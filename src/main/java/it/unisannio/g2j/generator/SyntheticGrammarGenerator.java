@@ -0,0 +1,339 @@
+package it.unisannio.g2j.generator;
+
+import it.unisannio.g2j.symbols.SymbolTable;
+
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Generates valid G2J EBNF grammars of arbitrary size, to measure how the
+ * compiler scales. The same seed and settings always produce the same grammar.
+ * <p>
+ * The generated grammars pass the semantic checks: every terminal and non-terminal
+ * is defined and used, and every rule has an alternative that only refers to the
+ * next rule, so that all the rules are productive. Left recursion is only direct
+ * and only where requested by {@link #setLeftRecursiveFraction(double)}.
+ */
+public class SyntheticGrammarGenerator {
+
+    private static final String USAGE =
+            "Uso: SyntheticGrammarGenerator [--out <file>] [--seed <n>] [--terminals <n>] [--non-terminals <n>]\n" +
+            "     [--alternatives <n>] [--symbols <n>] [--nesting-depth <n>] [--block-probability <p>]\n" +
+            "     [--left-recursive <p>] [--shared-prefix <p>]";
+
+    private long seed = 42;
+    private int terminals = 20;
+    private int nonTerminals = 50;
+    private int maxAlternatives = 4;
+    private int maxSymbols = 5;
+    private int nestingDepth = 2;
+    private double blockProbability = 0.15;
+    private double leftRecursiveFraction = 0.1;
+    private double sharedPrefixFraction = 0.2;
+
+    /**
+     * Sets the seed of the pseudo-random choices
+     * @param seed Seed
+     * @return This generator
+     */
+    public SyntheticGrammarGenerator setSeed(long seed) {
+        this.seed = seed;
+        return this;
+    }
+
+    /**
+     * Sets the number of lexical rules
+     * @param terminals Number of terminals (at least 1)
+     * @return This generator
+     */
+    public SyntheticGrammarGenerator setTerminals(int terminals) {
+        this.terminals = requireAtLeast("terminals", terminals, 1);
+        return this;
+    }
+
+    /**
+     * Sets the number of parsing rules, besides &lt;Program&gt;
+     * @param nonTerminals Number of non-terminals (at least 1)
+     * @return This generator
+     */
+    public SyntheticGrammarGenerator setNonTerminals(int nonTerminals) {
+        this.nonTerminals = requireAtLeast("nonTerminals", nonTerminals, 1);
+        return this;
+    }
+
+    /**
+     * Sets the maximum number of alternatives of a rule
+     * @param maxAlternatives Maximum number of alternatives (at least 1)
+     * @return This generator
+     */
+    public SyntheticGrammarGenerator setMaxAlternatives(int maxAlternatives) {
+        this.maxAlternatives = requireAtLeast("maxAlternatives", maxAlternatives, 1);
+        return this;
+    }
+
+    /**
+     * Sets the maximum number of elements of an alternative or of a block
+     * @param maxSymbols Maximum number of elements (at least 1)
+     * @return This generator
+     */
+    public SyntheticGrammarGenerator setMaxSymbols(int maxSymbols) {
+        this.maxSymbols = requireAtLeast("maxSymbols", maxSymbols, 1);
+        return this;
+    }
+
+    /**
+     * Sets the maximum nesting depth of the () [] {} and {[ ]} blocks
+     * @param nestingDepth Maximum depth, 0 for no blocks
+     * @return This generator
+     */
+    public SyntheticGrammarGenerator setNestingDepth(int nestingDepth) {
+        this.nestingDepth = requireAtLeast("nestingDepth", nestingDepth, 0);
+        return this;
+    }
+
+    /**
+     * Sets the probability that an element is a block, while the nesting depth allows it
+     * @param blockProbability Probability between 0 and 1
+     * @return This generator
+     */
+    public SyntheticGrammarGenerator setBlockProbability(double blockProbability) {
+        this.blockProbability = requireFraction("blockProbability", blockProbability);
+        return this;
+    }
+
+    /**
+     * Sets the fraction of rules with a directly left-recursive alternative
+     * @param leftRecursiveFraction Fraction between 0 and 1
+     * @return This generator
+     */
+    public SyntheticGrammarGenerator setLeftRecursiveFraction(double leftRecursiveFraction) {
+        this.leftRecursiveFraction = requireFraction("leftRecursiveFraction", leftRecursiveFraction);
+        return this;
+    }
+
+    /**
+     * Sets the fraction of rules whose alternatives start with a common prefix
+     * @param sharedPrefixFraction Fraction between 0 and 1
+     * @return This generator
+     */
+    public SyntheticGrammarGenerator setSharedPrefixFraction(double sharedPrefixFraction) {
+        this.sharedPrefixFraction = requireFraction("sharedPrefixFraction", sharedPrefixFraction);
+        return this;
+    }
+
+    /**
+     * Generates the grammar
+     * @return Grammar text
+     */
+    public String generate() {
+        StringBuilder sb = new StringBuilder();
+        try {
+            generate(sb);
+        } catch (IOException e) {
+            throw new IllegalStateException(e); // StringBuilder never throws
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Generates the grammar, writing it rule by rule
+     * @param out Destination of the grammar text
+     */
+    public void generate(Appendable out) throws IOException {
+        Random random = new Random(seed);
+        int[] nextUnusedTerminal = {0};
+
+        out.append("/* Grammatica sintetica: seed=").append(String.valueOf(seed))
+                .append(", terminali=").append(String.valueOf(terminals))
+                .append(", non terminali=").append(String.valueOf(nonTerminals)).append(" */\n\n");
+
+        for (int t = 0; t < terminals; t++) {
+            out.append(terminal(t)).append(" ::= \"").append(SymbolTable.letters(t).toLowerCase()).append("\" ;\n");
+        }
+        out.append('\n');
+        out.append("<Program> ::= ").append(nonTerminal(0)).append(" EOF ;\n");
+
+        for (int i = 0; i < nonTerminals; i++) {
+            String name = nonTerminal(i);
+            List<String> alternatives = new ArrayList<>();
+
+            // Alternativa che garantisce l'uso e la produttività della regola successiva
+            StringBuilder base = new StringBuilder(pickTerminal(random, nextUnusedTerminal));
+            if (i + 1 < nonTerminals) {
+                base.append(' ').append(nonTerminal(i + 1));
+            }
+            alternatives.add(base.toString());
+
+            int count = 1 + random.nextInt(maxAlternatives);
+            while (alternatives.size() < count) {
+                alternatives.add(alternative(random, nextUnusedTerminal));
+            }
+
+            // Prefisso comune a tutte le alternative
+            if (alternatives.size() > 1 && random.nextDouble() < sharedPrefixFraction) {
+                String prefix = pickTerminal(random, nextUnusedTerminal);
+                if (random.nextBoolean()) {
+                    prefix += " " + pickTerminal(random, nextUnusedTerminal);
+                }
+                for (int a = 0; a < alternatives.size(); a++) {
+                    alternatives.set(a, prefix + " " + alternatives.get(a));
+                }
+            }
+
+            // Ricorsione sinistra diretta
+            if (random.nextDouble() < leftRecursiveFraction) {
+                alternatives.add(name + " " + alternative(random, nextUnusedTerminal));
+            }
+
+            // L'ultima regola usa i terminali rimasti inutilizzati
+            if (i == nonTerminals - 1) {
+                while (nextUnusedTerminal[0] < terminals) {
+                    alternatives.add(terminal(nextUnusedTerminal[0]++));
+                }
+            }
+
+            out.append(name).append(" ::= ").append(String.join(" | ", alternatives)).append(" ;\n");
+        }
+    }
+
+    /**
+     * Alternative starting with a terminal, so that it adds no left recursion
+     */
+    private String alternative(Random random, int[] nextUnusedTerminal) {
+        StringBuilder sb = new StringBuilder(pickTerminal(random, nextUnusedTerminal));
+        int symbols = random.nextInt(maxSymbols);
+        for (int s = 0; s < symbols; s++) {
+            sb.append(' ').append(element(random, nextUnusedTerminal, 0));
+        }
+        return sb.toString();
+    }
+
+    private String element(Random random, int[] nextUnusedTerminal, int depth) {
+        if (depth < nestingDepth && random.nextDouble() < blockProbability) {
+            StringBuilder content = new StringBuilder();
+            int symbols = 1 + random.nextInt(maxSymbols);
+            for (int s = 0; s < symbols; s++) {
+                if (s > 0) {
+                    content.append(' ');
+                }
+                content.append(element(random, nextUnusedTerminal, depth + 1));
+            }
+            switch (random.nextInt(4)) {
+                case 0:
+                    return "( " + content + " )";
+                case 1:
+                    return "[ " + content + " ]";
+                case 2:
+                    // Il contenuto deve iniziare con un simbolo, altrimenti "{ [" verrebbe letto come {[ ]}
+                    return "{ " + pickTerminal(random, nextUnusedTerminal) + " " + content + " }";
+                default:
+                    return "{[ " + content + " ]}";
+            }
+        }
+        if (random.nextInt(4) == 0) {
+            return nonTerminal(random.nextInt(nonTerminals));
+        }
+        return pickTerminal(random, nextUnusedTerminal);
+    }
+
+    /**
+     * Picks the next unused terminal while there is one, a random terminal afterwards
+     */
+    private String pickTerminal(Random random, int[] nextUnusedTerminal) {
+        if (nextUnusedTerminal[0] < terminals) {
+            return terminal(nextUnusedTerminal[0]++);
+        }
+        return terminal(random.nextInt(terminals));
+    }
+
+    private static String terminal(int index) {
+        return "T_" + SymbolTable.letters(index);
+    }
+
+    private static String nonTerminal(int index) {
+        return "<Rule_" + SymbolTable.letters(index).toLowerCase() + ">";
+    }
+
+    private static int requireAtLeast(String name, int value, int min) {
+        if (value < min) {
+            throw new IllegalArgumentException(name + " deve essere almeno " + min + ": " + value);
+        }
+        return value;
+    }
+
+    private static double requireFraction(String name, double value) {
+        if (value < 0 || value > 1) {
+            throw new IllegalArgumentException(name + " deve essere compreso tra 0 e 1: " + value);
+        }
+        return value;
+    }
+
+    public static void main(String[] args) throws IOException {
+        SyntheticGrammarGenerator generator = new SyntheticGrammarGenerator();
+        String outputFile = null;
+
+        for (int i = 0; i < args.length; i++) {
+            String option = args[i];
+            if (i + 1 >= args.length) {
+                System.err.println("Valore mancante per l'opzione " + option);
+                System.err.println(USAGE);
+                System.exit(2);
+            }
+            String value = args[++i];
+            switch (option) {
+                case "--out":
+                    outputFile = value;
+                    break;
+                case "--seed":
+                    generator.setSeed(Long.parseLong(value));
+                    break;
+                case "--terminals":
+                    generator.setTerminals(Integer.parseInt(value));
+                    break;
+                case "--non-terminals":
+                    generator.setNonTerminals(Integer.parseInt(value));
+                    break;
+                case "--alternatives":
+                    generator.setMaxAlternatives(Integer.parseInt(value));
+                    break;
+                case "--symbols":
+                    generator.setMaxSymbols(Integer.parseInt(value));
+                    break;
+                case "--nesting-depth":
+                    generator.setNestingDepth(Integer.parseInt(value));
+                    break;
+                case "--block-probability":
+                    generator.setBlockProbability(Double.parseDouble(value));
+                    break;
+                case "--left-recursive":
+                    generator.setLeftRecursiveFraction(Double.parseDouble(value));
+                    break;
+                case "--shared-prefix":
+                    generator.setSharedPrefixFraction(Double.parseDouble(value));
+                    break;
+                default:
+                    System.err.println("Opzione sconosciuta: " + option);
+                    System.err.println(USAGE);
+                    System.exit(2);
+            }
+        }
+
+        if (outputFile == null) {
+            Writer out = new OutputStreamWriter(System.out, StandardCharsets.UTF_8);
+            generator.generate(out);
+            out.flush();
+        } else {
+            try (Writer out = Files.newBufferedWriter(Paths.get(outputFile), StandardCharsets.UTF_8)) {
+                generator.generate(out);
+            }
+            System.out.println("✅ Grammatica sintetica salvata nel file: " + outputFile);
+        }
+    }
+}
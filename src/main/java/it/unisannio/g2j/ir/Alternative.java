@@ -0,0 +1,37 @@
+package it.unisannio.g2j.ir;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * One alternative of a parser rule: a sequence of elements
+ */
+public class Alternative {
+    private final List<Element> elements;
+
+    /**
+     * Creates a new alternative
+     * @param elements Elements of the alternative, in order
+     */
+    public Alternative(List<Element> elements) {
+        this.elements = Collections.unmodifiableList(elements);
+    }
+
+    /**
+     * Gets the elements of the alternative
+     * @return Elements in order
+     */
+    public List<Element> getElements() {
+        return elements;
+    }
+
+    @Override
+    public String toString() {
+        return join(elements);
+    }
+
+    static String join(List<Element> elements) {
+        return elements.stream().map(Element::toString).collect(Collectors.joining(" "));
+    }
+}
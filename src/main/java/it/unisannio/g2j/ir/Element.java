@@ -0,0 +1,99 @@
+package it.unisannio.g2j.ir;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Element of a production: a reference to a grammar symbol or an EBNF block
+ * (grouping, optionality, repetition) wrapping a sequence of elements
+ */
+public class Element {
+    private final ElementKind kind;
+    private final String name;
+    private final List<Element> children;
+
+    private Element(ElementKind kind, String name, List<Element> children) {
+        this.kind = kind;
+        this.name = name;
+        this.children = children;
+    }
+
+    /**
+     * Creates a reference to a non-terminal
+     * @param name Non-terminal name, including angle brackets
+     */
+    public static Element nonTerminal(String name) {
+        return new Element(ElementKind.NON_TERMINAL, name, Collections.emptyList());
+    }
+
+    /**
+     * Creates a reference to a terminal
+     * @param name Terminal name
+     */
+    public static Element terminal(String name) {
+        return new Element(ElementKind.TERMINAL, name, Collections.emptyList());
+    }
+
+    /**
+     * Creates an EBNF block
+     * @param kind     Block kind (GROUPING, OPTIONALITY, REPETIVITY or REP_OPT)
+     * @param children Elements inside the block
+     */
+    public static Element block(ElementKind kind, List<Element> children) {
+        if (kind == ElementKind.NON_TERMINAL || kind == ElementKind.TERMINAL) {
+            throw new IllegalArgumentException("Tipo di blocco non valido: " + kind);
+        }
+        return new Element(kind, null, Collections.unmodifiableList(children));
+    }
+
+    /**
+     * Gets the element kind
+     * @return Element kind
+     */
+    public ElementKind getKind() {
+        return kind;
+    }
+
+    /**
+     * Gets the referenced symbol name (for terminals and non-terminals)
+     * @return Symbol name, or null for blocks
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Gets the elements inside the block
+     * @return Block content, empty for symbol references
+     */
+    public List<Element> getChildren() {
+        return children;
+    }
+
+    /**
+     * Checks if the element is a reference to a symbol
+     * @return True for terminals and non-terminals
+     */
+    public boolean isSymbol() {
+        return kind == ElementKind.NON_TERMINAL || kind == ElementKind.TERMINAL;
+    }
+
+    /**
+     * Renders the element in the G2J EBNF notation
+     */
+    @Override
+    public String toString() {
+        switch (kind) {
+            case GROUPING:
+                return "( " + Alternative.join(children) + " )";
+            case OPTIONALITY:
+                return "[ " + Alternative.join(children) + " ]";
+            case REPETIVITY:
+                return "{ " + Alternative.join(children) + " }";
+            case REP_OPT:
+                return "{[ " + Alternative.join(children) + " ]}";
+            default:
+                return name;
+        }
+    }
+}
@@ -0,0 +1,13 @@
+package it.unisannio.g2j.ir;
+
+/**
+ * Enum representing the kind of an element of a production
+ */
+public enum ElementKind {
+    NON_TERMINAL,
+    TERMINAL,
+    GROUPING,       // ( ... )
+    OPTIONALITY,    // [ ... ]
+    REPETIVITY,     // { ... }
+    REP_OPT         // {[ ... ]}
+}
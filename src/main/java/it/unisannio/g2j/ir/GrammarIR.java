@@ -0,0 +1,54 @@
+package it.unisannio.g2j.ir;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * In-memory representation of a (possibly optimized) grammar, handed over
+ * from the semantic analysis to the emitters.
+ */
+public class GrammarIR {
+    private final List<LexicalRule> lexicalRules;
+    private final List<ParserRule> parserRules;
+
+    /**
+     * Creates a new grammar
+     * @param lexicalRules Lexical rules, in emission order
+     * @param parserRules  Parser rules, in emission order
+     */
+    public GrammarIR(List<LexicalRule> lexicalRules, List<ParserRule> parserRules) {
+        this.lexicalRules = Collections.unmodifiableList(lexicalRules);
+        this.parserRules = Collections.unmodifiableList(parserRules);
+    }
+
+    /**
+     * Gets the lexical rules
+     * @return Lexical rules in emission order
+     */
+    public List<LexicalRule> getLexicalRules() {
+        return lexicalRules;
+    }
+
+    /**
+     * Gets the parser rules
+     * @return Parser rules in emission order
+     */
+    public List<ParserRule> getParserRules() {
+        return parserRules;
+    }
+
+    /**
+     * Writes the grammar in the G2J EBNF notation
+     * @param out Destination of the text
+     */
+    public void writeTo(Appendable out) throws IOException {
+        for (LexicalRule rule : lexicalRules) {
+            out.append(rule.toString()).append('\n');
+        }
+        out.append('\n');
+        for (ParserRule rule : parserRules) {
+            out.append(rule.toString()).append('\n');
+        }
+    }
+}
@@ -0,0 +1,150 @@
+package it.unisannio.g2j.ir;
+
+import it.unisannio.g2j.G2JParser;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Builds a {@link GrammarIR} from the flat productions of the symbol table,
+ * where EBNF blocks are spelled as delimiter tokens ("(", "[", "{" ...).
+ */
+public class GrammarIRBuilder {
+    private final List<LexicalRule> lexicalRules = new ArrayList<>();
+    private final List<ParserRule> parserRules = new ArrayList<>();
+
+    /**
+     * Adds a lexical rule
+     * @param name       Terminal name
+     * @param definition Regular expression as written in the input
+     * @param context    Parse subtree of the rule
+     * @return This builder
+     */
+    public GrammarIRBuilder addLexicalRule(String name, String definition, G2JParser.LexRuleContext context) {
+        lexicalRules.add(new LexicalRule(name, definition, context));
+        return this;
+    }
+
+    /**
+     * Adds a parser rule
+     * @param name        Non-terminal name
+     * @param productions Flat productions of the non-terminal
+     * @return This builder
+     */
+    public GrammarIRBuilder addParserRule(String name, List<List<String>> productions) {
+        return addParserRule(name, productions, null);
+    }
+
+    /**
+     * Adds a parser rule that starts a precedence chain
+     * @param name            Non-terminal name
+     * @param productions     Flat productions of the non-terminal
+     * @param precedenceChain Precedence chain started by the rule, or null
+     * @return This builder
+     */
+    public GrammarIRBuilder addParserRule(String name, List<List<String>> productions,
+                                          PrecedenceChain precedenceChain) {
+        List<Alternative> alternatives = new ArrayList<>();
+        for (List<String> production : productions) {
+            alternatives.add(toAlternative(production));
+        }
+        parserRules.add(new ParserRule(name, alternatives, precedenceChain));
+        return this;
+    }
+
+    /**
+     * Creates the grammar
+     * @return Grammar with the rules added so far
+     */
+    public GrammarIR build() {
+        return new GrammarIR(new ArrayList<>(lexicalRules), new ArrayList<>(parserRules));
+    }
+
+    /**
+     * Converts a flat production into an alternative
+     * @param production Symbols and delimiters of the production
+     * @return Structured alternative
+     */
+    public static Alternative toAlternative(List<String> production) {
+        List<String> tokens = splitDelimiters(production);
+        int[] position = {0};
+        List<Element> elements = parseSequence(tokens, position);
+        if (position[0] < tokens.size()) {
+            throw new IllegalArgumentException("Delimitatore non bilanciato '" + tokens.get(position[0])
+                    + "' nella produzione " + production);
+        }
+        return new Alternative(elements);
+    }
+
+    /**
+     * Splits tokens with attached delimiters, such as "[&lt;ExprTail&gt;]", into separate tokens
+     * @param production Symbols and delimiters of a production
+     * @return Symbols and delimiters, one per token
+     */
+    public static List<String> splitDelimiters(List<String> production) {
+        List<String> tokens = new ArrayList<>();
+        for (String token : production) {
+            int start = 0;
+            int end = token.length();
+            while (end - start > 1 && isOpening(token.charAt(start))) {
+                tokens.add(String.valueOf(token.charAt(start++)));
+            }
+            int closingStart = end;
+            while (closingStart - start > 1 && isClosing(token.charAt(closingStart - 1))) {
+                closingStart--;
+            }
+            tokens.add(token.substring(start, closingStart));
+            for (int i = closingStart; i < end; i++) {
+                tokens.add(String.valueOf(token.charAt(i)));
+            }
+        }
+        return tokens;
+    }
+
+    private static List<Element> parseSequence(List<String> tokens, int[] position) {
+        List<Element> elements = new ArrayList<>();
+        while (position[0] < tokens.size()) {
+            String token = tokens.get(position[0]);
+            if (token.length() == 1 && isClosing(token.charAt(0))) {
+                break;
+            }
+            position[0]++;
+            switch (token) {
+                case "(":
+                    elements.add(Element.block(ElementKind.GROUPING, parseBlock(tokens, position, ")")));
+                    break;
+                case "[":
+                    elements.add(Element.block(ElementKind.OPTIONALITY, parseBlock(tokens, position, "]")));
+                    break;
+                case "{":
+                    List<Element> content = parseBlock(tokens, position, "}");
+                    if (content.size() == 1 && content.get(0).getKind() == ElementKind.OPTIONALITY) {
+                        elements.add(Element.block(ElementKind.REP_OPT, content.get(0).getChildren()));
+                    } else {
+                        elements.add(Element.block(ElementKind.REPETIVITY, content));
+                    }
+                    break;
+                default:
+                    elements.add(token.startsWith("<") ? Element.nonTerminal(token) : Element.terminal(token));
+            }
+        }
+        return elements;
+    }
+
+    private static List<Element> parseBlock(List<String> tokens, int[] position, String closing) {
+        List<Element> content = parseSequence(tokens, position);
+        if (position[0] >= tokens.size() || !tokens.get(position[0]).equals(closing)) {
+            throw new IllegalArgumentException("Manca il delimitatore '" + closing + "' in " + tokens);
+        }
+        position[0]++;
+        return content;
+    }
+
+    private static boolean isOpening(char c) {
+        return c == '(' || c == '[' || c == '{';
+    }
+
+    private static boolean isClosing(char c) {
+        return c == ')' || c == ']' || c == '}';
+    }
+}
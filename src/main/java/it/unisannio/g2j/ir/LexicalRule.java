@@ -0,0 +1,55 @@
+package it.unisannio.g2j.ir;
+
+import it.unisannio.g2j.G2JParser;
+
+/**
+ * Lexical rule of the grammar: a terminal and its regular expression.
+ * Lexical rules are not changed by the optimizations, so the rule keeps the
+ * parse subtree of its regular expression, which the emitters translate.
+ */
+public class LexicalRule {
+    private final String name;
+    private final String definition;
+    private final G2JParser.LexRuleContext context;
+
+    /**
+     * Creates a new lexical rule
+     * @param name       Terminal name
+     * @param definition Regular expression as written in the input
+     * @param context    Parse subtree of the rule
+     */
+    public LexicalRule(String name, String definition, G2JParser.LexRuleContext context) {
+        this.name = name;
+        this.definition = definition;
+        this.context = context;
+    }
+
+    /**
+     * Gets the terminal name
+     * @return Terminal name
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Gets the regular expression as written in the input
+     * @return Definition string
+     */
+    public String getDefinition() {
+        return definition;
+    }
+
+    /**
+     * Gets the parse subtree of the rule
+     * @return Lexical rule context
+     */
+    public G2JParser.LexRuleContext getContext() {
+        return context;
+    }
+
+    @Override
+    public String toString() {
+        return name + "::=" + definition + ";";
+    }
+}
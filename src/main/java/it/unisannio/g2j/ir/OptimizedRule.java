@@ -0,0 +1,108 @@
+package it.unisannio.g2j.ir;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Result of the optimization of a single rule of the input grammar: the new
+ * productions of the rule and of the non-terminals created while optimizing it,
+ * in flat form (symbols and delimiters).
+ */
+public class OptimizedRule implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private final String name;
+    private final LinkedHashMap<String, List<List<String>>> rules = new LinkedHashMap<>();
+    private final LinkedHashMap<String, String> parents = new LinkedHashMap<>();
+    private final int recursionSymbols;
+    private final ArrayList<List<String>> inlinedProductions;
+
+    /**
+     * Creates a new optimization result
+     * @param name             Non-terminal of the input grammar
+     * @param rules            Optimized productions of the non-terminal and of the ones derived from it
+     * @param parents          Rule each derived non-terminal was created from
+     * @param recursionSymbols   Number of left-recursive symbols found while optimizing it
+     * @param inlinedProductions Productions of the non-terminal before the factorization, the ones
+     *                           copied into its callers by the inlining (null if not available)
+     */
+    public OptimizedRule(String name, Map<String, List<List<String>>> rules, Map<String, String> parents,
+                         int recursionSymbols, List<List<String>> inlinedProductions) {
+        this.name = name;
+        this.parents.putAll(parents);
+        this.recursionSymbols = recursionSymbols;
+        this.inlinedProductions = inlinedProductions == null ? null : copy(inlinedProductions);
+        for (Map.Entry<String, List<List<String>>> entry : rules.entrySet()) {
+            this.rules.put(entry.getKey(), copy(entry.getValue()));
+        }
+    }
+
+    private static ArrayList<List<String>> copy(List<List<String>> productions) {
+        ArrayList<List<String>> copy = new ArrayList<>();
+        for (List<String> production : productions) {
+            copy.add(new ArrayList<>(production));
+        }
+        return copy;
+    }
+
+    /**
+     * Gets the non-terminal of the input grammar
+     * @return Non-terminal name
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Gets the optimized productions, starting with the ones of the non-terminal itself
+     * @return Map of non-terminals to their productions
+     */
+    public Map<String, List<List<String>>> getRules() {
+        return rules;
+    }
+
+    /**
+     * Gets the rule each derived non-terminal was created from: the non-terminal itself
+     * or another derived non-terminal (e.g. a suffix rule factorized again)
+     * @return Map of derived non-terminals to their parent rule
+     */
+    public Map<String, String> getParents() {
+        return parents;
+    }
+
+    /**
+     * Gets the non-terminals created directly from a rule
+     * @param rule Non-terminal itself or one of the derived non-terminals
+     * @return Derived non-terminals in creation order
+     */
+    public List<String> getChildren(String rule) {
+        List<String> children = new ArrayList<>();
+        for (Map.Entry<String, String> entry : parents.entrySet()) {
+            if (entry.getValue().equals(rule)) {
+                children.add(entry.getKey());
+            }
+        }
+        return children;
+    }
+
+    /**
+     * Gets the productions of the non-terminal after the elimination of recursion and the
+     * inlining, before the factorization: a compilation that reuses this result copies them
+     * into the callers, like a compilation from scratch would
+     * @return Productions before the factorization, or null if not available
+     */
+    public List<List<String>> getInlinedProductions() {
+        return inlinedProductions;
+    }
+
+    /**
+     * Gets the number of left-recursive symbols found while optimizing the rule
+     * @return Number of recursive symbols
+     */
+    public int getRecursionSymbols() {
+        return recursionSymbols;
+    }
+}
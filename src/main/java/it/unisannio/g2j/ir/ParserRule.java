@@ -0,0 +1,64 @@
+package it.unisannio.g2j.ir;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Parser rule of the grammar: a non-terminal and its alternatives
+ */
+public class ParserRule {
+    private final String name;
+    private final List<Alternative> alternatives;
+    private final PrecedenceChain precedenceChain;
+
+    /**
+     * Creates a new parser rule
+     * @param name         Non-terminal name, including angle brackets
+     * @param alternatives Alternatives of the rule, in order
+     */
+    public ParserRule(String name, List<Alternative> alternatives) {
+        this(name, alternatives, null);
+    }
+
+    /**
+     * Creates a new parser rule that starts a precedence chain
+     * @param name            Non-terminal name, including angle brackets
+     * @param alternatives    Alternatives of the rule, in order
+     * @param precedenceChain Precedence chain started by the rule, or null
+     */
+    public ParserRule(String name, List<Alternative> alternatives, PrecedenceChain precedenceChain) {
+        this.name = name;
+        this.alternatives = Collections.unmodifiableList(alternatives);
+        this.precedenceChain = precedenceChain;
+    }
+
+    /**
+     * Gets the non-terminal name
+     * @return Non-terminal name
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Gets the alternatives of the rule
+     * @return Alternatives in order
+     */
+    public List<Alternative> getAlternatives() {
+        return alternatives;
+    }
+
+    /**
+     * Gets the precedence chain started by the rule, which emitters can render in place of the alternatives
+     * @return Precedence chain, or null if the rule does not start one
+     */
+    public PrecedenceChain getPrecedenceChain() {
+        return precedenceChain;
+    }
+
+    @Override
+    public String toString() {
+        return name + " ::= " + alternatives.stream().map(Alternative::toString).collect(Collectors.joining(" | ")) + " ;";
+    }
+}
@@ -0,0 +1,107 @@
+package it.unisannio.g2j.ir;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Chain of binary-operator precedence levels, such as
+ * <pre>
+ * &lt;Expression&gt; ::= &lt;Expression&gt; SUM_DIF &lt;MulDivExpr&gt; | &lt;MulDivExpr&gt; ;
+ * &lt;MulDivExpr&gt; ::= &lt;MulDivExpr&gt; MUL_DIV &lt;Factor&gt; | &lt;Factor&gt; ;
+ * </pre>
+ * where every level applies its left-associative operators to the next level, down
+ * to a primary rule. Emitters can render the whole chain as a single rule.
+ */
+public class PrecedenceChain {
+    private final String name;
+    private final List<String> levels;
+    private final List<List<String>> operators;
+    private final String primary;
+
+    /**
+     * Creates a new precedence chain
+     * @param levels    Non-terminals of the levels, from the lowest precedence (the chain itself) to the highest
+     * @param operators Operator terminals of every level, in the same order
+     * @param primary   Non-terminal of the operands of the highest level
+     */
+    public PrecedenceChain(List<String> levels, List<List<String>> operators, String primary) {
+        this.name = levels.get(0);
+        this.levels = Collections.unmodifiableList(new ArrayList<>(levels));
+        List<List<String>> copy = new ArrayList<>();
+        for (List<String> levelOperators : operators) {
+            copy.add(Collections.unmodifiableList(new ArrayList<>(levelOperators)));
+        }
+        this.operators = Collections.unmodifiableList(copy);
+        this.primary = primary;
+    }
+
+    /**
+     * Gets the non-terminal of the chain, i.e. of its lowest precedence level
+     * @return Non-terminal name
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Gets the non-terminals of the levels
+     * @return Levels from the lowest precedence to the highest
+     */
+    public List<String> getLevels() {
+        return levels;
+    }
+
+    /**
+     * Gets the operators of every level
+     * @return Operator terminals by level, from the lowest precedence to the highest
+     */
+    public List<List<String>> getOperators() {
+        return operators;
+    }
+
+    /**
+     * Gets the precedence of an operator
+     * @param operator Operator terminal
+     * @return Precedence, from 1 for the lowest level, or 0 if it is not an operator of the chain
+     */
+    public int getPrecedence(String operator) {
+        for (int level = 0; level < operators.size(); level++) {
+            if (operators.get(level).contains(operator)) {
+                return level + 1;
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Gets the non-terminal of the operands of the highest level
+     * @return Primary non-terminal
+     */
+    public String getPrimary() {
+        return primary;
+    }
+
+    /**
+     * Gets the productions of the single rule the emitters render: one for every level, from
+     * the highest precedence, with the chain on both sides of the operators, then the primary
+     * @return Productions of the chain, where the operators of a level count as one symbol
+     */
+    public List<List<String>> getProductions() {
+        List<List<String>> productions = new ArrayList<>();
+        for (int level = operators.size() - 1; level >= 0; level--) {
+            List<String> levelOperators = operators.get(level);
+            String operator = levelOperators.size() == 1
+                    ? levelOperators.get(0)
+                    : "(" + String.join(" | ", levelOperators) + ")";
+            productions.add(List.of(name, operator, name));
+        }
+        productions.add(List.of(primary));
+        return productions;
+    }
+
+    @Override
+    public String toString() {
+        return String.join(" > ", levels) + " > " + primary;
+    }
+}
@@ -0,0 +1,247 @@
+package it.unisannio.g2j.pipeline;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Compiles many grammar files in a single JVM, on a bounded pool of workers.
+ * <p>
+ * Every grammar gets its own output directory under the output root, named after
+ * its path relative to the input directory (extension included). The console output
+ * produced while compiling a grammar is saved in the {@value #LOG_FILE_NAME} file
+ * of that directory, so that the console only shows the final summary.
+ * <p>
+ * When the compiler writes metrics reports, the metrics of all the grammars are also
+ * collected in a single report in the output root.
+ */
+public class BatchCompiler {
+
+    public static final String LOG_FILE_NAME = "compile.log";
+
+    private static final String GLOB_CHARS = "*?[{";
+
+    private final GrammarCompiler compiler;
+    private final int workers;
+
+    /**
+     * Creates a batch compiler with one worker per available core
+     */
+    public BatchCompiler() {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Creates a batch compiler
+     * @param workers Maximum number of grammars compiled at the same time
+     */
+    public BatchCompiler(int workers) {
+        this(workers, new GrammarCompiler());
+    }
+
+    /**
+     * Creates a batch compiler
+     * @param workers  Maximum number of grammars compiled at the same time
+     * @param compiler Compiler used for every grammar
+     */
+    public BatchCompiler(int workers, GrammarCompiler compiler) {
+        if (workers < 1) {
+            throw new IllegalArgumentException("Il numero di worker deve essere positivo: " + workers);
+        }
+        this.workers = workers;
+        this.compiler = compiler;
+    }
+
+    /**
+     * Compiles every grammar matched by a directory or a glob pattern
+     * @param dirOrGlob  Directory (all the files it contains) or glob such as {@code grammars/*.txt}
+     * @param outputRoot Root of the per-grammar output directories
+     * @return Results in input order
+     */
+    public List<CompilationResult> compile(String dirOrGlob, Path outputRoot) throws IOException, InterruptedException {
+        Path baseDir = baseDirectory(dirOrGlob);
+        List<Path> grammarFiles = resolveInputs(dirOrGlob);
+        if (grammarFiles.isEmpty()) {
+            System.err.println("Nessuna grammatica trovata per: " + dirOrGlob);
+            return new ArrayList<>();
+        }
+
+        System.out.println("Compilazione batch di " + grammarFiles.size() + " grammatiche con "
+                + Math.min(workers, grammarFiles.size()) + " worker...");
+
+        long start = System.nanoTime();
+        List<CompilationResult> results = compileAll(grammarFiles, baseDir, outputRoot);
+        printSummary(results, System.nanoTime() - start);
+
+        MetricsReport.Format metricsFormat = compiler.getMetricsFormat();
+        if (metricsFormat != null) {
+            Path report = outputRoot.resolve(metricsFormat.getFileName());
+            MetricsReport.write(report, metricsFormat, results);
+            System.out.println("📐 Metriche delle grammatiche salvate in " + report);
+        }
+        return results;
+    }
+
+    /**
+     * Compiles the given grammar files in parallel
+     * @param grammarFiles Grammars to compile
+     * @param baseDir      Directory the output directory names are relative to
+     * @param outputRoot   Root of the per-grammar output directories
+     * @return Results in the same order as the grammar files
+     */
+    public List<CompilationResult> compileAll(List<Path> grammarFiles, Path baseDir, Path outputRoot)
+            throws InterruptedException {
+        PrintStream originalOut = System.out;
+        PrintStream originalErr = System.err;
+        ThreadLocal<OutputStream> logTarget = new ThreadLocal<>();
+        System.setOut(new PrintStream(new ThreadRoutingOutputStream(originalOut, logTarget), true, StandardCharsets.UTF_8));
+        System.setErr(new PrintStream(new ThreadRoutingOutputStream(originalErr, logTarget), true, StandardCharsets.UTF_8));
+
+        ExecutorService pool = Executors.newFixedThreadPool(Math.min(workers, grammarFiles.size()));
+        try {
+            List<Future<CompilationResult>> futures = new ArrayList<>();
+            for (Path grammarFile : grammarFiles) {
+                Path outputDir = outputRoot.resolve(outputName(baseDir, grammarFile));
+                futures.add(pool.submit(() -> compileLogged(grammarFile, outputDir, logTarget)));
+            }
+
+            List<CompilationResult> results = new ArrayList<>();
+            for (int i = 0; i < futures.size(); i++) {
+                try {
+                    results.add(futures.get(i).get());
+                } catch (ExecutionException e) {
+                    results.add(new CompilationResult(grammarFiles.get(i), null, false, 0, String.valueOf(e.getCause())));
+                }
+            }
+            return results;
+        } finally {
+            pool.shutdownNow();
+            System.setOut(originalOut);
+            System.setErr(originalErr);
+        }
+    }
+
+    private CompilationResult compileLogged(Path grammarFile, Path outputDir, ThreadLocal<OutputStream> logTarget)
+            throws IOException {
+        Files.createDirectories(outputDir);
+        try (OutputStream log = new BufferedOutputStream(Files.newOutputStream(outputDir.resolve(LOG_FILE_NAME)))) {
+            logTarget.set(log);
+            return compiler.compile(grammarFile, outputDir);
+        } finally {
+            logTarget.remove();
+        }
+    }
+
+    /**
+     * Stampa il riepilogo della compilazione batch con il tempo di ogni grammatica.
+     */
+    public static void printSummary(List<CompilationResult> results, long wallNanos) {
+        System.out.println("\n=== RIEPILOGO COMPILAZIONE BATCH ===");
+
+        int failed = 0;
+        long sumNanos = 0;
+        for (CompilationResult result : results) {
+            System.out.println(String.format(Locale.ROOT, "%s %10.2f ms  %s -> %s",
+                    result.isSuccess() ? "✅" : "❌",
+                    result.getElapsedMillis(),
+                    result.getGrammarFile(),
+                    result.isSuccess() ? result.getOutputDir() : result.getMessage()));
+            if (!result.isSuccess()) {
+                failed++;
+            }
+            sumNanos += result.getElapsedNanos();
+        }
+
+        System.out.println("Grammatiche compilate: " + results.size()
+                + " (riuscite: " + (results.size() - failed) + ", fallite: " + failed + ")");
+        System.out.println(String.format(Locale.ROOT, "Tempo totale: %.2f ms (somma dei tempi per grammatica: %.2f ms)",
+                wallNanos / 1_000_000.0, sumNanos / 1_000_000.0));
+    }
+
+    /**
+     * Resolves a directory or a glob pattern into the list of grammar files to compile
+     * @param dirOrGlob Directory or glob pattern
+     * @return Sorted list of regular files
+     */
+    public static List<Path> resolveInputs(String dirOrGlob) throws IOException {
+        Path baseDir = baseDirectory(dirOrGlob);
+        if (!Files.isDirectory(baseDir)) {
+            return new ArrayList<>();
+        }
+
+        if (!isGlob(dirOrGlob)) {
+            try (Stream<Path> files = Files.list(baseDir)) {
+                return files.filter(Files::isRegularFile)
+                        .filter(file -> !file.getFileName().toString().startsWith("."))
+                        .sorted()
+                        .collect(Collectors.toList());
+            }
+        }
+
+        String pattern = dirOrGlob.replace('\\', '/').substring(basePrefix(dirOrGlob).length());
+        PathMatcher matcher = FileSystems.getDefault().getPathMatcher("glob:" + pattern);
+        try (Stream<Path> files = Files.walk(baseDir)) {
+            return files.filter(Files::isRegularFile)
+                    .filter(file -> matcher.matches(baseDir.relativize(file)))
+                    .sorted()
+                    .collect(Collectors.toList());
+        }
+    }
+
+    /**
+     * Gets the directory holding the inputs: the directory itself or the leading part of the glob
+     */
+    static Path baseDirectory(String dirOrGlob) {
+        if (!isGlob(dirOrGlob)) {
+            return Paths.get(dirOrGlob);
+        }
+        String prefix = basePrefix(dirOrGlob);
+        return prefix.isEmpty() ? Paths.get(".") : Paths.get(prefix);
+    }
+
+    /**
+     * Gets the longest leading run of path segments without glob characters
+     */
+    private static String basePrefix(String glob) {
+        String normalized = glob.replace('\\', '/');
+        int end = 0;
+        int slash;
+        while ((slash = normalized.indexOf('/', end)) >= 0 && !isGlob(normalized.substring(end, slash))) {
+            end = slash + 1;
+        }
+        return normalized.substring(0, end);
+    }
+
+    static boolean isGlob(String pattern) {
+        for (char c : GLOB_CHARS.toCharArray()) {
+            if (pattern.indexOf(c) >= 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Output directory name of a grammar: its path relative to the base directory, extension included,
+     * so that {@code foo.txt} and {@code foo.g2j} do not write into the same directory
+     */
+    private static Path outputName(Path baseDir, Path grammarFile) {
+        return baseDir.relativize(grammarFile);
+    }
+}
@@ -0,0 +1,47 @@
+package it.unisannio.g2j.pipeline;
+
+import it.unisannio.g2j.ir.OptimizedRule;
+
+import java.io.Serializable;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Content of the incremental cache for a single rule: the result of its
+ * optimization (parsing rules only) and the text rendered for it, and for the
+ * rules derived from it, by every emitter backend.
+ */
+class CacheEntry implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private final OptimizedRule optimizedRule;
+    private final HashMap<String, Map<String, String>> fragments = new HashMap<>();
+
+    /**
+     * Creates a new cache entry
+     * @param optimizedRule Optimization result, null for lexical rules
+     * @param fragments     Rendered text by rule name and format
+     */
+    CacheEntry(OptimizedRule optimizedRule, Map<String, Map<String, String>> fragments) {
+        this.optimizedRule = optimizedRule;
+        for (Map.Entry<String, Map<String, String>> entry : fragments.entrySet()) {
+            this.fragments.put(entry.getKey(), new HashMap<>(entry.getValue()));
+        }
+    }
+
+    /**
+     * Gets the optimization result of the rule
+     * @return Optimization result, null for lexical rules
+     */
+    OptimizedRule getOptimizedRule() {
+        return optimizedRule;
+    }
+
+    /**
+     * Gets the rendered text of the rule and of the rules derived from it
+     * @return Rendered text by rule name and format
+     */
+    Map<String, Map<String, String>> getFragments() {
+        return fragments;
+    }
+}
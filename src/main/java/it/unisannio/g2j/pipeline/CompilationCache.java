@@ -0,0 +1,244 @@
+package it.unisannio.g2j.pipeline;
+
+import it.unisannio.g2j.analysis.StronglyConnectedComponents;
+import it.unisannio.g2j.ir.OptimizedRule;
+import it.unisannio.g2j.symbols.SymbolTable;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputFilter;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Content-addressed cache of the per-rule compilation results.
+ * <p>
+ * Every rule is identified by a SHA-256 key computed from its own text and from the
+ * text of all the rules it transitively depends on (a Merkle hash over the strongly
+ * connected components of the dependency graph), so that editing a rule invalidates
+ * exactly the rules whose closure contains it. Entries are stored one per file under
+ * the cache directory and written atomically, so that the cache can be shared by
+ * several compilations running in parallel.
+ */
+public class CompilationCache {
+
+    public static final String DEFAULT_DIRECTORY = ".g2j-cache";
+
+    // Changes whenever the optimizations or the emitters produce a different output
+    private static final String FORMAT_VERSION = "g2j-cache-11";
+
+    // The cache directory is chosen by the user: only the classes of the entries are deserialized.
+    // Object and Map$Entry are the element types of the arrays written by the collections
+    private static final ObjectInputFilter ENTRY_FILTER = ObjectInputFilter.Config.createFilter(
+            CacheEntry.class.getName() + ";" + OptimizedRule.class.getName()
+                    + ";java.lang.String;java.util.HashMap;java.util.LinkedHashMap;java.util.ArrayList"
+                    + ";java.lang.Object;java.util.Map$Entry;maxdepth=16;!*");
+
+    private static final char SYMBOL_SEPARATOR = '\u0001';
+    private static final char PRODUCTION_SEPARATOR = '\u0002';
+
+    private final Path directory;
+    private final String variant;
+
+    /**
+     * Creates a cache stored in the given directory (created on the first write)
+     * @param directory Cache directory
+     */
+    public CompilationCache(Path directory) {
+        this(directory, "");
+    }
+
+    /**
+     * Creates a cache stored in the given directory (created on the first write),
+     * for the compilations run with some non-default optimization options
+     * @param directory Cache directory
+     * @param variant   Name of the optimization options, part of every rule key
+     */
+    public CompilationCache(Path directory, String variant) {
+        this.directory = directory;
+        this.variant = variant;
+    }
+
+    /**
+     * Gets the cache directory
+     * @return Cache directory
+     */
+    public Path getDirectory() {
+        return directory;
+    }
+
+    /**
+     * Computes the cache key of every rule of a grammar
+     * @param symbolTable Symbol table of the input grammar
+     * @return Cache keys by rule name, lexical rules first
+     */
+    public Map<String, String> computeKeys(SymbolTable symbolTable) {
+        Map<String, String> keys = new LinkedHashMap<>();
+
+        for (String terminal : symbolTable.getOrderedTerminals()) {
+            String definition = symbolTable.getTerminalDefinition(terminal);
+            if (definition != null) {
+                keys.put(terminal, hash(FORMAT_VERSION, "token", terminal, definition));
+            }
+        }
+
+        Set<String> nonTerminals = new LinkedHashSet<>();
+        for (String nonTerminal : symbolTable.getOrderedNonTerminals()) {
+            if (!symbolTable.getProductions(nonTerminal).isEmpty()) {
+                nonTerminals.add(nonTerminal);
+            }
+        }
+
+        Map<String, String> ownHashes = new HashMap<>();
+        for (String nonTerminal : nonTerminals) {
+            ownHashes.put(nonTerminal, hash(nonTerminal, canonicalText(symbolTable.getProductions(nonTerminal))));
+        }
+
+        // Small rules are inlined depending on how many times they are used in the whole grammar
+        Map<String, Integer> fanIn = new HashMap<>();
+        for (String nonTerminal : nonTerminals) {
+            for (List<String> production : symbolTable.getProductions(nonTerminal)) {
+                for (String symbol : production) {
+                    if (symbolTable.isNonTerminal(symbol)) {
+                        fanIn.merge(symbol, 1, Integer::sum);
+                    }
+                }
+            }
+        }
+
+        // Components come sinks first, so the closure hash of every successor is already known
+        List<List<String>> components =
+                StronglyConnectedComponents.compute(nonTerminals, symbolTable::getReferencedNonTerminals);
+        Map<String, String> closureHashes = new HashMap<>();
+        for (List<String> component : components) {
+            Set<String> parts = new TreeSet<>();
+            for (String member : component) {
+                parts.add("own:" + ownHashes.get(member));
+                for (String successor : symbolTable.getReferencedNonTerminals(member)) {
+                    String successorHash = closureHashes.get(successor);
+                    if (successorHash != null) {
+                        parts.add("dep:" + successorHash);
+                        parts.add("fanin:" + successor + "=" + fanIn.get(successor));
+                    }
+                }
+            }
+            String closureHash = hash(parts.toArray(new String[0]));
+            for (String member : component) {
+                closureHashes.put(member, closureHash);
+            }
+        }
+
+        List<String> allSymbols = new ArrayList<>(symbolTable.getOrderedTerminals());
+        allSymbols.addAll(symbolTable.getOrderedNonTerminals());
+        for (String nonTerminal : nonTerminals) {
+            keys.put(nonTerminal, hash(FORMAT_VERSION, "rule", variant, nonTerminal, closureHashes.get(nonTerminal),
+                    collisionContext(nonTerminal, allSymbols)));
+        }
+        return keys;
+    }
+
+    /**
+     * Reads an entry of the cache
+     * @param key Cache key of the rule
+     * @return Cached entry, or null if it is missing or unreadable
+     */
+    CacheEntry load(String key) {
+        Path file = entryPath(key);
+        if (!Files.isRegularFile(file)) {
+            return null;
+        }
+        try (InputStream in = Files.newInputStream(file);
+             ObjectInputStream objectIn = new ObjectInputStream(in)) {
+            objectIn.setObjectInputFilter(ENTRY_FILTER);
+            return (CacheEntry) objectIn.readObject();
+        } catch (IOException | ClassNotFoundException | ClassCastException e) {
+            // A corrupted or outdated entry is just a miss
+            return null;
+        }
+    }
+
+    /**
+     * Writes an entry of the cache, replacing any previous one
+     * @param key   Cache key of the rule
+     * @param entry Entry to store
+     */
+    void store(String key, CacheEntry entry) throws IOException {
+        Path file = entryPath(key);
+        Files.createDirectories(file.getParent());
+        Path temp = Files.createTempFile(file.getParent(), key, ".tmp");
+        try {
+            try (OutputStream out = Files.newOutputStream(temp);
+                 ObjectOutputStream objectOut = new ObjectOutputStream(out)) {
+                objectOut.writeObject(entry);
+            }
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    private Path entryPath(String key) {
+        return directory.resolve(key.substring(0, 2)).resolve(key + ".bin");
+    }
+
+    /**
+     * Symbols whose names may clash with the non-terminals created while optimizing
+     * the rule (e.g. &lt;ExprSuffix&gt; for &lt;Expr&gt;), which changes the names chosen.
+     */
+    private static String collisionContext(String nonTerminal, List<String> allSymbols) {
+        String prefix = nonTerminal.substring(0, nonTerminal.length() - 1);
+        Set<String> clashing = new TreeSet<>();
+        for (String symbol : allSymbols) {
+            if (symbol.startsWith(prefix) && !symbol.equals(nonTerminal)) {
+                clashing.add(symbol);
+            }
+        }
+        return String.join(String.valueOf(SYMBOL_SEPARATOR), clashing);
+    }
+
+    private static String canonicalText(List<List<String>> productions) {
+        StringBuilder sb = new StringBuilder();
+        for (List<String> production : productions) {
+            for (String symbol : production) {
+                sb.append(symbol).append(SYMBOL_SEPARATOR);
+            }
+            sb.append(PRODUCTION_SEPARATOR);
+        }
+        return sb.toString();
+    }
+
+    private static String hash(String... parts) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            for (String part : parts) {
+                byte[] bytes = part.getBytes(StandardCharsets.UTF_8);
+                // Length prefix, so that different splits of the same text never collide
+                digest.update(Integer.toString(bytes.length).getBytes(StandardCharsets.US_ASCII));
+                digest.update((byte) ':');
+                digest.update(bytes);
+            }
+            StringBuilder hex = new StringBuilder();
+            for (byte b : digest.digest()) {
+                hex.append(String.format("%02x", b));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 non disponibile", e);
+        }
+    }
+}
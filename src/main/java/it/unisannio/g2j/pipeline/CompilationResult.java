@@ -0,0 +1,115 @@
+package it.unisannio.g2j.pipeline;
+
+import it.unisannio.g2j.analysis.GrammarMetrics;
+
+import java.nio.file.Path;
+
+/**
+ * Outcome of the compilation of a single grammar file
+ */
+public class CompilationResult {
+    private final Path grammarFile;
+    private final Path outputDir;
+    private final boolean success;
+    private final long elapsedNanos;
+    private final String message;
+    private final GrammarMetrics originalMetrics;
+    private final GrammarMetrics optimizedMetrics;
+
+    /**
+     * Creates a new compilation result
+     * @param grammarFile  Compiled grammar file
+     * @param outputDir    Directory that holds the generated files
+     * @param success      True if the output files were generated
+     * @param elapsedNanos Wall time spent on the grammar
+     * @param message      Short description of the outcome
+     */
+    public CompilationResult(Path grammarFile, Path outputDir, boolean success, long elapsedNanos, String message) {
+        this(grammarFile, outputDir, success, elapsedNanos, message, null, null);
+    }
+
+    /**
+     * Creates a new compilation result with the metrics of the grammar
+     * @param grammarFile      Compiled grammar file
+     * @param outputDir        Directory that holds the generated files
+     * @param success          True if the output files were generated
+     * @param elapsedNanos     Wall time spent on the grammar
+     * @param message          Short description of the outcome
+     * @param originalMetrics  Metrics of the input grammar, null if not computed
+     * @param optimizedMetrics Metrics of the optimized grammar, null if not computed
+     */
+    public CompilationResult(Path grammarFile, Path outputDir, boolean success, long elapsedNanos, String message,
+                             GrammarMetrics originalMetrics, GrammarMetrics optimizedMetrics) {
+        this.grammarFile = grammarFile;
+        this.outputDir = outputDir;
+        this.success = success;
+        this.elapsedNanos = elapsedNanos;
+        this.message = message;
+        this.originalMetrics = originalMetrics;
+        this.optimizedMetrics = optimizedMetrics;
+    }
+
+    /**
+     * Gets the compiled grammar file
+     * @return Grammar file path
+     */
+    public Path getGrammarFile() {
+        return grammarFile;
+    }
+
+    /**
+     * Gets the directory that holds the generated files
+     * @return Output directory
+     */
+    public Path getOutputDir() {
+        return outputDir;
+    }
+
+    /**
+     * Checks if the grammar was compiled successfully
+     * @return True if the output files were generated
+     */
+    public boolean isSuccess() {
+        return success;
+    }
+
+    /**
+     * Gets the wall time spent on the grammar
+     * @return Elapsed time in nanoseconds
+     */
+    public long getElapsedNanos() {
+        return elapsedNanos;
+    }
+
+    /**
+     * Gets the elapsed wall time in milliseconds
+     * @return Elapsed time in milliseconds
+     */
+    public double getElapsedMillis() {
+        return elapsedNanos / 1_000_000.0;
+    }
+
+    /**
+     * Gets a short description of the outcome
+     * @return Outcome message
+     */
+    public String getMessage() {
+        return message;
+    }
+
+    /**
+     * Gets the metrics of the input grammar
+     * @return Metrics, or null if the compilation stopped before computing them
+     */
+    public GrammarMetrics getOriginalMetrics() {
+        return originalMetrics;
+    }
+
+    /**
+     * Gets the metrics of the optimized grammar
+     * @return Metrics, or null if the compilation stopped before computing them
+     */
+    public GrammarMetrics getOptimizedMetrics() {
+        return optimizedMetrics;
+    }
+}
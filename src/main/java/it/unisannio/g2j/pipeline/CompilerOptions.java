@@ -0,0 +1,105 @@
+package it.unisannio.g2j.pipeline;
+
+import java.nio.file.Path;
+
+/**
+ * Options of a {@link GrammarCompiler}, shared by all the grammars it compiles
+ */
+public class CompilerOptions {
+    private boolean dumpOptimizedGrammar;
+    private boolean leftRecursionLoops;
+    private Path cacheDirectory;
+    private MetricsReport.Format metricsFormat;
+    private boolean verifyIncremental;
+
+    /**
+     * Checks if the optimized grammar is saved next to the generated files
+     * @return True to save the optimized grammar
+     */
+    public boolean isDumpOptimizedGrammar() {
+        return dumpOptimizedGrammar;
+    }
+
+    /**
+     * Sets whether the optimized grammar is saved next to the generated files
+     * @param dumpOptimizedGrammar True to save the optimized grammar
+     * @return These options
+     */
+    public CompilerOptions setDumpOptimizedGrammar(boolean dumpOptimizedGrammar) {
+        this.dumpOptimizedGrammar = dumpOptimizedGrammar;
+        return this;
+    }
+
+    /**
+     * Checks if left recursion is eliminated with {[ ]} loops instead of Tail rules
+     * @return True for the loops
+     */
+    public boolean isLeftRecursionLoops() {
+        return leftRecursionLoops;
+    }
+
+    /**
+     * Sets whether left recursion is eliminated with {[ ]} loops instead of Tail rules
+     * @param leftRecursionLoops True for the loops, false for the Tail rules
+     * @return These options
+     */
+    public CompilerOptions setLeftRecursionLoops(boolean leftRecursionLoops) {
+        this.leftRecursionLoops = leftRecursionLoops;
+        return this;
+    }
+
+    /**
+     * Gets the directory of the incremental compilation cache
+     * @return Cache directory, or null if the cache is disabled
+     */
+    public Path getCacheDirectory() {
+        return cacheDirectory;
+    }
+
+    /**
+     * Sets the directory of the incremental compilation cache
+     * @param cacheDirectory Cache directory, null to disable the cache
+     * @return These options
+     */
+    public CompilerOptions setCacheDirectory(Path cacheDirectory) {
+        this.cacheDirectory = cacheDirectory;
+        return this;
+    }
+
+    /**
+     * Gets the format of the metrics report written next to the generated files
+     * @return Report format, or null if no report is written
+     */
+    public MetricsReport.Format getMetricsFormat() {
+        return metricsFormat;
+    }
+
+    /**
+     * Sets the format of the metrics report written next to the generated files
+     * @param metricsFormat Report format, null to write no report
+     * @return These options
+     */
+    public CompilerOptions setMetricsFormat(MetricsReport.Format metricsFormat) {
+        this.metricsFormat = metricsFormat;
+        return this;
+    }
+
+    /**
+     * Checks if an incremental compilation is compared with a compilation from scratch
+     * @return True to verify the incremental compilations
+     */
+    public boolean isVerifyIncremental() {
+        return verifyIncremental;
+    }
+
+    /**
+     * Sets whether an incremental compilation that reused cached rules is compared with a
+     * compilation from scratch, failing if the generated files differ
+     * @param verifyIncremental True to verify the incremental compilations
+     * @return These options
+     */
+    public CompilerOptions setVerifyIncremental(boolean verifyIncremental) {
+        this.verifyIncremental = verifyIncremental;
+        return this;
+    }
+}
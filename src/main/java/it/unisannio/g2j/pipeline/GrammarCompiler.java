@@ -0,0 +1,384 @@
+package it.unisannio.g2j.pipeline;
+
+import it.unisannio.g2j.G2JLexer;
+import it.unisannio.g2j.G2JParser;
+import it.unisannio.g2j.analysis.GrammarMetrics;
+import it.unisannio.g2j.analysis.LookaheadAnalysis;
+import it.unisannio.g2j.errors.CollectingErrorListener;
+import it.unisannio.g2j.emitters.GrammarEmitter;
+import it.unisannio.g2j.errors.CustomErrorStrategy;
+import it.unisannio.g2j.errors.SemanticDiagnostic;
+import it.unisannio.g2j.ir.GrammarIR;
+import it.unisannio.g2j.ir.OptimizedRule;
+import it.unisannio.g2j.visitors.AntlrVisitor;
+import it.unisannio.g2j.visitors.JavaCCVisitor;
+import it.unisannio.g2j.visitors.SemanticVisitor;
+import org.antlr.v4.runtime.BailErrorStrategy;
+import org.antlr.v4.runtime.CharStreams;
+import org.antlr.v4.runtime.CommonTokenStream;
+import org.antlr.v4.runtime.ConsoleErrorListener;
+import org.antlr.v4.runtime.atn.PredictionMode;
+import org.antlr.v4.runtime.misc.ParseCancellationException;
+import org.antlr.v4.runtime.tree.ParseTree;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.StringJoiner;
+
+/**
+ * Runs a single grammar file through the whole G2J pipeline:
+ * lexing, parsing, semantic analysis, optimization and generation of the
+ * JavaCC and ANTLR specifications.
+ * <p>
+ * The optimized grammar is handed over to the emitters in memory; the text dump
+ * of the optimized grammar is only written on request, as a debug artifact.
+ * <p>
+ * When the incremental cache is enabled, the rules whose cache key did not change
+ * since a previous compilation are neither optimized nor rendered again: their
+ * results are taken from the cache.
+ * <p>
+ * With the verification of the incremental compilations enabled, a compilation that
+ * reused cached rules is repeated from scratch in memory and fails if the generated
+ * files differ.
+ * <p>
+ * When a metrics format is set, the metrics of the input and optimized grammars are
+ * also written in the output directory, as a {@link MetricsReport} of one grammar.
+ * <p>
+ * The compiler keeps no state between two calls, so the same instance can be
+ * shared by several threads.
+ */
+public class GrammarCompiler {
+
+    public static final String OPTIMIZED_FILE_NAME = "optimized_input.txt";
+    public static final String JAVACC_FILE_NAME = "GrammarOut.jj";
+    public static final String ANTLR_FILE_NAME = "GrammarOut.g4";
+
+    // Rules listed in the lookahead warnings, the others are only counted
+    private static final int MAX_PRINTED_RULES = 10;
+
+    private final boolean dumpOptimizedGrammar;
+    private final boolean leftRecursionLoops;
+    private final CompilationCache cache;
+    private final MetricsReport.Format metricsFormat;
+    private final boolean verifyIncremental;
+
+    /**
+     * Creates a compiler with the default options
+     */
+    public GrammarCompiler() {
+        this(new CompilerOptions());
+    }
+
+    /**
+     * Creates a compiler
+     * @param options Compiler options
+     */
+    public GrammarCompiler(CompilerOptions options) {
+        this.dumpOptimizedGrammar = options.isDumpOptimizedGrammar();
+        this.leftRecursionLoops = options.isLeftRecursionLoops();
+        this.cache = options.getCacheDirectory() == null ? null
+                : new CompilationCache(options.getCacheDirectory(), leftRecursionLoops ? "loops" : "");
+        this.metricsFormat = options.getMetricsFormat();
+        this.verifyIncremental = options.isVerifyIncremental();
+    }
+
+    /**
+     * Gets the format of the metrics reports
+     * @return Report format, or null if no report is written
+     */
+    public MetricsReport.Format getMetricsFormat() {
+        return metricsFormat;
+    }
+
+    /**
+     * Compiles a grammar file, writing the generated files into the output directory
+     * @param grammarFile EBNF grammar to compile
+     * @param outputDir   Directory for the generated files (created if missing)
+     * @return Outcome of the compilation
+     */
+    public CompilationResult compile(Path grammarFile, Path outputDir) {
+        long start = System.nanoTime();
+        try {
+            List<GrammarMetrics> metrics = new ArrayList<>();
+            String message = runPipeline(grammarFile, outputDir, metrics);
+            CompilationResult result = new CompilationResult(grammarFile, outputDir, message == null,
+                    System.nanoTime() - start, message == null ? "OK" : message,
+                    metrics.isEmpty() ? null : metrics.get(0), metrics.isEmpty() ? null : metrics.get(1));
+            if (metricsFormat != null && !metrics.isEmpty()) {
+                MetricsReport.write(outputDir.resolve(metricsFormat.getFileName()), metricsFormat,
+                        Collections.singletonList(result));
+            }
+            return result;
+        } catch (IOException | RuntimeException e) {
+            System.err.println("Errore durante la compilazione di " + grammarFile + ": " + e.getMessage());
+            return new CompilationResult(grammarFile, outputDir, false,
+                    System.nanoTime() - start, e.getClass().getSimpleName() + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * @param metrics Receives the metrics of the input and optimized grammars, once computed
+     * @return null if the output files were generated, an error description otherwise
+     */
+    private String runPipeline(Path grammarFile, Path outputDir, List<GrammarMetrics> metrics) throws IOException {
+        Files.createDirectories(outputDir);
+
+        // ============= ANALISI LESSICALE, SINTATTICA E SEMANTICA DEL FILE DI INPUT =================
+
+        // Crea il listener
+        CollectingErrorListener errorListener = new CollectingErrorListener();
+
+        // Lexer
+        G2JLexer lexer = new G2JLexer(CharStreams.fromPath(grammarFile));
+        lexer.removeErrorListeners();
+        lexer.addErrorListener(errorListener);
+
+        // Lexing completo prima del parsing, per misurarne il tempo separatamente
+        long phaseStart = System.nanoTime();
+        CommonTokenStream tokens = new CommonTokenStream(lexer);
+        tokens.fill();
+        long lexingNanos = System.nanoTime() - phaseStart;
+
+        // Parser: primo tentativo con la predizione SLL, senza recovery
+        G2JParser parser = new G2JParser(tokens);
+        parser.setBuildParseTree(true);
+        parser.removeErrorListeners();
+        parser.setErrorHandler(new BailErrorStrategy());
+        parser.getInterpreter().setPredictionMode(PredictionMode.SLL);
+
+        CustomErrorStrategy errorStrategy = new CustomErrorStrategy();
+
+        System.out.println("Inizio parsing (predizione SLL)...");
+
+        phaseStart = System.nanoTime();
+        ParseTree tree;
+        long sllNanos;
+        long llNanos = -1;
+        try {
+            tree = parser.grammarFile();
+            sllNanos = System.nanoTime() - phaseStart;
+        } catch (ParseCancellationException e) {
+            sllNanos = System.nanoTime() - phaseStart;
+
+            // Secondo tentativo: predizione LL completa con recovery degli errori
+            System.out.println("Parsing SLL non riuscito: nuovo parsing LL con recovery attivato...");
+            tokens.seek(0);
+            parser.reset();
+            parser.addErrorListener(ConsoleErrorListener.INSTANCE);
+            parser.setErrorHandler(errorStrategy);
+            parser.getInterpreter().setPredictionMode(PredictionMode.LL);
+
+            phaseStart = System.nanoTime();
+            tree = parser.grammarFile();
+            llNanos = System.nanoTime() - phaseStart;
+        }
+
+        System.out.println(String.format(Locale.ROOT, "⏱️ Lexing: %.2f ms, parsing SLL: %.2f ms%s",
+                lexingNanos / 1_000_000.0, sllNanos / 1_000_000.0,
+                llNanos < 0 ? "" : String.format(Locale.ROOT, ", parsing LL con recovery: %.2f ms", llNanos / 1_000_000.0)));
+
+        if (errorListener.hasErrors() || errorStrategy.getSintaxErrorNum() > 0) {
+            if (errorListener.hasErrors()) {
+                System.err.println("Sono stati rilevati errori durante la fase di analisi:");
+                for (String err : errorListener.getErrors()) {
+                    System.err.println(err);
+                }
+            }
+            System.out.println("Parsing con recovery terminato");
+            return "errori sintattici: " + (errorListener.getErrors().size() + errorStrategy.getSintaxErrorNum());
+        } else {
+            System.out.println("Parsing completato senza errori sintattici.");
+        }
+
+        // Analisi semantica e ottimizzazione dell'input
+        SemanticVisitor semanticVisitor = new SemanticVisitor();
+        semanticVisitor.setLeftRecursionLoops(leftRecursionLoops);
+        semanticVisitor.visit(tree);
+        semanticVisitor.checkSemantics();
+
+        // Tutti gli errori semantici sono riportati insieme: la grammatica non viene ottimizzata né generata
+        List<SemanticDiagnostic> diagnostics = semanticVisitor.getSemanticDiagnostics();
+        if (!diagnostics.isEmpty()) {
+            System.out.println("❌ Trovati " + diagnostics.size() + " errori semantici 😡");
+            for (SemanticDiagnostic diagnostic : diagnostics) {
+                System.out.println(diagnostic);
+            }
+            return "errori semantici: " + diagnostics.size();
+        }
+
+        // Risultati delle compilazioni precedenti ancora validi
+        Map<String, String> cacheKeys = cache == null
+                ? Collections.emptyMap() : cache.computeKeys(semanticVisitor.getSymbolTable());
+        Map<String, OptimizedRule> reusedRules = new HashMap<>();
+        Map<String, Map<String, String>> cachedFragments = new HashMap<>();
+        Set<String> cacheHits = new HashSet<>();
+        for (Map.Entry<String, String> entry : cacheKeys.entrySet()) {
+            CacheEntry cached = cache.load(entry.getValue());
+            if (cached != null) {
+                cacheHits.add(entry.getKey());
+                if (cached.getOptimizedRule() != null) {
+                    reusedRules.put(entry.getKey(), cached.getOptimizedRule());
+                }
+                cachedFragments.putAll(cached.getFragments());
+            }
+        }
+
+        semanticVisitor.optimizeInput(reusedRules);
+        GrammarIR optimizedGrammar = semanticVisitor.getOptimizedGrammar();
+
+        if (dumpOptimizedGrammar) {
+            semanticVisitor.writeOptimizedGrammarFile(outputDir.resolve(OPTIMIZED_FILE_NAME).toString());
+        }
+
+        // ============= GENERAZIONE DEI FILE DI OUTPUT DALL'INPUT OTTIMIZZATO =================
+
+        // Generazione dei file di specifica per JavaCC e ANTLR con un'unica visita della grammatica:
+        // ogni regola viene scritta sui file appena generata
+        Path javaCCFile = outputDir.resolve(JAVACC_FILE_NAME);
+        Path antlrFile = outputDir.resolve(ANTLR_FILE_NAME);
+        GrammarEmitter emitter;
+        try (Writer javaCCOut = Files.newBufferedWriter(javaCCFile, StandardCharsets.UTF_8);
+             Writer antlrOut = Files.newBufferedWriter(antlrFile, StandardCharsets.UTF_8)) {
+            emitter = new GrammarEmitter()
+                    .addBackend(new JavaCCVisitor(javaCCOut))
+                    .addBackend(new AntlrVisitor(antlrOut));
+            emitter.emit(optimizedGrammar, cachedFragments, cache != null);
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        System.out.println("✅ File " + javaCCFile + " generato con successo.");
+        System.out.println("✅ File " + antlrFile + " generato con successo.");
+        printLookahead(emitter.getLookaheadAnalysis());
+
+        if (cache != null) {
+            updateCache(cacheKeys, cacheHits, semanticVisitor, emitter.getRenderedFragments());
+        }
+
+        semanticVisitor.calcMetrics();
+        metrics.add(semanticVisitor.getOriginalMetrics());
+        metrics.add(semanticVisitor.getOptimizedMetrics());
+
+        if (verifyIncremental && !cacheHits.isEmpty()) {
+            return verifyIncremental(tree, javaCCFile, antlrFile);
+        }
+        return null;
+    }
+
+    /**
+     * Compiles the grammar again from scratch, in memory and without console messages,
+     * and compares the result with the files of the incremental compilation
+     * @return null if the files are the same, an error description otherwise
+     */
+    private String verifyIncremental(ParseTree tree, Path javaCCFile, Path antlrFile) throws IOException {
+        SemanticVisitor semanticVisitor = new SemanticVisitor(new PrintStream(OutputStream.nullOutputStream()));
+        semanticVisitor.setLeftRecursionLoops(leftRecursionLoops);
+        semanticVisitor.visit(tree);
+        semanticVisitor.optimizeInput();
+
+        StringWriter javaCCOut = new StringWriter();
+        StringWriter antlrOut = new StringWriter();
+        new GrammarEmitter()
+                .addBackend(new JavaCCVisitor(javaCCOut))
+                .addBackend(new AntlrVisitor(antlrOut))
+                .emit(semanticVisitor.getOptimizedGrammar());
+
+        List<String> different = new ArrayList<>();
+        if (!javaCCOut.toString().equals(Files.readString(javaCCFile, StandardCharsets.UTF_8))) {
+            different.add(javaCCFile.getFileName().toString());
+        }
+        if (!antlrOut.toString().equals(Files.readString(antlrFile, StandardCharsets.UTF_8))) {
+            different.add(antlrFile.getFileName().toString());
+        }
+        if (!different.isEmpty()) {
+            System.err.println("❌ La compilazione incrementale differisce da quella completa: " + different);
+            return "compilazione incrementale diversa da quella completa: " + different;
+        }
+        System.out.println("✅ Verifica incrementale: file identici alla compilazione completa.");
+        return null;
+    }
+
+    /**
+     * Prints the lookahead hints of the JavaCC parser and the choice points that no lookahead decides
+     */
+    private static void printLookahead(LookaheadAnalysis analysis) {
+        if (analysis == null) {
+            return;
+        }
+        System.out.println("🔎 Lookahead JavaCC: " + analysis.getDecisionCount() + " punti di scelta, "
+                + analysis.getBoundedLookaheadCount() + " con LOOKAHEAD(k), "
+                + analysis.getSyntacticLookaheadRules().size() + " con lookahead sintattico");
+        printRules(new LinkedHashSet<>(analysis.getUnresolvedConflictRules()),
+                "⚠️ Conflitti di lookahead non risolvibili, il parser sceglie la prima via possibile: ");
+        printRules(new LinkedHashSet<>(analysis.getSyntacticLookaheadRules()),
+                "⚠️ Regole che richiedono un lookahead sintattico (nessun k <= " + LookaheadAnalysis.MAX_DEPTH
+                        + " è sufficiente): ");
+    }
+
+    private static void printRules(Set<String> rules, String message) {
+        if (rules.isEmpty()) {
+            return;
+        }
+        StringJoiner names = new StringJoiner(", ");
+        rules.stream().limit(MAX_PRINTED_RULES).forEach(names::add);
+        if (rules.size() > MAX_PRINTED_RULES) {
+            names.add("... (" + rules.size() + " regole)");
+        }
+        System.out.println(message + names);
+    }
+
+    /**
+     * Stores the results of the rules that were compiled again
+     */
+    private void updateCache(Map<String, String> cacheKeys, Set<String> cacheHits,
+                             SemanticVisitor semanticVisitor, Map<String, Map<String, String>> renderedFragments) {
+        int stored = 0;
+        for (Map.Entry<String, String> entry : cacheKeys.entrySet()) {
+            String rule = entry.getKey();
+            if (cacheHits.contains(rule)) {
+                continue;
+            }
+
+            OptimizedRule optimizedRule = null;
+            Map<String, Map<String, String>> fragments = new HashMap<>();
+            if (semanticVisitor.getSymbolTable().isNonTerminal(rule)) {
+                optimizedRule = semanticVisitor.getOptimizedRule(rule);
+                if (optimizedRule == null) {
+                    continue;
+                }
+                for (String name : optimizedRule.getRules().keySet()) {
+                    if (renderedFragments.containsKey(name)) {
+                        fragments.put(name, renderedFragments.get(name));
+                    }
+                }
+            } else if (renderedFragments.containsKey(rule)) {
+                fragments.put(rule, renderedFragments.get(rule));
+            }
+
+            try {
+                cache.store(entry.getValue(), new CacheEntry(optimizedRule, fragments));
+                stored++;
+            } catch (IOException e) {
+                System.err.println("Impossibile aggiornare la cache per " + rule + ": " + e.getMessage());
+            }
+        }
+
+        System.out.println("♻️ Cache incrementale: " + cacheHits.size() + " regole riusate, "
+                + stored + " ricompilate");
+    }
+}
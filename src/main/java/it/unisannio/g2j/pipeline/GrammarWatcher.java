@@ -0,0 +1,192 @@
+package it.unisannio.g2j.pipeline;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Keeps the JVM running and recompiles the grammars as soon as they are saved.
+ * <p>
+ * The inputs are watched through a {@link WatchService}. The events of a burst
+ * (editors often write a file in several steps) are collected until no new event
+ * arrives for the debounce interval, then only the grammars that changed are
+ * compiled again, with a warm JVM and an already initialized parser.
+ */
+public class GrammarWatcher {
+
+    public static final long DEFAULT_DEBOUNCE_MILLIS = 200;
+
+    private final GrammarCompiler compiler;
+    private final int workers;
+    private final long debounceMillis;
+
+    /**
+     * Creates a watcher
+     * @param compiler       Compiler used for every grammar
+     * @param workers        Maximum number of grammars compiled at the same time
+     * @param debounceMillis Quiet interval that closes a burst of file events
+     */
+    public GrammarWatcher(GrammarCompiler compiler, int workers, long debounceMillis) {
+        if (debounceMillis < 0) {
+            throw new IllegalArgumentException("L'intervallo di debounce non può essere negativo: " + debounceMillis);
+        }
+        this.compiler = compiler;
+        this.workers = workers;
+        this.debounceMillis = debounceMillis;
+    }
+
+    /**
+     * Compiles the inputs and then recompiles them whenever they change, until the thread is interrupted.
+     * A single file is compiled into the output directory itself; a directory or a glob is
+     * compiled like in batch mode, with one output directory per grammar.
+     * @param input     Grammar file, directory or glob pattern to watch
+     * @param outputDir Output directory (root of the per-grammar directories for a directory or a glob)
+     */
+    public void watch(String input, Path outputDir) throws IOException, InterruptedException {
+        boolean singleFile = !BatchCompiler.isGlob(input) && Files.isRegularFile(Path.of(input));
+        Path baseDir = singleFile
+                ? Path.of(input).toAbsolutePath().getParent()
+                : BatchCompiler.baseDirectory(input).toAbsolutePath();
+        boolean recursive = BatchCompiler.isGlob(input);
+
+        try (WatchService watchService = FileSystems.getDefault().newWatchService()) {
+            Map<WatchKey, Path> watchedDirs = new HashMap<>();
+            register(watchService, baseDir, recursive, watchedDirs);
+
+            // Prima compilazione completa: scalda la JVM e il parser
+            List<Path> inputs = resolveInputs(input, singleFile);
+            System.out.println("👀 Modalità watch su " + input + " (" + inputs.size()
+                    + " grammatiche, debounce " + debounceMillis + " ms). Ctrl+C per terminare.");
+            recompile(inputs, input, singleFile, outputDir, -1);
+
+            while (!Thread.currentThread().isInterrupted()) {
+                Set<Path> changed = new LinkedHashSet<>();
+                WatchKey key = watchService.take();
+                long burstStart = System.nanoTime();
+                boolean overflow = collectEvents(key, watchedDirs, watchService, recursive, changed);
+
+                // Debounce: attende che la raffica di eventi si esaurisca
+                while ((key = watchService.poll(debounceMillis, TimeUnit.MILLISECONDS)) != null) {
+                    overflow |= collectEvents(key, watchedDirs, watchService, recursive, changed);
+                }
+
+                List<Path> toCompile = new ArrayList<>();
+                for (Path grammarFile : resolveInputs(input, singleFile)) {
+                    Path file = grammarFile.toAbsolutePath().normalize();
+                    if (file.startsWith(outputDir.toAbsolutePath().normalize())) {
+                        // I file generati non sono grammatiche da ricompilare
+                        continue;
+                    }
+                    if (overflow || changed.contains(file)) {
+                        toCompile.add(grammarFile);
+                    }
+                }
+                if (!toCompile.isEmpty()) {
+                    recompile(toCompile, input, singleFile, outputDir, burstStart);
+                }
+            }
+        } catch (ClosedWatchServiceException e) {
+            // Watcher chiuso durante l'arresto della JVM
+        }
+    }
+
+    private List<Path> resolveInputs(String input, boolean singleFile) throws IOException {
+        if (singleFile) {
+            List<Path> inputs = new ArrayList<>();
+            if (Files.isRegularFile(Path.of(input))) {
+                inputs.add(Path.of(input));
+            }
+            return inputs;
+        }
+        return BatchCompiler.resolveInputs(input);
+    }
+
+    /**
+     * @param burstStart Time of the first event of the burst, negative for the initial compilation
+     */
+    private void recompile(List<Path> grammarFiles, String input, boolean singleFile,
+                           Path outputDir, long burstStart) throws InterruptedException {
+        List<CompilationResult> results;
+        if (singleFile) {
+            results = new ArrayList<>();
+            for (Path grammarFile : grammarFiles) {
+                results.add(compiler.compile(grammarFile, outputDir));
+            }
+        } else {
+            results = new BatchCompiler(workers, compiler)
+                    .compileAll(grammarFiles, BatchCompiler.baseDirectory(input), outputDir);
+        }
+
+        for (CompilationResult result : results) {
+            System.out.println(String.format(Locale.ROOT, "🔁 %s %s ricompilato in %.2f ms%s",
+                    result.isSuccess() ? "✅" : "❌",
+                    result.getGrammarFile(),
+                    result.getElapsedMillis(),
+                    result.isSuccess() ? "" : " (" + result.getMessage() + ")"));
+        }
+        if (burstStart >= 0) {
+            System.out.println(String.format(Locale.ROOT,
+                    "⏱️ Latenza dalla modifica: %.2f ms (%d grammatiche, debounce di %d ms incluso)",
+                    (System.nanoTime() - burstStart) / 1_000_000.0, results.size(), debounceMillis));
+        }
+    }
+
+    /**
+     * Collects the files touched by the events of a key and re-arms it
+     * @return True if some events were lost, so that every input has to be recompiled
+     */
+    private boolean collectEvents(WatchKey key, Map<WatchKey, Path> watchedDirs, WatchService watchService,
+                                  boolean recursive, Set<Path> changed) throws IOException {
+        boolean overflow = false;
+        Path dir = watchedDirs.get(key);
+        for (WatchEvent<?> event : key.pollEvents()) {
+            if (event.kind() == StandardWatchEventKinds.OVERFLOW || dir == null) {
+                overflow = true;
+                continue;
+            }
+            Path file = dir.resolve((Path) event.context()).normalize();
+            if (recursive && event.kind() == StandardWatchEventKinds.ENTRY_CREATE && Files.isDirectory(file)) {
+                // Nuova sottodirectory: potrebbe contenere grammatiche
+                register(watchService, file, true, watchedDirs);
+                overflow = true;
+            }
+            changed.add(file);
+        }
+        if (!key.reset()) {
+            watchedDirs.remove(key);
+        }
+        return overflow;
+    }
+
+    private static void register(WatchService watchService, Path dir, boolean recursive,
+                                 Map<WatchKey, Path> watchedDirs) throws IOException {
+        List<Path> dirs = new ArrayList<>();
+        if (recursive) {
+            try (Stream<Path> tree = Files.walk(dir)) {
+                tree.filter(Files::isDirectory).forEach(dirs::add);
+            }
+        } else {
+            dirs.add(dir);
+        }
+        for (Path d : dirs) {
+            WatchKey key = d.register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+                    StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_DELETE);
+            watchedDirs.put(key, d.toAbsolutePath().normalize());
+        }
+    }
+}
@@ -0,0 +1,170 @@
+package it.unisannio.g2j.pipeline;
+
+import it.unisannio.g2j.analysis.GrammarMetrics;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Machine-readable report of the grammar metrics, so that a CI job can track the
+ * size and the complexity of many grammars without parsing the console output.
+ * <p>
+ * Every grammar has the metrics of its input and of the parsing rules that are generated:
+ * <ul>
+ *     <li>JSON: an array with one object per grammar, holding the {@code original}
+ *     and {@code optimized} metrics;</li>
+ *     <li>CSV: a header and one row per grammar and production set
+ *     ({@code original} or {@code optimized}).</li>
+ * </ul>
+ * Averages that are not defined, such as the RHS mean of a grammar without
+ * productions, are written as {@code null} in JSON and as an empty field in CSV.
+ */
+public final class MetricsReport {
+
+    /**
+     * Format of the report
+     */
+    public enum Format {
+        JSON("json"),
+        CSV("csv");
+
+        private final String extension;
+
+        Format(String extension) {
+            this.extension = extension;
+        }
+
+        /**
+         * Gets the name of the report file of this format
+         * @return File name, e.g. {@code metrics.json}
+         */
+        public String getFileName() {
+            return "metrics." + extension;
+        }
+
+        /**
+         * Gets the format with the given name
+         * @param name Format name, {@code json} or {@code csv} in any case
+         * @return Format
+         * @throws IllegalArgumentException if the name is unknown
+         */
+        public static Format of(String name) {
+            for (Format format : values()) {
+                if (format.extension.equalsIgnoreCase(name)) {
+                    return format;
+                }
+            }
+            throw new IllegalArgumentException("Formato delle metriche sconosciuto: " + name + " (json o csv)");
+        }
+    }
+
+    private static final String CSV_HEADER = "grammar,set,non_terminals,terminals,productions,unit_productions,"
+            + "rhs_max,rhs_symbols,rhs_mean,alt,mccabe";
+
+    private MetricsReport() {
+    }
+
+    /**
+     * Writes the metrics of the compiled grammars, skipping the ones that have no metrics
+     * @param file    Report file
+     * @param format  Report format
+     * @param results Compilation results, in report order
+     */
+    public static void write(Path file, Format format, List<CompilationResult> results) throws IOException {
+        try (Writer out = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            if (format == Format.JSON) {
+                writeJson(out, results);
+            } else {
+                writeCsv(out, results);
+            }
+        }
+    }
+
+    private static void writeJson(Writer out, List<CompilationResult> results) throws IOException {
+        out.write("[");
+        boolean first = true;
+        for (CompilationResult result : results) {
+            if (!hasMetrics(result)) {
+                continue;
+            }
+            out.write(first ? "\n" : ",\n");
+            first = false;
+            out.write("  {\"grammar\": " + jsonString(result.getGrammarFile().toString()) + ",\n");
+            out.write("   \"original\": " + jsonObject(result.getOriginalMetrics()) + ",\n");
+            out.write("   \"optimized\": " + jsonObject(result.getOptimizedMetrics()) + "}");
+        }
+        out.write(first ? "]\n" : "\n]\n");
+    }
+
+    private static String jsonObject(GrammarMetrics metrics) {
+        return "{\"nonTerminals\": " + metrics.getNonTerminalCount()
+                + ", \"terminals\": " + metrics.getTerminalCount()
+                + ", \"productions\": " + metrics.getProductionCount()
+                + ", \"unitProductions\": " + metrics.getUnitProductionCount()
+                + ", \"rhsMax\": " + metrics.getRhsMax()
+                + ", \"rhsSymbols\": " + metrics.getRhsSymbolCount()
+                + ", \"rhsMean\": " + number(metrics.getRhsMean(), "null")
+                + ", \"alt\": " + number(metrics.getAlt(), "null")
+                + ", \"mcCabe\": " + metrics.getMcCabeComplexity() + "}";
+    }
+
+    private static String jsonString(String value) {
+        StringBuilder json = new StringBuilder("\"");
+        for (char c : value.toCharArray()) {
+            if (c == '"' || c == '\\') {
+                json.append('\\').append(c);
+            } else if (c < 0x20) {
+                json.append(String.format(Locale.ROOT, "\\u%04x", (int) c));
+            } else {
+                json.append(c);
+            }
+        }
+        return json.append('"').toString();
+    }
+
+    private static void writeCsv(Writer out, List<CompilationResult> results) throws IOException {
+        out.write(CSV_HEADER + "\n");
+        for (CompilationResult result : results) {
+            if (!hasMetrics(result)) {
+                continue;
+            }
+            String grammar = csvField(result.getGrammarFile().toString());
+            out.write(csvRow(grammar, "original", result.getOriginalMetrics()));
+            out.write(csvRow(grammar, "optimized", result.getOptimizedMetrics()));
+        }
+    }
+
+    private static String csvRow(String grammar, String set, GrammarMetrics metrics) {
+        return grammar + "," + set
+                + "," + metrics.getNonTerminalCount()
+                + "," + metrics.getTerminalCount()
+                + "," + metrics.getProductionCount()
+                + "," + metrics.getUnitProductionCount()
+                + "," + metrics.getRhsMax()
+                + "," + metrics.getRhsSymbolCount()
+                + "," + number(metrics.getRhsMean(), "")
+                + "," + number(metrics.getAlt(), "")
+                + "," + metrics.getMcCabeComplexity() + "\n";
+    }
+
+    private static String csvField(String value) {
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0
+                && value.indexOf('\r') < 0) {
+            return value;
+        }
+        return "\"" + value.replace("\"", "\"\"") + "\"";
+    }
+
+    private static String number(double value, String undefined) {
+        return Double.isFinite(value) ? String.format(Locale.ROOT, "%.4f", value) : undefined;
+    }
+
+    private static boolean hasMetrics(CompilationResult result) {
+        return result.getOriginalMetrics() != null && result.getOptimizedMetrics() != null;
+    }
+}
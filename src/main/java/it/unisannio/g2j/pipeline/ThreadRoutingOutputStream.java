@@ -0,0 +1,39 @@
+package it.unisannio.g2j.pipeline;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Output stream that forwards every write to a per-thread target, falling back
+ * to a default stream. Installed as System.out/System.err during batch
+ * compilation, so that the console output of every grammar ends up in its own log.
+ */
+class ThreadRoutingOutputStream extends OutputStream {
+    private final OutputStream fallback;
+    private final ThreadLocal<OutputStream> target;
+
+    ThreadRoutingOutputStream(OutputStream fallback, ThreadLocal<OutputStream> target) {
+        this.fallback = fallback;
+        this.target = target;
+    }
+
+    private OutputStream current() {
+        OutputStream out = target.get();
+        return out != null ? out : fallback;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        current().write(b);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        current().write(b, off, len);
+    }
+
+    @Override
+    public void flush() throws IOException {
+        current().flush();
+    }
+}
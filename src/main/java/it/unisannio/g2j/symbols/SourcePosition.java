@@ -0,0 +1,40 @@
+package it.unisannio.g2j.symbols;
+
+/**
+ * Position of a symbol in the grammar file
+ */
+public final class SourcePosition {
+    private final int line;
+    private final int column;
+
+    /**
+     * Creates a new position
+     * @param line   Line, starting from 1
+     * @param column Column, starting from 0 like the positions of the ANTLR tokens
+     */
+    public SourcePosition(int line, int column) {
+        this.line = line;
+        this.column = column;
+    }
+
+    /**
+     * Gets the line
+     * @return Line, starting from 1
+     */
+    public int getLine() {
+        return line;
+    }
+
+    /**
+     * Gets the column
+     * @return Column, starting from 0
+     */
+    public int getColumn() {
+        return column;
+    }
+
+    @Override
+    public String toString() {
+        return line + ":" + column;
+    }
+}
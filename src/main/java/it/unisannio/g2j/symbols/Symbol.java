@@ -6,12 +6,16 @@ import java.util.List;
  * Represents a grammar symbol (terminal or non-terminal)
  */
 public class Symbol {
+    private final int id;
     private final String name;
     private final SymbolType type;
     private String definition;
     private List<List<String>> productions;
+    private List<int[]> encodedProductions;
     private boolean used;
     private boolean defined;
+    private SourcePosition definitionPosition;
+    private SourcePosition firstUsePosition;
 
     /**
      * Creates a new symbol
@@ -19,12 +23,31 @@ public class Symbol {
      * @param type Symbol type (TERMINAL or NON_TERMINAL)
      */
     public Symbol(String name, SymbolType type) {
+        this(SymbolTable.NO_SYMBOL, name, type);
+    }
+
+    /**
+     * Creates a new symbol with an interned ID
+     * @param id   Dense ID assigned by the symbol table
+     * @param name Symbol name
+     * @param type Symbol type (TERMINAL or NON_TERMINAL)
+     */
+    public Symbol(int id, String name, SymbolType type) {
+        this.id = id;
         this.name = name;
         this.type = type;
         this.used = false;
         this.defined = false;
     }
 
+    /**
+     * Gets the ID assigned by the symbol table
+     * @return Symbol ID, or {@link SymbolTable#NO_SYMBOL} if the symbol was created outside a table
+     */
+    public int getId() {
+        return id;
+    }
+
     /**
      * Gets the symbol name
      * @return Symbol name
@@ -73,6 +96,22 @@ public class Symbol {
         this.productions = productions;
     }
 
+    /**
+     * Gets the symbol's productions encoded as symbol IDs and structural opcodes (for non-terminals)
+     * @return List of encoded productions
+     */
+    public List<int[]> getEncodedProductions() {
+        return encodedProductions;
+    }
+
+    /**
+     * Sets the symbol's encoded productions (for non-terminals)
+     * @param encodedProductions List of encoded productions
+     */
+    public void setEncodedProductions(List<int[]> encodedProductions) {
+        this.encodedProductions = encodedProductions;
+    }
+
     /**
      * Checks if the symbol is used in the grammar
      * @return True if the symbol is used
@@ -97,6 +136,38 @@ public class Symbol {
         this.defined = defined;
     }
 
+    /**
+     * Gets where the symbol is defined in the grammar file
+     * @return Position of the definition, or null if unknown
+     */
+    public SourcePosition getDefinitionPosition() {
+        return definitionPosition;
+    }
+
+    /**
+     * Sets where the symbol is defined in the grammar file
+     * @param definitionPosition Position of the definition
+     */
+    public void setDefinitionPosition(SourcePosition definitionPosition) {
+        this.definitionPosition = definitionPosition;
+    }
+
+    /**
+     * Gets where the symbol is used for the first time in the grammar file
+     * @return Position of the first use, or null if unknown
+     */
+    public SourcePosition getFirstUsePosition() {
+        return firstUsePosition;
+    }
+
+    /**
+     * Sets where the symbol is used for the first time in the grammar file
+     * @param firstUsePosition Position of the first use
+     */
+    public void setFirstUsePosition(SourcePosition firstUsePosition) {
+        this.firstUsePosition = firstUsePosition;
+    }
+
     @Override
     public String toString() {
         return "\tname='" + name + "',\n" +
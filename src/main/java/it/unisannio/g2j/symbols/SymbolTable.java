@@ -3,12 +3,43 @@ package it.unisannio.g2j.symbols;
 import java.util.*;
 
 /**
- * Symbol table for tracking and managing grammar symbols
+ * Symbol table for tracking and managing grammar symbols.
+ * <p>
+ * Every symbol name is interned into a dense {@code int} ID, and productions are
+ * stored as {@code int[]} sequences of symbol IDs and structural opcodes
+ * ({@link #GROUP_OPEN}, {@link #OPTIONAL_OPEN}, ...). The string based methods are
+ * a view over this encoding; analyses can use the ID based methods to work on
+ * primitive arrays, without hashing or boxing.
  */
 public class SymbolTable {
+
+    // ID of an unknown symbol
+    public static final int NO_SYMBOL = -1;
+
+    // Structural opcodes of the encoded productions (symbol IDs are never negative)
+    public static final int GROUP_OPEN = -2;
+    public static final int GROUP_CLOSE = -3;
+    public static final int OPTIONAL_OPEN = -4;
+    public static final int OPTIONAL_CLOSE = -5;
+    public static final int REPEAT_OPEN = -6;
+    public static final int REPEAT_CLOSE = -7;
+
+    private static final String[] OPCODE_TEXT = {"(", ")", "[", "]", "{", "}"};
+
     // Map to store symbol information
     private final Map<String, Symbol> symbols = new HashMap<>();
 
+    // Interned names: ID -> name, and ID -> symbol (null while the name is only referenced)
+    private final Map<String, Integer> ids = new HashMap<>();
+    private final List<String> names = new ArrayList<>();
+    private final List<Symbol> symbolsById = new ArrayList<>();
+
+    // Used/defined indexes by symbol ID, one per symbol type, kept up to date by the mark methods
+    private final BitSet usedTerminals = new BitSet();
+    private final BitSet definedTerminals = new BitSet();
+    private final BitSet usedNonTerminals = new BitSet();
+    private final BitSet definedNonTerminals = new BitSet();
+
     // Ordered lists to maintain symbol declaration order
     private final List<String> orderedTerminals = new ArrayList<>();
     private final List<String> orderedNonTerminals = new ArrayList<>();
@@ -29,9 +60,10 @@ public class SymbolTable {
             return;
         }
 
-        Symbol symbol = new Symbol(name, SymbolType.TERMINAL);
+        Symbol symbol = new Symbol(intern(name), name, SymbolType.TERMINAL);
         symbol.setDefinition(definition);
         symbols.put(name, symbol);
+        symbolsById.set(symbol.getId(), symbol);
         orderedTerminals.add(name);
     }
 
@@ -45,8 +77,9 @@ public class SymbolTable {
             return;
         }
 
-        Symbol symbol = new Symbol(name, SymbolType.NON_TERMINAL);
+        Symbol symbol = new Symbol(intern(name), name, SymbolType.NON_TERMINAL);
         symbols.put(name, symbol);
+        symbolsById.set(symbol.getId(), symbol);
         orderedNonTerminals.add(name);
     }
 
@@ -62,57 +95,217 @@ public class SymbolTable {
             return;
         }
 
-        if (symbol.getProductions() == null) {
+        if (symbol.getEncodedProductions() == null) {
+            symbol.setEncodedProductions(new ArrayList<>());
             symbol.setProductions(new ArrayList<>());
         }
 
-        symbol.getProductions().add(production);
+        int[] encoded = encode(production);
+        symbol.getEncodedProductions().add(encoded);
+        symbol.getProductions().add(decode(encoded));
 
         // Mark symbols as used when they appear in productions
-        for (String element : production) {
-            if (isNonTerminal(element)) {
-                markAsUsed(element);
-            } else if (isTerminal(element)) {
-                markAsUsed(element);
+        for (int code : encoded) {
+            Symbol element = code >= 0 ? symbolsById.get(code) : null;
+            if (element != null) {
+                setUsed(element);
             }
         }
     }
 
+    /**
+     * Gets the ID of a symbol name, assigning a new one on first use
+     * @param name Symbol name
+     * @return Dense symbol ID, starting from 0
+     */
+    public int intern(String name) {
+        Integer id = ids.get(name);
+        if (id != null) {
+            return id;
+        }
+        int newId = names.size();
+        ids.put(name, newId);
+        names.add(name);
+        symbolsById.add(null);
+        return newId;
+    }
+
+    /**
+     * Gets the ID of a symbol name
+     * @param name Symbol name
+     * @return Symbol ID, or {@link #NO_SYMBOL} if the name was never interned
+     */
+    public int getId(String name) {
+        Integer id = ids.get(name);
+        return id == null ? NO_SYMBOL : id;
+    }
+
+    /**
+     * Gets the name of a symbol ID
+     * @param id Symbol ID
+     * @return Symbol name
+     */
+    public String getName(int id) {
+        return names.get(id);
+    }
+
+    /**
+     * Gets the number of interned names: IDs range from 0 to this value (exclusive)
+     * @return Number of interned names
+     */
+    public int getIdCount() {
+        return names.size();
+    }
+
+    /**
+     * Checks if a code of an encoded production is a structural opcode
+     * @param code Element of an encoded production
+     * @return True for the opcodes of (), [] and {}
+     */
+    public static boolean isOpcode(int code) {
+        return code <= GROUP_OPEN && code >= REPEAT_CLOSE;
+    }
+
+    /**
+     * Writes a number with letters only, since symbol names cannot contain digits:
+     * bijective base 26, 0 = A, 1 = B, ..., 25 = Z, 26 = AA, ...
+     * @param index Number to write, not negative
+     * @return Upper-case letters
+     */
+    public static String letters(int index) {
+        StringBuilder sb = new StringBuilder();
+        int n = index + 1;
+        while (n > 0) {
+            n--;
+            sb.append((char) ('A' + n % 26));
+            n /= 26;
+        }
+        return sb.reverse().toString();
+    }
+
+    /**
+     * Encodes a production as symbol IDs and structural opcodes, interning new names
+     * @param production Symbols and delimiters of the production
+     * @return Encoded production
+     */
+    public int[] encode(List<String> production) {
+        int[] encoded = new int[production.size()];
+        for (int i = 0; i < encoded.length; i++) {
+            String element = production.get(i);
+            int opcode = opcodeOf(element);
+            encoded[i] = opcode != NO_SYMBOL ? opcode : intern(element);
+        }
+        return encoded;
+    }
+
+    /**
+     * Decodes a production into symbols and delimiters
+     * @param encoded Encoded production
+     * @return Immutable list of symbols and delimiters
+     */
+    public List<String> decode(int[] encoded) {
+        String[] elements = new String[encoded.length];
+        for (int i = 0; i < encoded.length; i++) {
+            int code = encoded[i];
+            elements[i] = code >= 0 ? names.get(code) : OPCODE_TEXT[GROUP_OPEN - code];
+        }
+        return Collections.unmodifiableList(Arrays.asList(elements));
+    }
+
+    private static int opcodeOf(String element) {
+        if (element.length() != 1) {
+            return NO_SYMBOL;
+        }
+        switch (element.charAt(0)) {
+            case '(':
+                return GROUP_OPEN;
+            case ')':
+                return GROUP_CLOSE;
+            case '[':
+                return OPTIONAL_OPEN;
+            case ']':
+                return OPTIONAL_CLOSE;
+            case '{':
+                return REPEAT_OPEN;
+            case '}':
+                return REPEAT_CLOSE;
+            default:
+                return NO_SYMBOL;
+        }
+    }
+
     /**
      * Marks a symbol as used in the grammar
      * @param name Symbol name
      */
     public void markAsUsed(String name) {
         addNonTerminal(name);
-        Symbol symbol = symbols.get(name);
-        symbol.setUsed(true);
+        setUsed(symbols.get(name));
     }
 
     public void markAsUsedTerminal(String name) {
         addTerminal(name, null);
-        Symbol symbol = symbols.get(name);
-        symbol.setUsed(true);
+        setUsed(symbols.get(name));
     }
 
     public void markAsDefined(String name) {
         Symbol symbol = symbols.get(name);
         if (symbol != null) {
             symbol.setDefined(true);
+            (symbol.getType() == SymbolType.TERMINAL ? definedTerminals : definedNonTerminals).set(symbol.getId());
         }
     }
 
+    /**
+     * Marks a non-terminal as used, recording the position of its first use
+     * @param name     Non-terminal name
+     * @param position Position of the reference in the grammar file
+     */
+    public void markAsUsed(String name, SourcePosition position) {
+        markAsUsed(name);
+        recordFirstUse(symbols.get(name), position);
+    }
+
+    /**
+     * Marks a terminal as used, recording the position of its first use
+     * @param name     Terminal name
+     * @param position Position of the reference in the grammar file
+     */
+    public void markAsUsedTerminal(String name, SourcePosition position) {
+        markAsUsedTerminal(name);
+        recordFirstUse(symbols.get(name), position);
+    }
+
+    /**
+     * Marks a symbol as defined, recording the position of its definition
+     * @param name     Symbol name
+     * @param position Position of the definition in the grammar file
+     */
+    public void markAsDefined(String name, SourcePosition position) {
+        markAsDefined(name);
+        Symbol symbol = symbols.get(name);
+        if (symbol != null && symbol.getDefinitionPosition() == null) {
+            symbol.setDefinitionPosition(position);
+        }
+    }
+
+    private static void recordFirstUse(Symbol symbol, SourcePosition position) {
+        if (symbol.getFirstUsePosition() == null) {
+            symbol.setFirstUsePosition(position);
+        }
+    }
+
+    private void setUsed(Symbol symbol) {
+        symbol.setUsed(true);
+        (symbol.getType() == SymbolType.TERMINAL ? usedTerminals : usedNonTerminals).set(symbol.getId());
+    }
+
     /**
      * Gets all defined terminals
      * @return Set of terminal symbol names
      */
     public Set<String> getDefinedTerminals() {
-        Set<String> result = new HashSet<>();
-        for (Symbol symbol : symbols.values()) {
-            if (symbol.getType() == SymbolType.TERMINAL && symbol.isDefined()) {
-                result.add(symbol.getName());
-            }
-        }
-        return result;
+        return namesOf(definedTerminals);
     }
 
     /**
@@ -120,13 +313,7 @@ public class SymbolTable {
      * @return Set of non-terminal symbol names
      */
     public Set<String> getDefinedNonTerminals() {
-        Set<String> result = new HashSet<>();
-        for (Symbol symbol : symbols.values()) {
-            if (symbol.getType() == SymbolType.NON_TERMINAL && symbol.isDefined()) {
-                result.add(symbol.getName());
-            }
-        }
-        return result;
+        return namesOf(definedNonTerminals);
     }
 
     /**
@@ -134,13 +321,7 @@ public class SymbolTable {
      * @return Set of used terminal symbol names
      */
     public Set<String> getUsedTerminals() {
-        Set<String> result = new HashSet<>();
-        for (Symbol symbol : symbols.values()) {
-            if (symbol.getType() == SymbolType.TERMINAL && symbol.isUsed()) {
-                result.add(symbol.getName());
-            }
-        }
-        return result;
+        return namesOf(usedTerminals);
     }
 
     /**
@@ -148,15 +329,44 @@ public class SymbolTable {
      * @return Set of used non-terminal symbol names
      */
     public Set<String> getUsedNonTerminals() {
+        return namesOf(usedNonTerminals);
+    }
+
+    private Set<String> namesOf(BitSet index) {
         Set<String> result = new HashSet<>();
-        for (Symbol symbol : symbols.values()) {
-            if (symbol.getType() == SymbolType.NON_TERMINAL && symbol.isUsed()) {
-                result.add(symbol.getName());
-            }
+        for (int id = index.nextSetBit(0); id >= 0; id = index.nextSetBit(id + 1)) {
+            result.add(names.get(id));
         }
         return result;
     }
 
+    /**
+     * Copies the symbols, the used/defined indexes and the encoded productions into an immutable
+     * snapshot, that can be read by several threads while nothing changes the table
+     * @return Snapshot of the current state of the table
+     */
+    public SymbolTableSnapshot snapshot() {
+        int count = names.size();
+        SourcePosition[] definitionPositions = new SourcePosition[count];
+        SourcePosition[] firstUsePositions = new SourcePosition[count];
+        List<List<int[]>> encodedProductions = new ArrayList<>(count);
+        BitSet nonTerminals = new BitSet();
+        for (int id = 0; id < count; id++) {
+            Symbol symbol = symbolsById.get(id);
+            if (symbol != null) {
+                definitionPositions[id] = symbol.getDefinitionPosition();
+                firstUsePositions[id] = symbol.getFirstUsePosition();
+                if (symbol.getType() == SymbolType.NON_TERMINAL) {
+                    nonTerminals.set(id);
+                }
+            }
+            encodedProductions.add(Collections.unmodifiableList(new ArrayList<>(getEncodedProductions(id))));
+        }
+        return new SymbolTableSnapshot(names, orderedNonTerminals, nonTerminals, encodedProductions,
+                usedTerminals, definedTerminals, usedNonTerminals, definedNonTerminals,
+                definitionPositions, firstUsePositions);
+    }
+
     /**
      * Gets the terminal definition
      * @param name Terminal name
@@ -197,6 +407,64 @@ public class SymbolTable {
         return result;
     }
 
+    /**
+     * Gets the non-terminals referenced in the productions of a non-terminal
+     * @param nonTerminal Non-terminal name
+     * @return Referenced non-terminals in order of first appearance
+     */
+    public Set<String> getReferencedNonTerminals(String nonTerminal) {
+        Set<String> result = new LinkedHashSet<>();
+        int id = getId(nonTerminal);
+        if (id == NO_SYMBOL) {
+            return result;
+        }
+        for (int[] production : getEncodedProductions(id)) {
+            for (int code : production) {
+                if (code >= 0 && isNonTerminal(code)) {
+                    result.add(names.get(code));
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Gets the encoded productions of a non-terminal
+     * @param nonTerminalId Non-terminal ID
+     * @return Productions as symbol IDs and opcodes, empty if the symbol has none
+     */
+    public List<int[]> getEncodedProductions(int nonTerminalId) {
+        Symbol symbol = symbolById(nonTerminalId);
+        if (symbol != null && symbol.getType() == SymbolType.NON_TERMINAL && symbol.getEncodedProductions() != null) {
+            return symbol.getEncodedProductions();
+        }
+        return Collections.emptyList();
+    }
+
+    /**
+     * Checks if a symbol ID is a terminal
+     * @param id Symbol ID
+     * @return True if the symbol is a terminal
+     */
+    public boolean isTerminal(int id) {
+        Symbol symbol = symbolById(id);
+        return symbol != null && symbol.getType() == SymbolType.TERMINAL;
+    }
+
+    /**
+     * Checks if a symbol ID is a non-terminal
+     * @param id Symbol ID
+     * @return True if the symbol is a non-terminal
+     */
+    public boolean isNonTerminal(int id) {
+        Symbol symbol = symbolById(id);
+        return symbol != null && symbol.getType() == SymbolType.NON_TERMINAL;
+    }
+
+    private Symbol symbolById(int id) {
+        return id >= 0 && id < symbolsById.size() ? symbolsById.get(id) : null;
+    }
+
     /**
      * Checks if a symbol is a terminal
      * @param name Symbol name
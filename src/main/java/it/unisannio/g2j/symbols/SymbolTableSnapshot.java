@@ -0,0 +1,153 @@
+package it.unisannio.g2j.symbols;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Immutable copy of a {@link SymbolTable}, taken with {@link SymbolTable#snapshot()}.
+ * <p>
+ * It can be read by several threads at once, like the semantic checks that run in
+ * parallel: every query works on its own sets.
+ */
+public final class SymbolTableSnapshot {
+
+    private final List<String> names;
+    private final Map<String, Integer> ids;
+    private final List<String> orderedNonTerminals;
+    private final BitSet nonTerminals;
+    private final List<List<int[]>> encodedProductions;
+
+    private final BitSet usedTerminals;
+    private final BitSet definedTerminals;
+    private final BitSet usedNonTerminals;
+    private final BitSet definedNonTerminals;
+
+    private final SourcePosition[] definitionPositions;
+    private final SourcePosition[] firstUsePositions;
+
+    SymbolTableSnapshot(List<String> names, List<String> orderedNonTerminals, BitSet nonTerminals,
+                        List<List<int[]>> encodedProductions,
+                        BitSet usedTerminals, BitSet definedTerminals,
+                        BitSet usedNonTerminals, BitSet definedNonTerminals,
+                        SourcePosition[] definitionPositions, SourcePosition[] firstUsePositions) {
+        this.names = Collections.unmodifiableList(new ArrayList<>(names));
+        this.ids = new HashMap<>();
+        for (int id = 0; id < names.size(); id++) {
+            ids.put(names.get(id), id);
+        }
+        this.orderedNonTerminals = Collections.unmodifiableList(new ArrayList<>(orderedNonTerminals));
+        this.nonTerminals = nonTerminals;
+        this.encodedProductions = Collections.unmodifiableList(encodedProductions);
+        this.usedTerminals = (BitSet) usedTerminals.clone();
+        this.definedTerminals = (BitSet) definedTerminals.clone();
+        this.usedNonTerminals = (BitSet) usedNonTerminals.clone();
+        this.definedNonTerminals = (BitSet) definedNonTerminals.clone();
+        this.definitionPositions = definitionPositions;
+        this.firstUsePositions = firstUsePositions;
+    }
+
+    /**
+     * Gets the ID of a symbol name
+     * @param name Symbol name
+     * @return Symbol ID, or {@link SymbolTable#NO_SYMBOL} if the name was never interned
+     */
+    public int getId(String name) {
+        Integer id = ids.get(name);
+        return id == null ? SymbolTable.NO_SYMBOL : id;
+    }
+
+    /**
+     * Gets the name of a symbol ID
+     * @param id Symbol ID
+     * @return Symbol name
+     */
+    public String getName(int id) {
+        return names.get(id);
+    }
+
+    /**
+     * Gets the number of interned names: IDs range from 0 to this value (exclusive)
+     * @return Number of interned names
+     */
+    public int getIdCount() {
+        return names.size();
+    }
+
+    /**
+     * Checks if a symbol ID is a non-terminal
+     * @param id Symbol ID
+     * @return True if the symbol is a non-terminal
+     */
+    public boolean isNonTerminal(int id) {
+        return nonTerminals.get(id);
+    }
+
+    /**
+     * Gets the non-terminals in declaration order
+     * @return Immutable list of non-terminal names
+     */
+    public List<String> getOrderedNonTerminals() {
+        return orderedNonTerminals;
+    }
+
+    /**
+     * Gets the encoded productions of a non-terminal
+     * @param nonTerminalId Non-terminal ID
+     * @return Productions as symbol IDs and opcodes, empty if the symbol has none
+     */
+    public List<int[]> getEncodedProductions(int nonTerminalId) {
+        return encodedProductions.get(nonTerminalId);
+    }
+
+    /**
+     * Gets the non-terminals that are used but not defined
+     * @return Symbol IDs in ascending order
+     */
+    public int[] getUndefinedNonTerminals() {
+        return difference(usedNonTerminals, definedNonTerminals);
+    }
+
+    /**
+     * Gets the terminals that are used but not defined
+     * @return Symbol IDs in ascending order
+     */
+    public int[] getUndefinedTerminals() {
+        return difference(usedTerminals, definedTerminals);
+    }
+
+    /**
+     * Gets the terminals that are defined but not used
+     * @return Symbol IDs in ascending order
+     */
+    public int[] getUnusedTerminals() {
+        return difference(definedTerminals, usedTerminals);
+    }
+
+    /**
+     * Gets where a symbol is defined in the grammar file
+     * @param id Symbol ID
+     * @return Position of the definition, or null if unknown
+     */
+    public SourcePosition getDefinitionPosition(int id) {
+        return definitionPositions[id];
+    }
+
+    /**
+     * Gets where a symbol is used for the first time in the grammar file
+     * @param id Symbol ID
+     * @return Position of the first use, or null if unknown
+     */
+    public SourcePosition getFirstUsePosition(int id) {
+        return firstUsePositions[id];
+    }
+
+    private static int[] difference(BitSet a, BitSet b) {
+        BitSet result = (BitSet) a.clone();
+        result.andNot(b);
+        return result.stream().toArray();
+    }
+}
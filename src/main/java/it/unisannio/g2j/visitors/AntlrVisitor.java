@@ -2,173 +2,235 @@ package it.unisannio.g2j.visitors;
 
 import it.unisannio.g2j.G2JBaseVisitor;
 import it.unisannio.g2j.G2JParser;
-import it.unisannio.g2j.symbols.SymbolTable;
+import it.unisannio.g2j.emitters.EmitterBackend;
+import it.unisannio.g2j.emitters.GrammarEmitter;
+import it.unisannio.g2j.emitters.RegexFragmentCache;
+import it.unisannio.g2j.ir.LexicalRule;
+import it.unisannio.g2j.ir.ParserRule;
+import it.unisannio.g2j.ir.PrecedenceChain;
 
 import java.io.FileOutputStream;
+import java.io.IOException;
 import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.io.Writer;
 import java.nio.charset.StandardCharsets;
-import java.util.ArrayList;
 import java.util.List;
 
-public class AntlrVisitor extends G2JBaseVisitor<Void> {
+/**
+ * Backend of the {@link GrammarEmitter} that renders the grammar as an ANTLR 4 grammar.
+ * Lexer rules are rendered by visiting the regex subtrees of the lexical rules.
+ */
+public class AntlrVisitor extends G2JBaseVisitor<Void> implements EmitterBackend {
 
-    private SymbolTable symbolTable = new SymbolTable();
-    private StringBuilder g4FileContent = new StringBuilder();
+    // Text not yet written to the output (only the rule being rendered, when streaming)
+    private final StringBuilder g4FileContent = new StringBuilder();
+    private final Writer output;
+    private int fragmentStart;
 
-    @Override
-    public Void visitGrammarFile(G2JParser.GrammarFileContext ctx) {
-        g4FileContent.append("grammar GrammarOut;\n\n");
+    // Regexes already rendered, shared by all the lexical rules
+    private final RegexFragmentCache regexFragments = new RegexFragmentCache();
 
-        // First pass to build the symbol table
-        visitChildren(ctx);
+    /**
+     * Creates a backend that keeps the whole ANTLR grammar in memory, see {@link #writeOutputToFile(String)}
+     */
+    public AntlrVisitor() {
+        this(null);
+    }
 
-        // Optional: print symbol table for debugging
-        // symbolTable.printSymbolTable();
+    /**
+     * Creates a backend that writes every rule to the output as soon as it is rendered,
+     * so that only the rule being rendered is kept in memory
+     * @param output Destination of the generated text, null to keep it in memory
+     */
+    public AntlrVisitor(Writer output) {
+        this.output = output;
+    }
 
-        return null;
+    @Override
+    public String getFormat() {
+        return "g4";
     }
 
     @Override
-    public Void visitLexRule(G2JParser.LexRuleContext ctx) {
-        String terminal = ctx.TERM().getText();
+    public void flush() {
+        flushRenderedText();
+    }
 
-        // Build regex definition for the symbol table
-        StringBuilder regexDef = new StringBuilder();
-        for (G2JParser.RegexContext regex : ctx.regex()) {
-            // Store original position to restore after
-            int originalLength = g4FileContent.length();
+    @Override
+    public void beginFragment() {
+        flushRenderedText();
+        fragmentStart = g4FileContent.length();
+    }
 
-            // Use visitor to build the regex
-            visit(regex);
+    @Override
+    public String endFragment() {
+        return g4FileContent.substring(fragmentStart);
+    }
 
-            // Extract the regex from the g4FileContent
-            String regexContent = g4FileContent.substring(originalLength);
-            regexDef.append(regexContent);
+    @Override
+    public void appendFragment(String fragment) {
+        flushRenderedText();
+        g4FileContent.append(fragment);
+    }
 
-            // Restore g4FileContent
-            g4FileContent.setLength(originalLength);
+    @Override
+    public void onGrammarEnd() {
+        flushRenderedText();
+        if (output != null) {
+            try {
+                output.flush();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
         }
+    }
 
-        // Add terminal to symbol table with its definition
-        symbolTable.addTerminal(terminal, regexDef.toString());
-
-        // Now build the actual token definition in the G4 file
-        g4FileContent.append(terminal).append(" : ");
-
-        // Re-visit regex nodes to add their content to g4FileContent
-        for (G2JParser.RegexContext regex : ctx.regex()) {
-            visit(regex);
+    /**
+     * Writes the text rendered so far to the output, if streaming
+     */
+    private void flushRenderedText() {
+        if (output == null || g4FileContent.length() == 0) {
+            return;
         }
-
-        g4FileContent.append(";\n");
-        return null;
+        try {
+            output.append(g4FileContent);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        g4FileContent.setLength(0);
     }
 
     @Override
-    public Void visitParseRule(G2JParser.ParseRuleContext ctx) {
-        // Trasforma il primo carattere del non terminale in minuscolo
-        String nonTerminal = ctx.NON_TERM().getText();
-        String formattedNonTerminal = nonTerminal.replace("<", "").replace(">", "");
-        formattedNonTerminal = Character.toLowerCase(formattedNonTerminal.charAt(0)) + formattedNonTerminal.substring(1);
-
-        // Add to symbol table with original name
-        symbolTable.addNonTerminal(nonTerminal);
-
-        g4FileContent.append(formattedNonTerminal).append(" : ");
-        visit(ctx.productionList());
-        g4FileContent.append(";\n");
-        return null;
+    public void onGrammarStart() {
+        g4FileContent.append("grammar GrammarOut;\n\n");
     }
 
     @Override
-    public Void visitProductionList(G2JParser.ProductionListContext ctx) {
-        for (int i = 0; i < ctx.production().size(); i++) {
-            if (i > 0) {
-                g4FileContent.append(" | ");
-            }
-            visit(ctx.production(i));
-        }
-        return null;
+    public void onLexicalRule(LexicalRule rule) {
+        visit(rule.getContext());
     }
 
     @Override
-    public Void visitProduction(G2JParser.ProductionContext ctx) {
-        // For tracking symbols in this production to add to the symbol table later
-        List<String> productionSymbols = new ArrayList<>();
-
-        for (G2JParser.ElementContext element : ctx.element()) {
-            if (element.NON_TERM() != null) {
-                productionSymbols.add(element.NON_TERM().getText());
-            } else if (element.TERM() != null) {
-                productionSymbols.add(element.TERM().getText());
-            }
-
-            visit(element);
-        }
+    public void onRule(ParserRule rule) {
+        g4FileContent.append(formatNonTerminal(rule.getName())).append(" : ");
+    }
 
-        // If we're in a parse rule context, add this production to the current non-terminal
-        if (ctx.getParent() instanceof G2JParser.ProductionListContext &&
-                ctx.getParent().getParent() instanceof G2JParser.ParseRuleContext) {
-            String nonTerminal = ((G2JParser.ParseRuleContext) ctx.getParent().getParent()).NON_TERM().getText();
-            symbolTable.addProduction(nonTerminal, productionSymbols);
+    @Override
+    public void onAlternative(int index) {
+        if (index > 0) {
+            g4FileContent.append(" | ");
         }
-
-        return null;
     }
 
     @Override
-    public Void visitElement(G2JParser.ElementContext ctx) {
-        if (ctx.NON_TERM() != null) {
-            // Trasforma il primo carattere del non terminale in minuscolo
-            String nonTerminal = ctx.NON_TERM().getText();
-            symbolTable.markAsUsed(nonTerminal);
-
-            String formattedNonTerminal = nonTerminal.replace("<", "").replace(">", "");
-            formattedNonTerminal = Character.toLowerCase(formattedNonTerminal.charAt(0)) + formattedNonTerminal.substring(1);
+    public void onNonTerminal(String name) {
+        g4FileContent.append(formatNonTerminal(name)).append(" ");
+    }
 
-            g4FileContent.append(formattedNonTerminal).append(" ");
-        } else if (ctx.TERM() != null) {
-            String terminal = ctx.TERM().getText();
-            symbolTable.markAsUsed(terminal);
-            g4FileContent.append(terminal).append(" ");
-        } else if (ctx.grouping() != null || ctx.optionality() != null || ctx.repetivity() != null || ctx.rep_opt() != null) {
-            visitChildren(ctx);
-        }
-        return null;
+    @Override
+    public void onTerminal(String name) {
+        g4FileContent.append(name).append(" ");
     }
 
     @Override
-    public Void visitGrouping(G2JParser.GroupingContext ctx) {
+    public void onGroupingStart() {
         g4FileContent.append("(");
-        visit(ctx.production());
+    }
+
+    @Override
+    public void onGroupingEnd() {
         g4FileContent.append(")");
-        return null;
     }
 
     @Override
-    public Void visitOptionality(G2JParser.OptionalityContext ctx) {
+    public void onOptionalStart() {
         g4FileContent.append("(");
-        visit(ctx.production());
+    }
+
+    @Override
+    public void onOptionalEnd() {
         g4FileContent.append(")?");
-        return null;
     }
 
     @Override
-    public Void visitRepetivity(G2JParser.RepetivityContext ctx) {
+    public void onRepetitionStart(boolean optional) {
         g4FileContent.append("(");
-        visit(ctx.production());
-        g4FileContent.append(")+");
-        return null;
     }
 
     @Override
-    public Void visitRep_opt(G2JParser.Rep_optContext ctx) {
-        g4FileContent.append("(");
-        visit(ctx.production());
-        g4FileContent.append(")*");
+    public void onRepetitionEnd(boolean optional) {
+        g4FileContent.append(optional ? ")*" : ")+");
+    }
+
+    @Override
+    public void onRuleEnd(ParserRule rule) {
+        g4FileContent.append(";\n");
+    }
+
+    /**
+     * Renders the chain as a single left-recursive rule: ANTLR gives the alternatives
+     * listed first the higher precedence, so the levels are listed from the highest.
+     */
+    @Override
+    public void onPrecedenceChain(PrecedenceChain chain) {
+        String name = formatNonTerminal(chain.getName());
+        g4FileContent.append(name).append(" : ");
+
+        List<List<String>> operators = chain.getOperators();
+        for (int level = operators.size() - 1; level >= 0; level--) {
+            List<String> levelOperators = operators.get(level);
+            g4FileContent.append(name).append(" ");
+            if (levelOperators.size() == 1) {
+                g4FileContent.append(levelOperators.get(0)).append(" ");
+            } else {
+                g4FileContent.append("(").append(String.join(" | ", levelOperators)).append(") ");
+            }
+            g4FileContent.append(name).append(" ");
+            g4FileContent.append(" | ");
+        }
+        g4FileContent.append(formatNonTerminal(chain.getPrimary())).append(" ");
+        g4FileContent.append(";\n");
+    }
+
+    @Override
+    public Void visitLexRule(G2JParser.LexRuleContext ctx) {
+        String terminal = ctx.TERM().getText();
+
+        // Build the token definition in the G4 file
+        g4FileContent.append(terminal).append(" : ");
+
+        // Render the regexes, reusing the text of identical ones
+        for (G2JParser.RegexContext regex : ctx.regex()) {
+            appendRegex(regex);
+        }
+
+        g4FileContent.append(";\n");
         return null;
     }
 
+    /**
+     * Trasforma un non terminale (es. &lt;MulDivExpr&gt;) nel nome di regola ANTLR (es. mulDivExpr).
+     */
+    private String formatNonTerminal(String nonTerminal) {
+        String formattedNonTerminal = nonTerminal.replace("<", "").replace(">", "");
+        return Character.toLowerCase(formattedNonTerminal.charAt(0)) + formattedNonTerminal.substring(1);
+    }
+
+    /**
+     * Renders a regex, or reuses the text rendered for an identical one
+     */
+    private void appendRegex(G2JParser.RegexContext regex) {
+        String fragment = regexFragments.get(regex);
+        if (fragment != null) {
+            g4FileContent.append(fragment);
+            return;
+        }
+        int start = g4FileContent.length();
+        visit(regex);
+        regexFragments.put(regex, g4FileContent.substring(start));
+    }
+
     @Override
     public Void visitRegex(G2JParser.RegexContext ctx) {
         for (int i = 0; i < ctx.term().size(); i++) {
@@ -213,7 +275,7 @@ public class AntlrVisitor extends G2JBaseVisitor<Void> {
             g4FileContent.append(ctx.CHAR_CLASS().getText());
         } else if (ctx.LEFT_ROUND_BRACKET() != null) {
             g4FileContent.append("(");
-            visit(ctx.regex());
+            appendRegex(ctx.regex());
             g4FileContent.append(")");
         } else if (ctx.STRING() != null) {
             String literal = ctx.STRING().getText().replace("\"", "'"); // Sostituisci " con '
@@ -223,13 +285,9 @@ public class AntlrVisitor extends G2JBaseVisitor<Void> {
     }
 
     /**
-     * Gets the symbol table built during traversal
-     * @return Symbol table containing grammar symbols
+     * Saves the generated text, when it is kept in memory
+     * @param fileName Output file
      */
-    public SymbolTable getSymbolTable() {
-        return symbolTable;
-    }
-
     public void writeOutputToFile(String fileName) {
         try (OutputStream outputStream = new FileOutputStream(fileName)) {
             outputStream.write(g4FileContent.toString().getBytes(StandardCharsets.UTF_8));
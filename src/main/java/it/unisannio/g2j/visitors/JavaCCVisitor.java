@@ -2,22 +2,113 @@ package it.unisannio.g2j.visitors;
 
 import it.unisannio.g2j.G2JBaseVisitor;
 import it.unisannio.g2j.G2JParser;
-import it.unisannio.g2j.symbols.SymbolTable;
+import it.unisannio.g2j.analysis.Lookahead;
+import it.unisannio.g2j.emitters.EmitterBackend;
+import it.unisannio.g2j.emitters.GrammarEmitter;
+import it.unisannio.g2j.emitters.RegexFragmentCache;
+import it.unisannio.g2j.ir.Element;
+import it.unisannio.g2j.ir.ElementKind;
+import it.unisannio.g2j.ir.LexicalRule;
+import it.unisannio.g2j.ir.ParserRule;
+import it.unisannio.g2j.ir.PrecedenceChain;
 
 import java.io.FileOutputStream;
+import java.io.IOException;
 import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.io.Writer;
 import java.nio.charset.StandardCharsets;
-import java.util.ArrayList;
 import java.util.List;
-import java.util.Objects;
 
-public class JavaCCVisitor extends G2JBaseVisitor<Void> {
+/**
+ * Backend of the {@link GrammarEmitter} that renders the grammar as a JavaCC specification.
+ * Token definitions are rendered by visiting the regex subtrees of the lexical rules.
+ * <p>
+ * JavaCC decides with one token by default: the choice points that need more get a
+ * local {@code LOOKAHEAD}, never a global one, so the other decisions stay LL(1).
+ */
+public class JavaCCVisitor extends G2JBaseVisitor<Void> implements EmitterBackend {
 
-    private SymbolTable symbolTable = new SymbolTable();
-    private StringBuilder jjFileContent = new StringBuilder();
+    // Text not yet written to the output (only the rule being rendered, when streaming)
+    private final StringBuilder jjFileContent = new StringBuilder();
+    private final Writer output;
+    private int fragmentStart;
+
+    // Regexes already rendered, shared by all the lexical rules
+    private final RegexFragmentCache regexFragments = new RegexFragmentCache();
+
+    /**
+     * Creates a backend that keeps the whole JavaCC specification in memory, see {@link #writeOutputToFile(String)}
+     */
+    public JavaCCVisitor() {
+        this(null);
+    }
+
+    /**
+     * Creates a backend that writes every rule to the output as soon as it is rendered,
+     * so that only the rule being rendered is kept in memory
+     * @param output Destination of the generated text, null to keep it in memory
+     */
+    public JavaCCVisitor(Writer output) {
+        this.output = output;
+    }
+
+    @Override
+    public String getFormat() {
+        return "jj";
+    }
+
+    @Override
+    public void flush() {
+        flushRenderedText();
+    }
+
+    @Override
+    public void beginFragment() {
+        flushRenderedText();
+        fragmentStart = jjFileContent.length();
+    }
+
+    @Override
+    public String endFragment() {
+        return jjFileContent.substring(fragmentStart);
+    }
 
     @Override
-    public Void visitGrammarFile(G2JParser.GrammarFileContext ctx) {
+    public void appendFragment(String fragment) {
+        flushRenderedText();
+        jjFileContent.append(fragment);
+    }
+
+    @Override
+    public void onGrammarEnd() {
+        flushRenderedText();
+        if (output != null) {
+            try {
+                output.flush();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    /**
+     * Writes the text rendered so far to the output, if streaming
+     */
+    private void flushRenderedText() {
+        if (output == null || jjFileContent.length() == 0) {
+            return;
+        }
+        try {
+            output.append(jjFileContent);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        jjFileContent.setLength(0);
+    }
+
+    @Override
+    public void onGrammarStart() {
         jjFileContent.append("options {\n");
         jjFileContent.append("  STATIC = false;\n");
         jjFileContent.append("}\n\n");
@@ -29,157 +120,186 @@ public class JavaCCVisitor extends G2JBaseVisitor<Void> {
         jjFileContent.append("  }\n");
         jjFileContent.append("}\n");
         jjFileContent.append("PARSER_END(GrammarOut)\n\n");
-
-        // First pass to build the symbol table
-        visitChildren(ctx);
-
-        // symbolTable.printSymbolTable();
-
-        return null;
     }
 
     @Override
-    public Void visitParseRule(G2JParser.ParseRuleContext ctx) {
-        String nonTerminal = ctx.NON_TERM().getText();
-        symbolTable.addNonTerminal(nonTerminal);
+    public void onLexicalRule(LexicalRule rule) {
+        visit(rule.getContext());
+    }
 
-        jjFileContent.append("void ").append(nonTerminal.replace("<", "").replace(">", "")).append("() :\n");
+    @Override
+    public void onRule(ParserRule rule) {
+        jjFileContent.append("void ").append(rule.getName().replace("<", "").replace(">", "")).append("() :\n");
         jjFileContent.append("{\n");
         jjFileContent.append("}\n");
         jjFileContent.append("{\n");
-
-        visit(ctx.productionList());
-
-        if (nonTerminal.equals("<Program>")) {
-            jjFileContent.append(" <EOF>");
-        }
-
-        jjFileContent.append("}\n\n");
-        return null;
     }
 
     @Override
-    public Void visitProductionList(G2JParser.ProductionListContext ctx) {
-        for (int i = 0; i < ctx.production().size(); i++) {
-            if (i > 0) {
-                jjFileContent.append(" |\n");
-            }
-            visit(ctx.production(i));
+    public void onAlternative(int index) {
+        if (index > 0) {
+            jjFileContent.append(" |\n");
         }
-        return null;
     }
 
     @Override
-    public Void visitProduction(G2JParser.ProductionContext ctx) {
-        // For tracking symbols in this production to add to the symbol table later
-        List<String> productionSymbols = new ArrayList<>();
-
-        for (G2JParser.ElementContext element : ctx.element()) {
-            if (element.NON_TERM() != null) {
-                productionSymbols.add(element.NON_TERM().getText());
-            } else if (element.TERM() != null && !Objects.equals(element.TERM().getText(), "EOF")) {
-                productionSymbols.add(element.TERM().getText());
-            }
+    public boolean requiresLookahead() {
+        return true;
+    }
 
-            visit(element);
+    @Override
+    public void onLookahead(Lookahead lookahead) {
+        jjFileContent.append(" LOOKAHEAD(");
+        if (lookahead.isSyntactic()) {
+            appendExpansion(lookahead.getExpansion());
+        } else {
+            jjFileContent.append(lookahead.getDepth());
         }
+        jjFileContent.append(")");
+    }
 
-        // If we're in a parse rule context, add this production to the current non-terminal
-        if (ctx.getParent() instanceof G2JParser.ProductionListContext &&
-                ctx.getParent().getParent() instanceof G2JParser.ParseRuleContext) {
-            String nonTerminal = ((G2JParser.ParseRuleContext) ctx.getParent().getParent()).NON_TERM().getText();
-            symbolTable.addProduction(nonTerminal, productionSymbols);
+    /**
+     * Renders the expansion of a syntactic lookahead with the same callbacks as the rules
+     */
+    private void appendExpansion(List<Element> elements) {
+        for (Element element : elements) {
+            switch (element.getKind()) {
+                case NON_TERMINAL:
+                    onNonTerminal(element.getName());
+                    break;
+                case TERMINAL:
+                    onTerminal(element.getName());
+                    break;
+                case GROUPING:
+                    onGroupingStart();
+                    appendExpansion(element.getChildren());
+                    onGroupingEnd();
+                    break;
+                case OPTIONALITY:
+                    onOptionalStart();
+                    appendExpansion(element.getChildren());
+                    onOptionalEnd();
+                    break;
+                case REPETIVITY:
+                case REP_OPT:
+                    boolean optional = element.getKind() == ElementKind.REP_OPT;
+                    onRepetitionStart(optional);
+                    appendExpansion(element.getChildren());
+                    onRepetitionEnd(optional);
+                    break;
+            }
         }
+    }
 
-        return null;
+    @Override
+    public void onNonTerminal(String name) {
+        jjFileContent.append(" ").append(name.replace("<", "").replace(">", "")).append("()");
     }
 
     @Override
-    public Void visitElement(G2JParser.ElementContext ctx) {
-        if (ctx.NON_TERM() != null) {
-            String nonTerminal = ctx.NON_TERM().getText();
-            symbolTable.markAsUsed(nonTerminal);
-            jjFileContent.append(" ").append(nonTerminal.replace("<", "").replace(">", "")).append("()");
-        } else if (ctx.TERM() != null && !Objects.equals(ctx.TERM().getText(), "EOF")) {
-            String terminal = ctx.TERM().getText();
-            symbolTable.markAsUsed(terminal);
-            jjFileContent.append(" <").append(terminal).append(">");
-        } else if (ctx.grouping() != null) {
-            visit(ctx.grouping());
-        } else if (ctx.optionality() != null) {
-            visit(ctx.optionality());
-        } else if (ctx.repetivity() != null) {
-            visit(ctx.repetivity());
-        } else if (ctx.rep_opt() != null) {
-            visit(ctx.rep_opt());
-        }
-        return null;
+    public void onTerminal(String name) {
+        jjFileContent.append(" <").append(name).append(">");
     }
 
     @Override
-    public Void visitGrouping(G2JParser.GroupingContext ctx) {
+    public void onGroupingStart() {
         jjFileContent.append(" (");
-        visit(ctx.production());
+    }
+
+    @Override
+    public void onGroupingEnd() {
         jjFileContent.append(")");
-        return null;
     }
 
     @Override
-    public Void visitOptionality(G2JParser.OptionalityContext ctx) {
+    public void onOptionalStart() {
         jjFileContent.append(" [");
-        visit(ctx.production());
-        jjFileContent.append("]");
-        return null;
     }
 
     @Override
-    public Void visitRepetivity(G2JParser.RepetivityContext ctx) {
-        jjFileContent.append(" (");
-        visit(ctx.production());
-        jjFileContent.append(")+ ");
-        return null;
+    public void onOptionalEnd() {
+        jjFileContent.append("]");
     }
 
-    public Void visitRep_opt(G2JParser.Rep_optContext ctx) {
-
-        jjFileContent.append("(");
-        visit(ctx.production());
-        jjFileContent.append(")*");
+    @Override
+    public void onRepetitionStart(boolean optional) {
+        jjFileContent.append(optional ? "(" : " (");
+    }
 
-        return null;
+    @Override
+    public void onRepetitionEnd(boolean optional) {
+        jjFileContent.append(optional ? ")*" : ")+ ");
     }
 
     @Override
-    public Void visitLexRule(G2JParser.LexRuleContext ctx) {
-        String terminal = ctx.TERM().getText();
+    public void onRuleEnd(ParserRule rule) {
+        jjFileContent.append("}\n\n");
+    }
 
-        // Build regex definition for the symbol table
-        StringBuilder regexDef = new StringBuilder();
-        for (G2JParser.RegexContext regex : ctx.regex()) {
-            // Store original position to restore after
-            int originalLength = jjFileContent.length();
+    /**
+     * Renders the chain with precedence climbing: a single method parses a primary and then
+     * every operator whose precedence is at least the minimum, parsing its right operand
+     * with a higher minimum, so that every operand costs one call whatever the number of levels.
+     */
+    @Override
+    public void onPrecedenceChain(PrecedenceChain chain) {
+        String name = chain.getName().replace("<", "").replace(">", "");
+        String climbing = name + "Precedence";
+        String precedenceOf = name + "PrecedenceOf";
 
-            // Use visitor to build the regex
-            visit(regex);
+        jjFileContent.append("void ").append(name).append("() :\n");
+        jjFileContent.append("{\n");
+        jjFileContent.append("}\n");
+        jjFileContent.append("{\n");
+        jjFileContent.append(" ").append(climbing).append("(1)");
+        jjFileContent.append("}\n\n");
 
-            // Extract the regex from the jjFileContent
-            String regexContent = jjFileContent.substring(originalLength);
-            regexDef.append(regexContent);
+        jjFileContent.append("void ").append(climbing).append("(int minPrecedence) :\n");
+        jjFileContent.append("{\n");
+        jjFileContent.append("  int precedence;\n");
+        jjFileContent.append("}\n");
+        jjFileContent.append("{\n");
+        jjFileContent.append(" ").append(chain.getPrimary().replace("<", "").replace(">", "")).append("()");
+        jjFileContent.append(" ( LOOKAHEAD({ ").append(precedenceOf)
+                .append("(getToken(1).kind) >= minPrecedence })\n");
+        jjFileContent.append("   { precedence = ").append(precedenceOf).append("(getToken(1).kind); }\n");
+        jjFileContent.append("   (");
+        boolean first = true;
+        for (List<String> levelOperators : chain.getOperators()) {
+            for (String operator : levelOperators) {
+                jjFileContent.append(first ? " " : " | ").append("<").append(operator).append(">");
+                first = false;
+            }
+        }
+        jjFileContent.append(")\n");
+        jjFileContent.append("   ").append(climbing).append("(precedence + 1))*");
+        jjFileContent.append("}\n\n");
 
-            // Restore jjFileContent
-            jjFileContent.setLength(originalLength);
+        jjFileContent.append("JAVACODE\n");
+        jjFileContent.append("int ").append(precedenceOf).append("(int kind) {\n");
+        jjFileContent.append("  switch (kind) {\n");
+        for (List<String> levelOperators : chain.getOperators()) {
+            for (String operator : levelOperators) {
+                jjFileContent.append("    case ").append(operator).append(": return ")
+                        .append(chain.getPrecedence(operator)).append(";\n");
+            }
         }
+        jjFileContent.append("    default: return 0;\n");
+        jjFileContent.append("  }\n");
+        jjFileContent.append("}\n\n");
+    }
 
-        // Add terminal to symbol table with its definition
-        symbolTable.addTerminal(terminal, regexDef.toString());
+    @Override
+    public Void visitLexRule(G2JParser.LexRuleContext ctx) {
+        String terminal = ctx.TERM().getText();
 
-        // Now build the actual token definition in the JJ file
+        // Build the token definition in the JJ file
         jjFileContent.append("TOKEN : {\n");
         jjFileContent.append("  <").append(terminal).append(" : ");
 
-        // Re-visit regex nodes to add their content to jjFileContent
+        // Render the regexes, reusing the text of identical ones
         for (G2JParser.RegexContext regex : ctx.regex()) {
-            visit(regex);
+            appendRegex(regex);
         }
 
         jjFileContent.append(">\n");
@@ -188,6 +308,20 @@ public class JavaCCVisitor extends G2JBaseVisitor<Void> {
         return null;
     }
 
+    /**
+     * Renders a regex, or reuses the text rendered for an identical one
+     */
+    private void appendRegex(G2JParser.RegexContext regex) {
+        String fragment = regexFragments.get(regex);
+        if (fragment != null) {
+            jjFileContent.append(fragment);
+            return;
+        }
+        int start = jjFileContent.length();
+        visit(regex);
+        regexFragments.put(regex, jjFileContent.substring(start));
+    }
+
     @Override
     public Void visitRegex(G2JParser.RegexContext ctx) {
         for (int i = 0; i < ctx.term().size(); i++) {
@@ -273,7 +407,7 @@ public class JavaCCVisitor extends G2JBaseVisitor<Void> {
             jjFileContent.append(convertCharClass(charClass));
         } else if (ctx.LEFT_ROUND_BRACKET() != null) {
             jjFileContent.append("(");
-            visit(ctx.regex());
+            appendRegex(ctx.regex());
             jjFileContent.append(")");
         } else if (ctx.STRING() != null) {
             jjFileContent.append(ctx.STRING().getText());
@@ -282,13 +416,9 @@ public class JavaCCVisitor extends G2JBaseVisitor<Void> {
     }
 
     /**
-     * Gets the symbol table built during traversal
-     * @return Symbol table containing grammar symbols
+     * Saves the generated text, when it is kept in memory
+     * @param fileName Output file
      */
-    public SymbolTable getSymbolTable() {
-        return symbolTable;
-    }
-
     public void writeOutputToFile(String fileName) {
         try (OutputStream outputStream = new FileOutputStream(fileName)) {
             outputStream.write(jjFileContent.toString().getBytes(StandardCharsets.UTF_8));
@@ -2,30 +2,159 @@ package it.unisannio.g2j.visitors;
 
 import it.unisannio.g2j.G2JBaseVisitor;
 import it.unisannio.g2j.G2JParser;
-import it.unisannio.g2j.exceptions.SemanticException;
+import it.unisannio.g2j.analysis.GrammarMetrics;
+import it.unisannio.g2j.analysis.PrecedenceChains;
+import it.unisannio.g2j.analysis.RuleGraph;
+import it.unisannio.g2j.analysis.StronglyConnectedComponents;
+import it.unisannio.g2j.errors.SemanticDiagnostic;
+import it.unisannio.g2j.ir.GrammarIR;
+import it.unisannio.g2j.ir.GrammarIRBuilder;
+import it.unisannio.g2j.ir.OptimizedRule;
+import it.unisannio.g2j.ir.PrecedenceChain;
+import it.unisannio.g2j.symbols.SourcePosition;
 import it.unisannio.g2j.symbols.SymbolTable;
+import it.unisannio.g2j.symbols.SymbolTableSnapshot;
+import org.antlr.v4.runtime.tree.TerminalNode;
 
+import java.io.BufferedWriter;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
 import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.Consumer;
+import java.util.function.Function;
 
 public class SemanticVisitor extends G2JBaseVisitor<Void> {
 
     // Symbol table for managing symbols
-    private final SymbolTable symbolTable = new SymbolTable();
+    private final SymbolTable symbolTable;
+
+    // Input rules optimized by this visitor: all of them, or a group of independent
+    // components when the optimization runs in parallel (see forEachComponent)
+    private final Collection<String> scope;
+
+    // Console output: buffered by the parallel tasks and printed in order afterwards
+    private final PrintStream out;
+    private final ByteArrayOutputStream log;
 
     // Maps and sets for optimization
     private Map<String, List<List<String>>> optimizedProductions = new HashMap<>();
     private Set<String> newNonTerminals = new HashSet<>();
     private boolean grammarModified = false;
 
+    // Rule of the input each new non-terminal was created from, in creation order
+    private final Map<String, String> derivedFrom = new LinkedHashMap<>();
+    // Rule each new non-terminal was directly created from (an input rule or another new non-terminal)
+    private final Map<String, String> parentOf = new LinkedHashMap<>();
+    private final Set<String> recursiveRules = new HashSet<>();
+    // Rules copied into their callers by inlineRules
+    private final Set<String> inlinableRules = new HashSet<>();
+    // Productions of the input rules at the end of inlineRules, before the factorization:
+    // the form copied into the callers, also for the reused rules
+    private final Map<String, List<List<String>>> inlinedProductions = new HashMap<>();
+
+    // Optimization results reused for some rules (e.g. from the incremental cache),
+    // by input rule and by every non-terminal they contain
+    private Map<String, OptimizedRule> reusedRules = Collections.emptyMap();
+    private Map<String, OptimizedRule> reusedByName = new HashMap<>();
+
+    // Rules rendered by the emitters as precedence chains, left untouched by the optimizations
+    private Map<String, PrecedenceChain> precedenceChains = Collections.emptyMap();
+
+    // Metrics of the input and optimized grammars
+    private GrammarMetrics originalMetrics;
+    private GrammarMetrics optimizedMetrics;
+
+    // Findings of the semantic checks
+    private List<SemanticDiagnostic> semanticDiagnostics = Collections.emptyList();
+
+    // Rules of the optimized grammar that <Program> no longer reaches, left out of the generated files
+    private Set<String> unreachableRules = Collections.emptySet();
+
+    // Maximum number of symbols an inlined rule may add to the grammar (size * (fan-in - 1))
+    private static final int MAX_INLINE_GROWTH = 16;
+
+    // Maximum number of symbols of an inlined rule, also when it is used only once
+    private static final int MAX_INLINE_SIZE = 24;
+
+    // Minimum number of input rules optimized by a single parallel task
+    private static final int RULES_PER_TASK = 128;
+
+    // Left recursion is rewritten into {[ ]} loops instead of recursive Tail rules
+    private boolean leftRecursionLoops = false;
+
     // Keep track of recursion symbols
     private int numRecursionSymbols = 0;
 
+    // Parse subtrees of the lexical rules, handed over to the emitters
+    private final Map<String, G2JParser.LexRuleContext> lexRuleContexts = new HashMap<>();
+
     // Set of symbols that should be ignored for symbol usage tracking (delimiters, etc.)
     private final Set<String> ignoredSymbols = new HashSet<>(
             Arrays.asList("(", ")", "[", "]", "{", "}")
     );
 
+    public SemanticVisitor() {
+        this(System.out);
+    }
+
+    /**
+     * Creates a visitor that prints the messages of the optimizations to the given stream
+     * @param out Destination of the console messages
+     */
+    public SemanticVisitor(PrintStream out) {
+        this.symbolTable = new SymbolTable();
+        this.scope = null;
+        this.out = out;
+        this.log = null;
+    }
+
+    /**
+     * Visitor that optimizes only some rules of the parent, on its own copy of their productions
+     * and of the rules already derived from them
+     */
+    private SemanticVisitor(SemanticVisitor parent, List<String> scope, Map<String, List<String>> derivedByRule) {
+        this.symbolTable = parent.symbolTable;
+        this.scope = scope;
+        this.log = new ByteArrayOutputStream();
+        this.out = new PrintStream(log, true, StandardCharsets.UTF_8);
+        this.reusedRules = parent.reusedRules;
+        this.reusedByName = parent.reusedByName;
+        this.precedenceChains = parent.precedenceChains;
+        this.leftRecursionLoops = parent.leftRecursionLoops;
+
+        for (String nonTerminal : scope) {
+            copyRule(parent, nonTerminal);
+            OptimizedRule reused = reusedRules.get(nonTerminal);
+            if (reused != null) {
+                for (String name : reused.getRules().keySet()) {
+                    copyRule(parent, name);
+                }
+            }
+            for (String derived : derivedByRule.getOrDefault(nonTerminal, Collections.emptyList())) {
+                copyRule(parent, derived);
+                newNonTerminals.add(derived);
+                derivedFrom.put(derived, nonTerminal);
+                parentOf.put(derived, parent.parentOf.get(derived));
+            }
+        }
+    }
+
+    private void copyRule(SemanticVisitor parent, String nonTerminal) {
+        List<List<String>> productions = parent.optimizedProductions.get(nonTerminal);
+        if (productions != null) {
+            optimizedProductions.put(nonTerminal, productions);
+        }
+    }
+
     @Override
     public Void visitGrammarFile(G2JParser.GrammarFileContext ctx) {
         return visitChildren(ctx);
@@ -45,7 +174,7 @@ public class SemanticVisitor extends G2JBaseVisitor<Void> {
     public Void visitParseRule(G2JParser.ParseRuleContext ctx) {
         String nonTerminal = ctx.NON_TERM().getText();
         symbolTable.addNonTerminal(nonTerminal);
-        symbolTable.markAsDefined(nonTerminal);
+        symbolTable.markAsDefined(nonTerminal, positionOf(ctx.NON_TERM()));
         visitProductionList(ctx.productionList(), nonTerminal);
         return visitChildren(ctx);
     }
@@ -68,12 +197,12 @@ public class SemanticVisitor extends G2JBaseVisitor<Void> {
         if (ctx.NON_TERM() != null) {
             String nonTerm = ctx.NON_TERM().getText();
             elements.add(nonTerm);
-            symbolTable.markAsUsed(nonTerm);
+            symbolTable.markAsUsed(nonTerm, positionOf(ctx.NON_TERM()));
         } else if (ctx.TERM() != null && !Objects.equals(ctx.TERM().getText(), "EOF")) {
             String term = ctx.TERM().getText();
             elements.add(term);
             symbolTable.addTerminal(term, null);
-            symbolTable.markAsUsedTerminal(term);
+            symbolTable.markAsUsedTerminal(term, positionOf(ctx.TERM()));
         } else if (ctx.grouping() != null) {
             visitGrouping(ctx.grouping(), elements);
         } else if (ctx.optionality() != null) {
@@ -116,7 +245,8 @@ public class SemanticVisitor extends G2JBaseVisitor<Void> {
         String terminal = ctx.TERM().getText();
         String regexDef = ctx.getText().substring(terminal.length() + "::=".length());
         symbolTable.addTerminal(terminal, regexDef);
-        symbolTable.markAsDefined(terminal);
+        symbolTable.markAsDefined(terminal, positionOf(ctx.TERM()));
+        lexRuleContexts.put(terminal, ctx);
         return visitChildren(ctx);
     }
 
@@ -125,119 +255,244 @@ public class SemanticVisitor extends G2JBaseVisitor<Void> {
         return visitChildren(ctx);
     }
 
+    private static SourcePosition positionOf(TerminalNode node) {
+        return new SourcePosition(node.getSymbol().getLine(), node.getSymbol().getCharPositionInLine());
+    }
+
     // ==================== Semantic Analysis Methods ====================
 
+    /**
+     * Esegue in parallelo i controlli semantici su una copia immutabile della tabella dei simboli
+     * Gli errori trovati, ordinati per posizione nel file della grammatica, sono restituiti da
+     * {@link #getSemanticDiagnostics()}; se non ce ne sono viene stampata la tabella dei simboli.
+     */
     public void checkSemantics() {
+        symbolTable.markAsUsed("<Program>");
+        SymbolTableSnapshot snapshot = symbolTable.snapshot();
+
+        List<Callable<List<SemanticDiagnostic>>> checks = Arrays.asList(
+                () -> checkNotDefinedNonTerminals(snapshot),
+                () -> checkNotDefinedTerminals(snapshot),
+                () -> checkNotUsedNonTerminals(snapshot),
+                () -> checkNotUsedTerminals(snapshot),
+                () -> checkNonProductiveNonTerminals(snapshot));
+        List<SemanticDiagnostic> diagnostics = new ArrayList<>();
         try {
-            symbolTable.markAsUsed("<Program>");
-
-            checkNotDefinedNonTerminals();
-            checkNotDefinedTerminals();
-            checkNotUsedNonTerminals();
-            checkNotUsedTerminals();
+            for (Future<List<SemanticDiagnostic>> check : ForkJoinPool.commonPool().invokeAll(checks)) {
+                diagnostics.addAll(check.get());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Controlli semantici interrotti", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Controllo semantico non riuscito", e.getCause());
+        }
+        diagnostics.sort(SemanticDiagnostic.BY_POSITION);
+        semanticDiagnostics = Collections.unmodifiableList(diagnostics);
 
+        if (diagnostics.isEmpty()) {
             symbolTable.printSymbolTable();
-        } catch(SemanticException e) {
-            System.err.println("❌ Catturata eccezione di tipo SemanticException 😡");
-            System.err.println(e.getMessage());
-       //     System.exit(1);
         }
     }
 
     /**
-     * 1. Verifica che tutti i non terminali usati siano definiti.
+     * Gets the findings of the last {@link #checkSemantics()}
+     * @return Diagnostics ordered by position in the grammar file, empty if the grammar is correct
      */
-    private void checkNotDefinedNonTerminals() {
-        Set<String> usedNonTerminals = symbolTable.getUsedNonTerminals();
-        Set<String> definedNonTerminals = symbolTable.getDefinedNonTerminals();
-        ArrayList<String> errors = new ArrayList<>();
+    public List<SemanticDiagnostic> getSemanticDiagnostics() {
+        return semanticDiagnostics;
+    }
 
-        for (String nonTerminal : usedNonTerminals) {
-            if (!definedNonTerminals.contains(nonTerminal)) {
-                errors.add(nonTerminal);
-            }
-        }
-        if(!errors.isEmpty()) {
-            throw new SemanticException("Errore semantico: Non terminale usato ma NON DEFINITO - " + errors);
-        }
+    /**
+     * 1. Verifica che tutti i non terminali usati siano definiti.
+     */
+    private static List<SemanticDiagnostic> checkNotDefinedNonTerminals(SymbolTableSnapshot snapshot) {
+        return diagnosticsAtFirstUse(SemanticDiagnostic.Kind.UNDEFINED_NON_TERMINAL,
+                snapshot.getUndefinedNonTerminals(), snapshot);
     }
 
     /**
      * 2. Verifica che tutti i terminali usati siano definiti.
      */
-    private void checkNotDefinedTerminals() {
-        Set<String> usedTerminals = symbolTable.getUsedTerminals();
-        Set<String> definedTerminals = symbolTable.getDefinedTerminals();
-        ArrayList<String> errors = new ArrayList<>();
-
-        for (String terminal : usedTerminals) {
-            if (!definedTerminals.contains(terminal)) {
-                errors.add(terminal);
-            }
-        }
-        if(!errors.isEmpty()) {
-            throw new SemanticException("Errore semantico: Terminale usato ma NON DEFINITO - " + errors);
-        }
+    private static List<SemanticDiagnostic> checkNotDefinedTerminals(SymbolTableSnapshot snapshot) {
+        return diagnosticsAtFirstUse(SemanticDiagnostic.Kind.UNDEFINED_TERMINAL,
+                snapshot.getUndefinedTerminals(), snapshot);
     }
 
     /**
-     * 3. Verifica che tutti i non terminali definiti siano usati.
+     * 3. Verifica che tutti i non terminali definiti siano usati, cioè raggiungibili da &lt;Program&gt;:
+     * un gruppo di regole che si richiamano solo tra loro non è usato.
      */
-    private void checkNotUsedNonTerminals(){
-        Set<String> usedNonTerminals = symbolTable.getUsedNonTerminals();
-        Set<String> definedNonTerminals = symbolTable.getDefinedNonTerminals();
-        ArrayList<String> errors = new ArrayList<>();
-
-        for (String nonTerminal : definedNonTerminals) {
-            if (!usedNonTerminals.contains(nonTerminal)) {
-                errors.add(nonTerminal);
-            }
-        }
-        if(!errors.isEmpty()) {
-            throw new SemanticException("Errore semantico: Non terminale definito ma NON USATO - " + errors);
-        }
+    private static List<SemanticDiagnostic> checkNotUsedNonTerminals(SymbolTableSnapshot snapshot) {
+        return diagnosticsAtDefinition(SemanticDiagnostic.Kind.UNUSED_NON_TERMINAL,
+                RuleGraph.of(snapshot).getUnreachableNonTerminals(), snapshot);
     }
 
     /**
      * 4. Verifica che tutti i terminali definiti siano usati.
      */
-    private void checkNotUsedTerminals(){
-        Set<String> usedTerminals = symbolTable.getUsedTerminals();
-        Set<String> definedTerminals = symbolTable.getDefinedTerminals();
-        ArrayList<String> errors = new ArrayList<>();
+    private static List<SemanticDiagnostic> checkNotUsedTerminals(SymbolTableSnapshot snapshot) {
+        List<String> unused = new ArrayList<>();
+        for (int id : snapshot.getUnusedTerminals()) {
+            unused.add(snapshot.getName(id));
+        }
+        return diagnosticsAtDefinition(SemanticDiagnostic.Kind.UNUSED_TERMINAL, unused, snapshot);
+    }
 
+    /**
+     * 5. Verifica che tutti i non terminali definiti siano produttivi, cioè generino almeno una stringa di terminali.
+     */
+    private static List<SemanticDiagnostic> checkNonProductiveNonTerminals(SymbolTableSnapshot snapshot) {
+        return diagnosticsAtDefinition(SemanticDiagnostic.Kind.NON_PRODUCTIVE_NON_TERMINAL,
+                RuleGraph.of(snapshot).getNonProductiveNonTerminals(), snapshot);
+    }
 
-        for (String terminal : definedTerminals) {
-            if (!usedTerminals.contains(terminal)) {
-                errors.add(terminal);
-            }
+    private static List<SemanticDiagnostic> diagnosticsAtFirstUse(SemanticDiagnostic.Kind kind, int[] ids,
+                                                                  SymbolTableSnapshot snapshot) {
+        List<SemanticDiagnostic> diagnostics = new ArrayList<>(ids.length);
+        for (int id : ids) {
+            diagnostics.add(new SemanticDiagnostic(kind, snapshot.getName(id), snapshot.getFirstUsePosition(id)));
         }
+        return diagnostics;
+    }
 
-        if(!errors.isEmpty()){
-            throw new SemanticException("Errore semantico: Terminale definito ma NON USATO - " + errors);
+    private static List<SemanticDiagnostic> diagnosticsAtDefinition(SemanticDiagnostic.Kind kind, List<String> symbols,
+                                                                    SymbolTableSnapshot snapshot) {
+        List<SemanticDiagnostic> diagnostics = new ArrayList<>(symbols.size());
+        for (String symbol : symbols) {
+            diagnostics.add(new SemanticDiagnostic(kind, symbol,
+                    snapshot.getDefinitionPosition(snapshot.getId(symbol))));
         }
+        return diagnostics;
     }
 
     // ============================== OTTIMIZZAZIONI =================================
 
     /**
-     * 1. Eliminazione della ricorsione a sinistra
+     * 1. Eliminazione della ricorsione a sinistra.
+     * Pubblico per poter misurare separatamente le due fasi di ottimizzazione.
+     * La ricorsione indiretta viene prima ricondotta a quella diretta, sostituendo
+     * le produzioni solo all'interno dei cicli del grafo dei left corner.
      */
-    private void eliminateLeftRecursion() {
+    public void eliminateLeftRecursion() {
         // Initialize optimized productions with original ones if not already done
         if (optimizedProductions.isEmpty()) {
             optimizedProductions = new HashMap<>(symbolTable.getAllProductions());
         }
+        forEachComponent(SemanticVisitor::eliminateLeftRecursionInScope);
+    }
 
-        for (String nonTerminal : new HashSet<>(symbolTable.getDefinedNonTerminals())) {
+    private void eliminateLeftRecursionInScope() {
+        eliminateIndirectLeftRecursion();
+
+        for (String nonTerminal : new HashSet<>(getScope())) {
+            if (reusedRules.containsKey(nonTerminal)) {
+                restoreDerivedNonTerminals(nonTerminal, true);
+                continue;
+            }
+            if (precedenceChains.containsKey(nonTerminal)) {
+                // Left recursion kept on purpose: only counted
+                hasLeftRecursion(nonTerminal);
+                continue;
+            }
             if (hasLeftRecursion(nonTerminal)) {
-                System.out.println("\n⚠️ Ricorsione sinistra rilevata per - " + nonTerminal);
+                out.println("\n⚠️ Ricorsione sinistra rilevata per - " + nonTerminal);
                 applyLeftRecursionElimination(nonTerminal);
                 grammarModified = true;
             }
         }
     }
 
+    /**
+     * Trova le componenti fortemente connesse del grafo dei left corner (A -> B se una
+     * produzione di A inizia con B) e, in ogni componente con più di un non terminale,
+     * applica la sostituzione ordinata: le produzioni di Ai che iniziano con Aj, j &lt; i,
+     * vengono espanse con le produzioni di Aj, e la ricorsione diretta di Ai viene eliminata
+     * subito dopo. Le componenti banali non vengono toccate, così il costo resta lineare
+     * nella dimensione della grammatica più il lavoro sui cicli.
+     */
+    private void eliminateIndirectLeftRecursion() {
+        Set<String> nonTerminals = new HashSet<>(getScope());
+        List<List<String>> components = StronglyConnectedComponents.compute(nonTerminals, this::getLeftCorners);
+
+        for (List<String> component : components) {
+            if (component.size() < 2 || reusedRules.containsKey(component.get(0))) {
+                // Left-recursive cycles are inside a cycle of references: their rules are all reused or none is
+                continue;
+            }
+
+            // Order of the substitution: order of definition in the input
+            List<String> ordered = new ArrayList<>(component);
+            ordered.sort(Comparator.comparingInt(symbolTable::getId));
+            out.println("\n⚠️ Ricorsione sinistra indiretta rilevata tra: " + String.join(", ", ordered));
+
+            for (int i = 0; i < ordered.size(); i++) {
+                String nonTerminal = ordered.get(i);
+                Set<String> previous = new HashSet<>(ordered.subList(0, i));
+                if (substituteLeftCorners(nonTerminal, previous)) {
+                    grammarModified = true;
+                }
+                if (hasLeftRecursion(nonTerminal)) {
+                    out.println("\n⚠️ Ricorsione sinistra rilevata per - " + nonTerminal);
+                    applyLeftRecursionElimination(nonTerminal);
+                    grammarModified = true;
+                }
+            }
+        }
+    }
+
+    /**
+     * Non-terminals a rule can start with. Productions starting with a block are not followed.
+     */
+    private List<String> getLeftCorners(String nonTerminal) {
+        List<String> leftCorners = new ArrayList<>();
+        List<List<String>> prods = optimizedProductions.get(nonTerminal);
+        if (prods == null || precedenceChains.containsKey(nonTerminal)) {
+            return leftCorners;
+        }
+        for (List<String> production : prods) {
+            if (!production.isEmpty() && optimizedProductions.containsKey(production.get(0))) {
+                leftCorners.add(production.get(0));
+            }
+        }
+        return leftCorners;
+    }
+
+    /**
+     * Sostituisce le produzioni di nonTerminal che iniziano con uno dei non terminali
+     * indicati con le produzioni di quel non terminale, seguite dal resto della produzione.
+     *
+     * @return True if at least one production was substituted
+     */
+    private boolean substituteLeftCorners(String nonTerminal, Set<String> substituted) {
+        List<List<String>> prods = optimizedProductions.get(nonTerminal);
+        List<List<String>> newProductions = new ArrayList<>();
+        boolean changed = false;
+
+        for (List<String> production : prods) {
+            if (production.isEmpty() || !substituted.contains(production.get(0))) {
+                newProductions.add(production);
+                continue;
+            }
+            List<String> rest = production.subList(1, production.size());
+            for (List<String> expansion : optimizedProductions.get(production.get(0))) {
+                List<String> newProduction = new ArrayList<>(expansion);
+                newProduction.addAll(rest);
+                newProductions.add(newProduction);
+            }
+            changed = true;
+        }
+
+        if (changed) {
+            out.println("Regola originale:");
+            out.println(nonTerminal + " ::= " + formatOptimizedProduction(prods) + " ;");
+            optimizedProductions.put(nonTerminal, newProductions);
+            out.println("Regola dopo la sostituzione:");
+            out.println(nonTerminal + " ::= " + formatOptimizedProduction(newProductions) + " ;");
+        }
+        return changed;
+    }
+
     private boolean hasLeftRecursion(String nonTerminal) {
         List<List<String>> prods = optimizedProductions.get(nonTerminal);
         if (prods == null) return false;
@@ -245,6 +500,7 @@ public class SemanticVisitor extends G2JBaseVisitor<Void> {
         for (List<String> production : prods) {
             if (!production.isEmpty() && production.get(0).equals(nonTerminal)) {
                 numRecursionSymbols++;
+                recursiveRules.add(nonTerminal);
                 return true;
             }
         }
@@ -266,20 +522,27 @@ public class SemanticVisitor extends G2JBaseVisitor<Void> {
 
         if (!leftRecursiveProductions.isEmpty()) {
             // Print original rule
-            System.out.println("Regola che contiene la ricorsione a sinistra:");
-            System.out.print(nonTerminal + " ::= ");
+            out.println("Regola che contiene la ricorsione a sinistra:");
+            out.print(nonTerminal + " ::= ");
             for (int i = 0; i < optimizedProductions.get(nonTerminal).size(); i++) {
                 List<String> production = optimizedProductions.get(nonTerminal).get(i);
-                System.out.print(String.join(" ", production));
+                out.print(String.join(" ", production));
                 if (i < optimizedProductions.get(nonTerminal).size() - 1) {
-                    System.out.print(" | ");
+                    out.print(" | ");
                 }
             }
-            System.out.println(" ;");
+            out.println(" ;");
+
+            if (leftRecursionLoops) {
+                applyLeftRecursionLoop(nonTerminal, leftRecursiveProductions, nonLeftRecursiveProductions);
+                return;
+            }
 
             // Create a new non-terminal to handle recursion
             String newNonTerminal = nonTerminal.replace(">", "Tail>");
             newNonTerminals.add(newNonTerminal);
+            derivedFrom.put(newNonTerminal, nonTerminal);
+            parentOf.put(newNonTerminal, nonTerminal);
 
             // Update original production
             List<List<String>> newProductions = new ArrayList<>();
@@ -310,81 +573,584 @@ public class SemanticVisitor extends G2JBaseVisitor<Void> {
 
             optimizedProductions.put(newNonTerminal, tailProductions);
 
-            System.out.println("Regola ottimizzata:");
-            System.out.println(nonTerminal + " ::= " + formatOptimizedProduction(newProductions) + " ;");
-            System.out.println(newNonTerminal + " ::= " + formatOptimizedProduction(tailProductions) + " ;");
+            out.println("Regola ottimizzata:");
+            out.println(nonTerminal + " ::= " + formatOptimizedProduction(newProductions) + " ;");
+            out.println(newNonTerminal + " ::= " + formatOptimizedProduction(tailProductions) + " ;");
         }
     }
 
     /**
-     * 2. Fattorizzazione dei prefissi comuni.
+     * Riscrive A ::= A a1 | ... | A an | b1 | ... | bm nella forma iterativa
+     * A ::= b1 {[ a ]} | ... | bm {[ a ]}, dove a è a1 se n = 1, altrimenti una
+     * nuova regola Tail non ricorsiva a1 | ... | an (i blocchi non contengono alternative).
      */
-    private void factorizeCommonPrefixes() {
-        boolean factorizationApplied;
+    private void applyLeftRecursionLoop(String nonTerminal, List<List<String>> leftRecursiveProductions,
+                                        List<List<String>> nonLeftRecursiveProductions) {
+        List<List<String>> repeatedParts = new ArrayList<>();
+        for (List<String> production : leftRecursiveProductions) {
+            // A ::= A adds nothing to the language
+            if (production.size() > 1) {
+                repeatedParts.add(new ArrayList<>(production.subList(1, production.size())));
+            }
+        }
 
-        do {
-            factorizationApplied = false;
+        List<String> loop = new ArrayList<>();
+        List<List<String>> tailProductions = null;
+        String newNonTerminal = null;
+        if (repeatedParts.size() == 1) {
+            loop.addAll(Arrays.asList("{", "["));
+            loop.addAll(repeatedParts.get(0));
+            loop.addAll(Arrays.asList("]", "}"));
+        } else if (repeatedParts.size() > 1) {
+            newNonTerminal = nonTerminal.replace(">", "Tail>");
+            newNonTerminals.add(newNonTerminal);
+            derivedFrom.put(newNonTerminal, nonTerminal);
+            parentOf.put(newNonTerminal, nonTerminal);
+            tailProductions = repeatedParts;
+            optimizedProductions.put(newNonTerminal, tailProductions);
+            loop.addAll(Arrays.asList("{", "[", newNonTerminal, "]", "}"));
+        }
 
-            for (String nonTerminal : new HashSet<>(symbolTable.getDefinedNonTerminals())) {
-                List<List<String>> productionsForNT = optimizedProductions.get(nonTerminal);
-                if (productionsForNT != null && productionsForNT.size() > 1) {
-                    // Find the longest common prefix among all productions
-                    List<String> commonPrefix = findLongestCommonPrefix(productionsForNT);
+        List<List<String>> newProductions = new ArrayList<>();
+        if (!nonLeftRecursiveProductions.isEmpty()) {
+            for (List<String> alpha : nonLeftRecursiveProductions) {
+                List<String> newProduction = new ArrayList<>(alpha);
+                newProduction.addAll(loop);
+                newProductions.add(newProduction);
+            }
+        } else {
+            newProductions.add(loop);
+        }
+        optimizedProductions.put(nonTerminal, newProductions);
 
-                    if (!commonPrefix.isEmpty()) {
-                        System.out.println("\n⚠️ Prefisso comune rilevato per: " + nonTerminal);
-                        System.out.println("Regola originale:");
-                        System.out.print(nonTerminal + " ::= ");
-                        System.out.println(formatOptimizedProduction(productionsForNT) + " ;");
+        out.println("Regola ottimizzata:");
+        out.println(nonTerminal + " ::= " + formatOptimizedProduction(newProductions) + " ;");
+        if (newNonTerminal != null) {
+            out.println(newNonTerminal + " ::= " + formatOptimizedProduction(tailProductions) + " ;");
+        }
+    }
 
-                        // Apply factorization
-                        applyFactorization(nonTerminal, commonPrefix, productionsForNT);
-                        factorizationApplied = true;
-                        grammarModified = true;
-                        break;  // Start over after applying a factorization
+    /**
+     * 2. Riscrittura della ricorsione destra in ripetizione (da invocare dopo eliminateLeftRecursion),
+     * così che i parser generati analizzino le liste con profondità di stack costante:
+     * <ul>
+     *     <li>A ::= b a A | b diventa A ::= b {[ a b ]} (lista con separatore);</li>
+     *     <li>A ::= a A | b diventa A ::= {[ a ]} b;</li>
+     *     <li>A ::= a [A], come le regole Tail, diventa A ::= { a }.</li>
+     * </ul>
+     * Le regole con più alternative ricorsive non vengono modificate, perché i blocchi
+     * non possono contenere alternative.
+     */
+    public void eliminateRightRecursion() {
+        // Initialize optimized productions with original ones if not already done
+        if (optimizedProductions.isEmpty()) {
+            optimizedProductions = new HashMap<>(symbolTable.getAllProductions());
+        }
+        forEachComponent(SemanticVisitor::eliminateRightRecursionInScope);
+    }
+
+    private void eliminateRightRecursionInScope() {
+        List<String> nonTerminals = new ArrayList<>(new HashSet<>(getScope()));
+        nonTerminals.addAll(newNonTerminals);
+        for (String nonTerminal : nonTerminals) {
+            if (reusedByName.containsKey(nonTerminal) || precedenceChains.containsKey(nonTerminal)
+                    || !optimizedProductions.containsKey(nonTerminal)) {
+                continue;
+            }
+            List<List<String>> productionsForNT = optimizedProductions.get(nonTerminal);
+            List<List<String>> newProductions = rewriteRightRecursion(nonTerminal, productionsForNT);
+            if (newProductions != null) {
+                out.println("\n⚠️ Ricorsione destra rilevata per - " + nonTerminal);
+                out.println("Regola originale:");
+                out.println(nonTerminal + " ::= " + formatOptimizedProduction(productionsForNT) + " ;");
+                optimizedProductions.put(nonTerminal, newProductions);
+                out.println("Regola ottimizzata:");
+                out.println(nonTerminal + " ::= " + formatOptimizedProduction(newProductions) + " ;");
+                grammarModified = true;
+            }
+        }
+    }
+
+    /**
+     * @return Iterative productions of the rule, or null if it has none of the supported right-recursive forms
+     */
+    private List<List<String>> rewriteRightRecursion(String nonTerminal, List<List<String>> productions) {
+        String optionalSelf = "[" + nonTerminal + "]";
+
+        // A ::= a [A]
+        if (productions.size() == 1) {
+            List<String> production = productions.get(0);
+            int last = production.size() - 1;
+            if (last > 0 && production.get(last).equals(optionalSelf)
+                    && countSelfReferences(nonTerminal, production) == 1) {
+                List<String> loop = new ArrayList<>();
+                loop.add("{");
+                loop.addAll(production.subList(0, last));
+                loop.add("}");
+                return Collections.singletonList(loop);
+            }
+            return null;
+        }
+
+        if (productions.size() != 2) {
+            return null;
+        }
+        List<String> recursive = null;
+        List<String> base = null;
+        for (List<String> production : productions) {
+            int references = countSelfReferences(nonTerminal, production);
+            if (references == 1 && production.size() > 1
+                    && production.get(production.size() - 1).equals(nonTerminal)) {
+                recursive = production;
+            } else if (references == 0) {
+                base = production;
+            }
+        }
+        if (recursive == null || base == null || base.isEmpty()) {
+            return null;
+        }
+
+        List<String> repeated = recursive.subList(0, recursive.size() - 1);
+        List<String> newProduction = new ArrayList<>();
+        if (repeated.size() >= base.size() && repeated.subList(0, base.size()).equals(base)
+                && startsWithCompleteElements(repeated, base.size())) {
+            // A ::= b a A | b
+            newProduction.addAll(base);
+            newProduction.addAll(Arrays.asList("{", "["));
+            newProduction.addAll(repeated.subList(base.size(), repeated.size()));
+            newProduction.addAll(base);
+            newProduction.addAll(Arrays.asList("]", "}"));
+        } else {
+            // A ::= a A | b
+            newProduction.addAll(Arrays.asList("{", "["));
+            newProduction.addAll(repeated);
+            newProduction.addAll(Arrays.asList("]", "}"));
+            newProduction.addAll(base);
+        }
+        return Collections.singletonList(newProduction);
+    }
+
+    private int countSelfReferences(String nonTerminal, List<String> production) {
+        String optionalSelf = "[" + nonTerminal + "]";
+        int references = 0;
+        for (String symbol : production) {
+            if (symbol.equals(nonTerminal) || symbol.equals(optionalSelf)) {
+                references++;
+            }
+        }
+        return references;
+    }
+
+    /**
+     * Checks that the first elements of a production do not end inside a block
+     */
+    private boolean startsWithCompleteElements(List<String> production, int length) {
+        int depth = 0;
+        for (String symbol : production.subList(0, length)) {
+            if (symbol.equals("(") || symbol.equals("[") || symbol.equals("{")) {
+                depth++;
+            } else if (symbol.equals(")") || symbol.equals("]") || symbol.equals("}")) {
+                depth--;
+            }
+        }
+        return depth == 0;
+    }
+
+    /**
+     * 3. Eliminazione delle produzioni unitarie e inlining delle regole piccole (da invocare
+     * dopo l'eliminazione della ricorsione). Una regola non ricorsiva viene copiata nei chiamanti:
+     * <ul>
+     *     <li>se ha una sola produzione, in ogni punto in cui è usata;</li>
+     *     <li>altrimenti solo nelle produzioni unitarie A ::= B, sostituite dalle alternative di B.</li>
+     * </ul>
+     * Il costo di una regola è il numero di simboli copiati in più rispetto alla regola stessa,
+     * dimensione * (fan-in - 1), con il fan-in contato sull'input: vengono copiate solo le regole
+     * con al più MAX_INLINE_SIZE simboli e costo al più MAX_INLINE_GROWTH, così l'output non esplode.
+     * Una copia che inizierebbe un nuovo gruppo di prefissi comuni nel chiamante viene scartata,
+     * perché la fattorizzazione aggiungerebbe una regola Suffix al posto di quella tolta. Le regole sono elaborate
+     * a partire dalle foglie del grafo delle chiamate, così ogni regola copiata è già definitiva.
+     */
+    public void inlineRules() {
+        // Initialize optimized productions with original ones if not already done
+        if (optimizedProductions.isEmpty()) {
+            optimizedProductions = new HashMap<>(symbolTable.getAllProductions());
+        }
+        Map<String, Integer> fanIn = countReferences(symbolTable.getAllProductions());
+        List<List<String>> components = StronglyConnectedComponents.compute(
+                new LinkedHashSet<>(optimizedProductions.keySet()), this::getReferencedRules);
+
+        for (List<String> component : components) {
+            for (String caller : component) {
+                OptimizedRule reused = reusedByName.get(caller);
+                if (reused != null) {
+                    // The cached productions are already factorized: copy the ones a compilation from scratch would
+                    if (reused.getName().equals(caller) && reused.getInlinedProductions() != null) {
+                        inlinedProductions.put(caller, reused.getInlinedProductions());
+                    }
+                    continue;
+                }
+                if (precedenceChains.containsKey(caller)) {
+                    continue;
+                }
+                List<List<String>> productionsForNT = optimizedProductions.get(caller);
+                List<List<String>> newProductions = inlineReferences(productionsForNT);
+                if (!newProductions.equals(productionsForNT)) {
+                    out.println("\n⚠️ Inlining nelle produzioni di: " + caller);
+                    out.println("Regola originale:");
+                    out.println(caller + " ::= " + formatOptimizedProduction(productionsForNT) + " ;");
+                    optimizedProductions.put(caller, newProductions);
+                    out.println("Regola ottimizzata:");
+                    out.println(caller + " ::= " + formatOptimizedProduction(newProductions) + " ;");
+                    grammarModified = true;
+                }
+                inlinedProductions.put(caller, optimizedProductions.get(caller));
+            }
+
+            // Rules of a cycle are never inlined, so only the rules of trivial components qualify
+            if (component.size() == 1 && isInlinable(component.get(0), fanIn)) {
+                inlinableRules.add(component.get(0));
+            }
+        }
+    }
+
+    private boolean isInlinable(String nonTerminal, Map<String, Integer> fanIn) {
+        // Only rules of the input: the fan-in of the new non-terminals is not known
+        if (nonTerminal.equals("<Program>") || !symbolTable.isNonTerminal(nonTerminal)
+                || precedenceChains.containsKey(nonTerminal)) {
+            return false;
+        }
+        List<List<String>> prods = getInlinedProductions(nonTerminal);
+        int size = 0;
+        for (List<String> production : prods) {
+            if (production.isEmpty() || getReferencedRules(production).contains(nonTerminal)) {
+                return false;
+            }
+            size += production.size();
+        }
+        return size <= MAX_INLINE_SIZE && size * (fanIn.getOrDefault(nonTerminal, 0) - 1) <= MAX_INLINE_GROWTH;
+    }
+
+    private List<List<String>> inlineReferences(List<List<String>> productions) {
+        // Alternatives that replace every production, in order
+        List<List<List<String>>> replacements = new ArrayList<>();
+        for (List<String> production : productions) {
+            replacements.add(Collections.singletonList(production));
+        }
+        for (int i = 0; i < productions.size(); i++) {
+            List<List<String>> inlined = inlineProduction(productions.get(i));
+            if (!inlined.equals(replacements.get(i)) && !createsPrefixGroup(i, inlined, productions, replacements)) {
+                replacements.set(i, inlined);
+            }
+        }
+
+        List<List<String>> newProductions = new ArrayList<>();
+        for (List<List<String>> replacement : replacements) {
+            newProductions.addAll(replacement);
+        }
+        return newProductions;
+    }
+
+    private List<List<String>> inlineProduction(List<String> production) {
+        // A ::= B: the alternatives of B replace the production
+        if (production.size() == 1 && inlinableRules.contains(production.get(0))) {
+            return getInlinedProductions(production.get(0));
+        }
+
+        // Rules with a single production are copied where they are used
+        List<String> newProduction = new ArrayList<>();
+        for (String symbol : production) {
+            boolean optional = symbol.startsWith("[") && symbol.endsWith("]") && symbol.length() > 2;
+            String referenced = optional ? symbol.substring(1, symbol.length() - 1) : symbol;
+            List<List<String>> referencedProductions = getInlinedProductions(referenced);
+            if (inlinableRules.contains(referenced) && referencedProductions.size() == 1) {
+                if (optional) {
+                    newProduction.add("[");
+                }
+                newProduction.addAll(referencedProductions.get(0));
+                if (optional) {
+                    newProduction.add("]");
+                }
+            } else {
+                newProduction.add(symbol);
+            }
+        }
+        return Collections.singletonList(newProduction);
+    }
+
+    /**
+     * Checks if the alternatives copied into a production would share a prefix with the
+     * alternatives of the other productions of the caller: the factorization would then add
+     * new Suffix rules, i.e. the call layers the inlining is meant to remove
+     */
+    private boolean createsPrefixGroup(int index, List<List<String>> inlined, List<List<String>> productions,
+                                       List<List<List<String>>> replacements) {
+        for (List<String> alternative : inlined) {
+            for (int other = 0; other < replacements.size(); other++) {
+                if (other == index) {
+                    continue;
+                }
+                for (List<String> otherAlternative : replacements.get(other)) {
+                    if (sharesPrefix(alternative, otherAlternative)
+                            && !sharesPrefix(productions.get(index), otherAlternative)) {
+                        return true;
                     }
                 }
             }
-        } while (factorizationApplied);  // Continue until no more factorizations are applied
+        }
+        return false;
+    }
+
+    private boolean sharesPrefix(List<String> production, List<String> other) {
+        return !production.isEmpty() && !other.isEmpty() && production.get(0).equals(other.get(0))
+                && !findLongestCommonPrefix(Arrays.asList(production, other)).isEmpty();
+    }
+
+    private List<List<String>> getInlinedProductions(String nonTerminal) {
+        return inlinedProductions.getOrDefault(nonTerminal, optimizedProductions.get(nonTerminal));
+    }
+
+    /**
+     * Counts the references to every non-terminal
+     */
+    private Map<String, Integer> countReferences(Map<String, List<List<String>>> productionsMap) {
+        Map<String, Integer> references = new HashMap<>();
+        for (List<List<String>> productionList : productionsMap.values()) {
+            for (List<String> production : productionList) {
+                for (String referenced : getReferencedRules(production)) {
+                    references.merge(referenced, 1, Integer::sum);
+                }
+            }
+        }
+        return references;
     }
 
-    private void applyFactorization(String nonTerminal, List<String> commonPrefix, List<List<String>> productionsForNT) {
+    private List<String> getReferencedRules(String nonTerminal) {
+        List<String> referenced = new ArrayList<>();
+        for (List<String> production : optimizedProductions.getOrDefault(nonTerminal, Collections.emptyList())) {
+            referenced.addAll(getReferencedRules(production));
+        }
+        return referenced;
+    }
+
+    /**
+     * Non-terminals referenced by a production, also through tokens like [&lt;ExprTail&gt;]
+     */
+    private List<String> getReferencedRules(List<String> production) {
+        List<String> referenced = new ArrayList<>();
+        for (String symbol : production) {
+            int start = symbol.indexOf('<');
+            int end = symbol.lastIndexOf('>');
+            if (start >= 0 && end > start) {
+                referenced.add(symbol.substring(start, end + 1));
+            }
+        }
+        return referenced;
+    }
+
+    /**
+     * 4. Fattorizzazione dei prefissi comuni (da invocare dopo eliminateLeftRecursion).
+     * Le regole da esaminare sono gestite con una worklist: ogni regola viene fattorizzata
+     * una sola volta e le nuove regole Suffix vengono accodate per essere fattorizzate a loro volta.
+     */
+    public void factorizeCommonPrefixes() {
+        forEachComponent(SemanticVisitor::factorizeCommonPrefixesInScope);
+    }
+
+    /**
+     * 5. Eliminazione delle regole non raggiungibili da &lt;Program&gt; (da invocare dopo le altre
+     * ottimizzazioni): le regole copiate dall'inlining nelle regole che le usano, i livelli delle
+     * catene di precedenza e i gruppi di regole che si richiamano solo tra loro non vengono generati.
+     * Le regole restano tra i risultati delle ottimizzazioni, così la cache incrementale non dipende
+     * dalle regole che le usano.
+     */
+    public void eliminateUnreachableRules() {
+        RuleGraph ruleGraph = RuleGraph.of(getOptimizedNonTerminals(), optimizedProductions, precedenceChains);
+        List<String> unreachable = ruleGraph.getUnreachableNonTerminals();
+        unreachableRules = new HashSet<>(unreachable);
+        if (!unreachable.isEmpty()) {
+            out.println("\n⚠️ Regole non raggiungibili da <Program>, non generate: " + unreachable);
+            grammarModified = true;
+        }
+    }
+
+    private void factorizeCommonPrefixesInScope() {
+        Deque<String> worklist = new ArrayDeque<>();
+        Set<String> enqueued = new HashSet<>();
+
+        // Regole dell'input, poi le regole Tail create dall'eliminazione della ricorsione
+        for (String nonTerminal : new HashSet<>(getScope())) {
+            if (enqueued.add(nonTerminal)) {
+                worklist.add(nonTerminal);
+            }
+        }
+        for (String nonTerminal : new ArrayList<>(newNonTerminals)) {
+            if (enqueued.add(nonTerminal)) {
+                worklist.add(nonTerminal);
+            }
+        }
+
+        while (!worklist.isEmpty()) {
+            String nonTerminal = worklist.poll();
+
+            if (reusedByName.containsKey(nonTerminal)) {
+                for (String derived : restoreDerivedNonTerminals(nonTerminal, false)) {
+                    if (enqueued.add(derived)) {
+                        worklist.add(derived);
+                    }
+                }
+                continue;
+            }
+
+            List<List<String>> productionsForNT = optimizedProductions.get(nonTerminal);
+            if (productionsForNT == null || productionsForNT.size() < 2 || precedenceChains.containsKey(nonTerminal)) {
+                continue;
+            }
+
+            // Group the alternatives by common prefix: every group becomes a single alternative
+            List<List<Integer>> groups = findPrefixGroups(productionsForNT);
+            if (groups.isEmpty()) {
+                continue;
+            }
+
+            out.println("\n⚠️ Prefisso comune rilevato per: " + nonTerminal);
+            out.println("Regola originale:");
+            out.print(nonTerminal + " ::= ");
+            out.println(formatOptimizedProduction(productionsForNT) + " ;");
+
+            // Apply factorization: only the new suffix rules may need more work
+            for (String suffixNonTerminal : applyFactorization(nonTerminal, groups, productionsForNT)) {
+                if (enqueued.add(suffixNonTerminal)) {
+                    worklist.add(suffixNonTerminal);
+                }
+            }
+            grammarModified = true;
+        }
+    }
+
+    /**
+     * Applica la fattorizzazione a ogni gruppo di alternative con un prefisso comune:
+     * il gruppo viene sostituito, nella posizione della sua prima alternativa, dal prefisso
+     * seguito da una nuova regola Suffix con i suffissi (opzionale se un suffisso è vuoto).
+     *
+     * @return New suffix non-terminals, in creation order
+     */
+    private List<String> applyFactorization(String nonTerminal, List<List<Integer>> groups,
+                                            List<List<String>> productionsForNT) {
+        List<String> suffixNonTerminals = new ArrayList<>();
+        Map<Integer, List<String>> factorizedAlternatives = new HashMap<>();
+        Set<Integer> grouped = new HashSet<>();
+
+        for (List<Integer> group : groups) {
+            List<List<String>> groupProductions = new ArrayList<>();
+            for (int index : group) {
+                groupProductions.add(productionsForNT.get(index));
+            }
+            List<String> commonPrefix = findLongestCommonPrefix(groupProductions);
+
+            // Create productions for the new non-terminal (suffixes)
+            List<List<String>> suffixProductions = new ArrayList<>();
+            boolean emptySuffix = false;
+            for (List<String> production : groupProductions) {
+                if (production.size() > commonPrefix.size()) {
+                    suffixProductions.add(new ArrayList<>(production.subList(commonPrefix.size(), production.size())));
+                } else {
+                    emptySuffix = true;
+                }
+            }
+
+            List<String> newProduction = new ArrayList<>(commonPrefix);
+            if (!suffixProductions.isEmpty()) {
+                // Groups with the same suffixes, e.g. the WHERE clauses of inlined statements, share one rule
+                String newNonTerminal = findSuffixNonTerminal(suffixNonTerminals, suffixProductions);
+                if (newNonTerminal == null) {
+                    newNonTerminal = createSuffixNonTerminal(nonTerminal);
+                    optimizedProductions.put(newNonTerminal, suffixProductions);
+                    suffixNonTerminals.add(newNonTerminal);
+                }
+                newProduction.add(emptySuffix ? "[" + newNonTerminal + "]" : newNonTerminal);
+            }
+            factorizedAlternatives.put(group.get(0), newProduction);
+            grouped.addAll(group);
+        }
+
+        // Update optimized productions, keeping the order of the alternatives
+        List<List<String>> newProductions = new ArrayList<>();
+        for (int i = 0; i < productionsForNT.size(); i++) {
+            if (factorizedAlternatives.containsKey(i)) {
+                newProductions.add(factorizedAlternatives.get(i));
+            } else if (!grouped.contains(i)) {
+                newProductions.add(productionsForNT.get(i));
+            }
+        }
+        optimizedProductions.put(nonTerminal, newProductions);
+
+        out.println("Regola fattorizzata:");
+        out.println(nonTerminal + " ::= " + formatOptimizedProduction(newProductions) + " ;");
+        for (String suffixNonTerminal : suffixNonTerminals) {
+            out.println(suffixNonTerminal + " ::= "
+                    + formatOptimizedProduction(optimizedProductions.get(suffixNonTerminal)) + " ;");
+        }
+        return suffixNonTerminals;
+    }
+
+    private String findSuffixNonTerminal(List<String> suffixNonTerminals, List<List<String>> suffixProductions) {
+        for (String suffixNonTerminal : suffixNonTerminals) {
+            if (optimizedProductions.get(suffixNonTerminal).equals(suffixProductions)) {
+                return suffixNonTerminal;
+            }
+        }
+        return null;
+    }
+
+    private String createSuffixNonTerminal(String nonTerminal) {
         // Create a new non-terminal to handle suffixes
         String newNonTerminal = nonTerminal.replace(">", "Suffix>");
 
-        // Ensure unique name
+        // Ensure unique name, with letters only since NON_TERM does not allow digits: <ASuffixB>, <ASuffixC>, ...
         int counter = 1;
         String originalName = newNonTerminal;
         while (symbolTable.containsSymbol(newNonTerminal) || newNonTerminals.contains(newNonTerminal)) {
-            newNonTerminal = originalName.replace(">", counter + ">");
+            newNonTerminal = originalName.replace(">", SymbolTable.letters(counter) + ">");
             counter++;
         }
 
         newNonTerminals.add(newNonTerminal);
+        derivedFrom.put(newNonTerminal, derivedFrom.getOrDefault(nonTerminal, nonTerminal));
+        parentOf.put(newNonTerminal, nonTerminal);
+        return newNonTerminal;
+    }
 
-        // Create new productions
-        List<List<String>> newProductions = new ArrayList<>();
-        List<String> newProduction = new ArrayList<>(commonPrefix);
-        newProduction.add("[" + newNonTerminal + "]");
-        newProductions.add(newProduction);
-
-        // Create productions for the new non-terminal (suffixes)
-        List<List<String>> suffixProductions = new ArrayList<>();
-
-        for (List<String> production : productionsForNT) {
-            if (production.size() > commonPrefix.size()) {
-                List<String> suffix = new ArrayList<>(production.subList(commonPrefix.size(), production.size()));
-                suffixProductions.add(suffix);
+    /**
+     * Raggruppa le alternative che iniziano con lo stesso simbolo: sono i figli della radice
+     * del trie dei prefissi delle alternative. I livelli successivi del trie vengono fattorizzati
+     * quando la regola Suffix di ogni gruppo viene estratta dalla worklist.
+     *
+     * @return Indexes of the alternatives of every group with a non-empty common prefix,
+     * in order of first alternative
+     */
+    private List<List<Integer>> findPrefixGroups(List<List<String>> productions) {
+        Map<String, List<Integer>> byFirstSymbol = new LinkedHashMap<>();
+        for (int i = 0; i < productions.size(); i++) {
+            List<String> production = productions.get(i);
+            if (!production.isEmpty()) {
+                byFirstSymbol.computeIfAbsent(production.get(0), k -> new ArrayList<>()).add(i);
             }
         }
 
-        // Update optimized productions
-        optimizedProductions.put(nonTerminal, newProductions);
-        optimizedProductions.put(newNonTerminal, suffixProductions);
-
-        System.out.println("Regola fattorizzata:");
-        System.out.println(nonTerminal + " ::= " + formatOptimizedProduction(newProductions) + " ;");
-        System.out.println(newNonTerminal + " ::= " + formatOptimizedProduction(suffixProductions) + " ;");
+        List<List<Integer>> groups = new ArrayList<>();
+        for (List<Integer> group : byFirstSymbol.values()) {
+            if (group.size() < 2) {
+                continue;
+            }
+            List<List<String>> groupProductions = new ArrayList<>();
+            for (int index : group) {
+                groupProductions.add(productions.get(index));
+            }
+            if (!findLongestCommonPrefix(groupProductions).isEmpty()) {
+                groups.add(group);
+            }
+        }
+        return groups;
     }
 
     private List<String> findLongestCommonPrefix(List<List<String>> productions) {
@@ -399,7 +1165,22 @@ public class SemanticVisitor extends G2JBaseVisitor<Void> {
                 break;
             }
         }
-        return commonPrefix;
+
+        // The prefix cannot end inside a block: cut it back to the last complete element
+        int depth = 0;
+        int length = 0;
+        for (int i = 0; i < commonPrefix.size(); i++) {
+            String symbol = commonPrefix.get(i);
+            if (symbol.equals("(") || symbol.equals("[") || symbol.equals("{")) {
+                depth++;
+            } else if (symbol.equals(")") || symbol.equals("]") || symbol.equals("}")) {
+                depth--;
+            }
+            if (depth == 0) {
+                length = i + 1;
+            }
+        }
+        return commonPrefix.subList(0, length);
     }
 
     private List<String> getCommonPrefix(List<String> list1, List<String> list2) {
@@ -415,20 +1196,316 @@ public class SemanticVisitor extends G2JBaseVisitor<Void> {
         return prefix;
     }
 
+    // ============================== OTTIMIZZAZIONE PARALLELA ===================================
+
+    private Collection<String> getScope() {
+        return scope != null ? scope : symbolTable.getDefinedNonTerminals();
+    }
+
+    /**
+     * Applica un passo di ottimizzazione a gruppi di componenti indipendenti in parallelo.
+     * Le regole interagiscono solo all'interno dei cicli del grafo dei left corner (ricorsione
+     * sinistra indiretta): ogni altra regola, insieme alle regole create a partire da essa,
+     * viene ottimizzata da sola. Ogni gruppo di componenti è ottimizzato su una copia delle proprie
+     * regole in un ForkJoinPool e i risultati, compresi i messaggi sulla console, vengono riuniti
+     * nell'ordine delle componenti, così l'output non dipende dallo scheduling dei thread.
+     * Le grammatiche con meno di RULES_PER_TASK regole vengono ottimizzate sul thread chiamante.
+     */
+    private void forEachComponent(Consumer<SemanticVisitor> pass) {
+        if (scope != null) {
+            pass.accept(this);
+            return;
+        }
+
+        // Left-corner cycles in order of definition, every group with at least RULES_PER_TASK rules
+        Set<String> nonTerminals = new LinkedHashSet<>();
+        for (String nonTerminal : symbolTable.getOrderedNonTerminals()) {
+            if (optimizedProductions.containsKey(nonTerminal)) {
+                nonTerminals.add(nonTerminal);
+            }
+        }
+        List<List<String>> groups = new ArrayList<>();
+        List<String> group = new ArrayList<>();
+        for (List<String> component : StronglyConnectedComponents.compute(nonTerminals, this::getLeftCorners)) {
+            group.addAll(component);
+            if (group.size() >= RULES_PER_TASK) {
+                groups.add(group);
+                group = new ArrayList<>();
+            }
+        }
+        if (!group.isEmpty()) {
+            groups.add(group);
+        }
+        if (groups.size() < 2) {
+            pass.accept(this);
+            return;
+        }
+
+        Map<String, List<String>> derivedByRule = new HashMap<>();
+        for (Map.Entry<String, String> entry : derivedFrom.entrySet()) {
+            derivedByRule.computeIfAbsent(entry.getValue(), k -> new ArrayList<>()).add(entry.getKey());
+        }
+        List<SemanticVisitor> forks = new ArrayList<>();
+        for (List<String> rules : groups) {
+            forks.add(new SemanticVisitor(this, rules, derivedByRule));
+        }
+
+        ForkJoinPool.commonPool().invoke(new OptimizationTask(forks, pass));
+
+        for (SemanticVisitor fork : forks) {
+            merge(fork);
+        }
+    }
+
+    /**
+     * Riporta nel visitor i risultati di un gruppo di componenti ottimizzato in parallelo
+     */
+    private void merge(SemanticVisitor fork) {
+        optimizedProductions.putAll(fork.optimizedProductions);
+        newNonTerminals.addAll(fork.newNonTerminals);
+        derivedFrom.putAll(fork.derivedFrom);
+        parentOf.putAll(fork.parentOf);
+        recursiveRules.addAll(fork.recursiveRules);
+        numRecursionSymbols += fork.numRecursionSymbols;
+        grammarModified |= fork.grammarModified;
+        out.print(fork.log.toString(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Applies a pass to a list of visitors, splitting it in halves until a single visitor is left
+     */
+    private static class OptimizationTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final List<SemanticVisitor> forks;
+        private final Consumer<SemanticVisitor> pass;
+
+        OptimizationTask(List<SemanticVisitor> forks, Consumer<SemanticVisitor> pass) {
+            this.forks = forks;
+            this.pass = pass;
+        }
+
+        @Override
+        protected void compute() {
+            if (forks.size() == 1) {
+                pass.accept(forks.get(0));
+                return;
+            }
+            int middle = forks.size() / 2;
+            invokeAll(new OptimizationTask(forks.subList(0, middle), pass),
+                    new OptimizationTask(forks.subList(middle, forks.size()), pass));
+        }
+    }
+
     // ============================== GENERAZIONE INPUT OTTIMIZZATO ===================================
 
     public void optimizeInput() {
+        optimizeInput(Collections.emptyMap());
+    }
+
+    /**
+     * Ottimizza la grammatica riusando i risultati già disponibili per alcune regole
+     * (ad esempio dalla cache incrementale): le ottimizzazioni vengono applicate solo
+     * alle regole non presenti in reused.
+     *
+     * @param reused Optimization results to reuse, by non-terminal of the input
+     */
+    public void optimizeInput(Map<String, OptimizedRule> reused) {
         // Initialize optimized productions with original ones
         optimizedProductions = new HashMap<>(symbolTable.getAllProductions());
+        reusedRules = reused;
+
+        for (OptimizedRule rule : reused.values()) {
+            optimizedProductions.putAll(rule.getRules());
+            for (String name : rule.getRules().keySet()) {
+                reusedByName.put(name, rule);
+            }
+            if (rule.getRecursionSymbols() > 0) {
+                numRecursionSymbols += rule.getRecursionSymbols();
+                recursiveRules.add(rule.getName());
+            }
+        }
 
         // Apply optimizations
+        detectPrecedenceChains();
         eliminateLeftRecursion();
+        eliminateRightRecursion();
+        inlineRules();
         factorizeCommonPrefixes();
+        eliminateUnreachableRules();
+    }
+
+    /**
+     * Individua le catene di precedenza degli operatori binari dell'input: le regole che
+     * le iniziano non vengono ottimizzate, ma generate come un'unica regola dagli emitter.
+     */
+    public void detectPrecedenceChains() {
+        precedenceChains = PrecedenceChains.detect(symbolTable.getAllProductions(), symbolTable::isTerminal);
+        for (PrecedenceChain chain : precedenceChains.values()) {
+            out.println("\n⚠️ Catena di precedenza rilevata per - " + chain.getName() + ": " + chain);
+            grammarModified = true;
+        }
+    }
+
+    /**
+     * Registra i non terminali creati in precedenza a partire da una regola riusata,
+     * nello stesso punto dell'ottimizzazione in cui verrebbero creati, così che
+     * l'ordine delle regole generate non cambi.
+     *
+     * @return Non-terminals restored
+     */
+    private List<String> restoreDerivedNonTerminals(String rule, boolean recursionTails) {
+        OptimizedRule reused = reusedByName.get(rule);
+        String tail = rule.replace(">", "Tail>");
+        List<String> restored = new ArrayList<>();
+        for (String derived : reused.getChildren(rule)) {
+            if (derived.equals(tail) != recursionTails) {
+                continue;
+            }
+            newNonTerminals.add(derived);
+            derivedFrom.put(derived, reused.getName());
+            parentOf.put(derived, rule);
+            grammarModified = true;
+            restored.add(derived);
+        }
+        return restored;
+    }
+
+    /**
+     * Restituisce il risultato dell'ottimizzazione di una regola dell'input,
+     * comprese le regole create a partire da essa.
+     *
+     * @param nonTerminal Non-terminal of the input grammar
+     * @return Optimization result, or null if the rule has no productions
+     */
+    public OptimizedRule getOptimizedRule(String nonTerminal) {
+        List<List<String>> productions = optimizedProductions.get(nonTerminal);
+        if (productions == null) {
+            return null;
+        }
+
+        Map<String, List<List<String>>> rules = new LinkedHashMap<>();
+        Map<String, String> parents = new LinkedHashMap<>();
+        rules.put(nonTerminal, productions);
+        for (Map.Entry<String, String> entry : derivedFrom.entrySet()) {
+            if (entry.getValue().equals(nonTerminal) && optimizedProductions.containsKey(entry.getKey())) {
+                rules.put(entry.getKey(), optimizedProductions.get(entry.getKey()));
+                parents.put(entry.getKey(), parentOf.get(entry.getKey()));
+            }
+        }
+        return new OptimizedRule(nonTerminal, rules, parents, recursiveRules.contains(nonTerminal) ? 1 : 0,
+                inlinedProductions.get(nonTerminal));
+    }
+
+    /**
+     * Sets how left recursion is eliminated: with {[ ]} loops, so that the generated
+     * parsers iterate in constant stack depth, or with right-recursive Tail rules
+     * @param leftRecursionLoops True for the loops, false for the Tail rules (default)
+     */
+    public void setLeftRecursionLoops(boolean leftRecursionLoops) {
+        this.leftRecursionLoops = leftRecursionLoops;
+    }
+
+    /**
+     * Gets the symbol table built from the input grammar
+     * @return Symbol table
+     */
+    public SymbolTable getSymbolTable() {
+        return symbolTable;
+    }
+
+    /**
+     * Costruisce la rappresentazione in memoria della grammatica ottimizzata,
+     * da passare direttamente ai generatori di JavaCC e ANTLR.
+     * Se optimizeInput() non è stato invocato, viene restituita la grammatica originale.
+     */
+    public GrammarIR getOptimizedGrammar() {
+        GrammarIRBuilder builder = new GrammarIRBuilder();
+
+        // Lexical rules first
+        for (String terminal : symbolTable.getOrderedTerminals()) {
+            String ruleDef = symbolTable.getTerminalDefinition(terminal);
+            if (ruleDef != null) {
+                builder.addLexicalRule(terminal, ruleDef, lexRuleContexts.get(terminal));
+            }
+        }
 
-        // Generate optimized file if modifications were made
-        if (grammarModified) {
-            generateOptimizedGrammarFile();
+        // Parsing rules, without the ones that <Program> no longer reaches
+        for (Map.Entry<String, List<List<String>>> rule : getEmittedRules().entrySet()) {
+            String nonTerminal = rule.getKey();
+            List<List<String>> prods = rule.getValue();
+            if (nonTerminal.equals("<Program>")) {
+                // EOF is not kept in the symbol table: add it back at the end of the <Program> rule
+                prods = new ArrayList<>(prods);
+                List<String> last = new ArrayList<>(prods.get(prods.size() - 1));
+                last.add("EOF");
+                prods.set(prods.size() - 1, last);
+            }
+            builder.addParserRule(nonTerminal, prods, precedenceChains.get(nonTerminal));
         }
+
+        return builder.build();
+    }
+
+    /**
+     * Parsing rules of the optimized grammar, in the order they are generated: the ones
+     * that &lt;Program&gt; no longer reaches and the ones without productions are left out
+     */
+    private Map<String, List<List<String>>> getEmittedRules() {
+        Map<String, List<List<String>>> productions =
+                optimizedProductions.isEmpty() ? symbolTable.getAllProductions() : optimizedProductions;
+        Map<String, List<List<String>>> rules = new LinkedHashMap<>();
+        for (String nonTerminal : getOptimizedNonTerminals()) {
+            if (unreachableRules.contains(nonTerminal)) {
+                continue;
+            }
+            List<List<String>> prods = productions.get(nonTerminal);
+            if (prods != null && !prods.isEmpty()) {
+                rules.put(nonTerminal, prods);
+            }
+        }
+        return rules;
+    }
+
+    /**
+     * Productions of the generated parsing rules, with the precedence chains as the emitters render them
+     */
+    private Map<String, List<List<String>>> getEmittedProductions() {
+        Map<String, List<List<String>>> rules = getEmittedRules();
+        for (Map.Entry<String, List<List<String>>> rule : rules.entrySet()) {
+            PrecedenceChain chain = precedenceChains.get(rule.getKey());
+            if (chain != null) {
+                rule.setValue(chain.getProductions());
+            }
+        }
+        return rules;
+    }
+
+    /**
+     * Parsing rules in original order, then the non-terminals created during optimization,
+     * by input rule they come from and by name: the order does not depend on the order
+     * in which the passes, possibly in parallel, created them
+     */
+    private List<String> getOptimizedNonTerminals() {
+        List<String> nonTerminals = new ArrayList<>();
+        for (String nonTerminal : symbolTable.getOrderedNonTerminals()) {
+            if (!newNonTerminals.contains(nonTerminal)) {
+                nonTerminals.add(nonTerminal);
+            }
+        }
+        List<String> created = new ArrayList<>(newNonTerminals);
+        created.sort(Comparator.comparingInt((String nonTerminal) ->
+                symbolTable.getId(derivedFrom.getOrDefault(nonTerminal, nonTerminal)))
+                .thenComparing(Comparator.naturalOrder()));
+        nonTerminals.addAll(created);
+        return nonTerminals;
+    }
+
+    /**
+     * Indica se le ottimizzazioni hanno modificato la grammatica di input.
+     */
+    public boolean isGrammarModified() {
+        return grammarModified;
     }
 
     /**
@@ -460,47 +1537,13 @@ public class SemanticVisitor extends G2JBaseVisitor<Void> {
         return sb.toString();
     }
 
-    private void generateOptimizedGrammarFile() {
-        try (java.io.PrintWriter writer = new java.io.PrintWriter(new java.io.FileWriter("output/optimized_input.txt"))) {
-            // Write lexical rules first
-            for (String terminal : symbolTable.getOrderedTerminals()) {
-                String ruleDef = symbolTable.getTerminalDefinition(terminal);
-                writer.println(terminal + "::=" + ruleDef + ";");
-            }
-
-            writer.println(); // Add blank line between lexical and parsing rules
-
-            // Write parsing rules in original order
-            for (String nonTerminal : symbolTable.getOrderedNonTerminals()) {
-                // Skip new non-terminals created during optimization
-                if (newNonTerminals.contains(nonTerminal)) {
-                    continue;
-                }
-
-                List<List<String>> prods = optimizedProductions.get(nonTerminal);
-                if (prods != null && !prods.isEmpty()) {
-                    writer.print(nonTerminal + " ::= ");
-                    if (nonTerminal.equals("<Program>")) {
-                        // Manually add EOF to <Program> rule
-                        writer.print(formatOptimizedProduction(prods) + " EOF");
-                    } else {
-                        writer.print(formatOptimizedProduction(prods));
-                    }
-                    writer.println(" ;");
-                }
-            }
-
-            // Write new non-terminals created during optimization
-            for (String newNonTerminal : newNonTerminals) {
-                List<List<String>> prods = optimizedProductions.get(newNonTerminal);
-                if (prods != null && !prods.isEmpty()) {
-                    writer.print(newNonTerminal + " ::= ");
-                    writer.print(formatOptimizedProduction(prods));
-                    writer.println(" ;");
-                }
-            }
-
-            System.out.println("\n✅ Grammatica ottimizzata salvata nel file: " + "output/optimized_input.txt");
+    /**
+     * Salva la grammatica ottimizzata in formato EBNF (utile per il debug).
+     */
+    public void writeOptimizedGrammarFile(String fileName) {
+        try (BufferedWriter writer = Files.newBufferedWriter(Paths.get(fileName), StandardCharsets.UTF_8)) {
+            getOptimizedGrammar().writeTo(writer);
+            out.println("\n✅ Grammatica ottimizzata salvata nel file: " + fileName);
         } catch (IOException e) {
             System.err.println("Errore durante la scrittura del file di grammatica ottimizzata: " + e.getMessage());
         }
@@ -509,187 +1552,99 @@ public class SemanticVisitor extends G2JBaseVisitor<Void> {
     // ============================== CALCOLO DELLE METRICHE DI VALUTAZIONE ===================================
 
     /**
-     * Calcola la complessità di McCabe della grammatica.
-     * La complessità aumenta di 1 per ogni:
-     * - Scelta (operatore |)
-     * - Ripetizione (parentesi graffe {})
-     * - Opzionalità (parentesi quadre [])
-     * - Raggruppamento (parentesi tonde ())
-     *
-     * @param productionsMap Le produzioni da analizzare
-     * @return La complessità di McCabe
-     */
-    private int calculateMcCabeForProductions(Map<String, List<List<String>>> productionsMap) {
-        int complexity = 1; // Valore base
-
-        // Conta le scelte (|) nelle produzioni
-        for (String nonTerminal : productionsMap.keySet()) {
-            List<List<String>> productionList = productionsMap.get(nonTerminal);
-            if (productionList != null && productionList.size() > 1) {
-                // Ogni produzione alternativa (oltre la prima) aumenta la complessità di 1
-                complexity += productionList.size() - 1;
-            }
-
-            // Analizza ogni produzione per elementi di complessità
-            if (productionList != null) {
-                for (List<String> production : productionList) {
-                    // Conta le strutture di controllo all'interno di ogni produzione
-                    int openRepOptBrackets = 0;
-                    int openSquareBrackets = 0;
-                    int openCurlyBrackets = 0;
-
-                    for (int i = 0; i < production.size(); i++) {
-                        String current = production.get(i);
-
-                        // Controlla se possiamo accedere all'elemento successivo
-                        boolean hasNext = i < production.size() - 1;
-
-                        // Conta i raggruppamenti (parentesi tonde)
-                        if (hasNext && current.equals("{") && production.get(i+1).equals("[")) {
-                            openRepOptBrackets++;
-                            i++; // Saltiamo il prossimo elemento perché già processato
-                        }
-                        else if (hasNext && current.equals("]") && production.get(i+1).equals("}")) {
-                            if (openRepOptBrackets > 0) {
-                                complexity++; // Aumenta la complessità per ogni coppia di parentesi tonde
-                                openRepOptBrackets--;
-                            }
-                            i++; // Saltiamo il prossimo elemento perché già processato
-                        }
-                        // Conta le opzionalità (parentesi quadre)
-                        else if (current.equals("[")) {
-                            openSquareBrackets++;
-                        }
-                        else if (current.equals("]")) {
-                            if (openSquareBrackets > 0) {
-                                complexity++; // Aumenta la complessità per ogni coppia di parentesi quadre
-                                openSquareBrackets--;
-                            }
-                        }
-                        // Conta le ripetizioni (parentesi graffe)
-                        else if (current.equals("{")) {
-                            openCurlyBrackets++;
-                        }
-                        else if (current.equals("}")) {
-                            if (openCurlyBrackets > 0) {
-                                complexity++; // Aumenta la complessità per ogni coppia di parentesi graffe
-                                openCurlyBrackets--;
-                            }
-                        }
-                        // Controlla anche per le parentesi nel testo (come nelle regole ottimizzate)
-                        else if (current.startsWith("[") && current.endsWith("]")) {
-                            complexity++; // Opzionalità incorporata
-                        }
+     * Stima la profondità di chiamata del parser generato: il numero massimo di regole annidate
+     * lungo un cammino da &lt;Program&gt;, contando una sola volta le regole di un ciclo.
+     */
+    private int estimateCallDepth(Map<String, List<List<String>>> productionsMap) {
+        Function<String, List<String>> successors = nonTerminal -> {
+            List<String> referenced = new ArrayList<>();
+            for (List<String> production : productionsMap.getOrDefault(nonTerminal, Collections.emptyList())) {
+                referenced.addAll(getReferencedRules(production));
+            }
+            return referenced;
+        };
+        List<List<String>> components =
+                StronglyConnectedComponents.compute(new LinkedHashSet<>(productionsMap.keySet()), successors);
+
+        // Components come sinks first, so the depth of every successor is already known
+        Map<String, Integer> depths = new HashMap<>();
+        for (List<String> component : components) {
+            int depth = 0;
+            for (String member : component) {
+                for (String successor : successors.apply(member)) {
+                    // Rules of the same component have no depth yet
+                    if (depths.containsKey(successor)) {
+                        depth = Math.max(depth, depths.get(successor));
                     }
                 }
             }
+            for (String member : component) {
+                depths.put(member, depth + 1);
+            }
         }
-        return complexity;
+        return depths.getOrDefault("<Program>", 0);
     }
 
     /**
-     * Calcola le metriche per l'input originale e ottimizzato
+     * Calcola le metriche per l'input originale e ottimizzato, con una sola visita di ciascun insieme di produzioni
      */
     public void calcMetrics() {
         // Calcola le metriche per l'input originale
-        Set<String> definedNonTerminals = symbolTable.getDefinedNonTerminals();
-        Set<String> definedTerminals = symbolTable.getDefinedTerminals();
+        int nonTerminalCount = symbolTable.getDefinedNonTerminals().size();
+        int terminalCount = symbolTable.getDefinedTerminals().size();
         Map<String, List<List<String>>> productions = symbolTable.getAllProductions();
+        originalMetrics = GrammarMetrics.compute(productions, nonTerminalCount, terminalCount);
+
+        out.println("\n📐CALCOLO DELLE METRICHE SULL'INPUT ORIGINALE");
+        printMetrics(originalMetrics);
+        out.println("Numero di simboli ricorsivi rilevati: " + numRecursionSymbols);
+        out.println("Complessità di McCabe della grammatica originale: " + originalMetrics.getMcCabeComplexity());
+        int originalCallDepth = estimateCallDepth(productions);
+        out.println("Profondità di chiamata stimata della grammatica originale: " + originalCallDepth);
+
+        // Calcola le metriche sulle regole generate: senza le regole non più raggiungibili, tra cui
+        // quelle copiate dall'inlining e i livelli interni delle catene di precedenza
+        Map<String, List<List<String>>> emittedProductions = getEmittedProductions();
+        optimizedMetrics = GrammarMetrics.compute(emittedProductions, emittedProductions.size(),
+                terminalCount); // I terminali non cambiano
+        int emittedCallDepth = estimateCallDepth(emittedProductions);
+
+        out.println("\n📐CALCOLO DELLE METRICHE SULL'INPUT OTTIMIZZATO");
+        printMetrics(optimizedMetrics);
+        out.println("Complessità di McCabe della grammatica ottimizzata: " + optimizedMetrics.getMcCabeComplexity());
+        out.println("Profondità di chiamata stimata della grammatica ottimizzata: " + emittedCallDepth);
+        // Le regole Suffix e Tail possono aggiungere livelli, l'inlining ne toglie
+        out.println("Variazione stimata della profondità di chiamata: "
+                + String.format(Locale.ROOT, "%+d", emittedCallDepth - originalCallDepth) + " livelli ("
+                + originalCallDepth + " -> " + emittedCallDepth + ")");
+    }
 
-        System.out.println("\n📐CALCOLO DELLE METRICHE SULL'INPUT ORIGINALE");
-        System.out.println("Numero dei simboli non terminali: " + definedNonTerminals.size());
-        System.out.println("Numero dei simboli terminali: " + definedTerminals.size());
-
-        // Calcola il numero totale di produzioni per l'input originale
-        double totalOriginalProductions = 0;
-        int totalOriginalUnitProductions = 0; // Contatore per produzioni unitarie
-        int originalRHSMax = 0; // Contatore per RHS max
-        int sumProductionLength = 0;
-        Set<String> delimiters = new HashSet<>(Arrays.asList("(", ")", "[", "]", "{", "}"));
-
-        for (List<List<String>> productionList : productions.values()) {
-            totalOriginalProductions += productionList.size();
-            for (List<String> production : productionList) {
-                // Count actual elements (excluding delimiters)
-                int actualElements = 0;
-                for (String element : production) {
-                    if (!delimiters.contains(element)) {
-                        actualElements++;
-                    }
-                }
-
-                if (actualElements == 1) {
-                    totalOriginalUnitProductions++;
-                }
-                if (actualElements > originalRHSMax) {
-                    originalRHSMax = actualElements;
-                }
-                sumProductionLength += actualElements;
-            }
-        }
-
-        // Calcola la quantità di simboli terminali e non terminali media delle produzioni sul lato destro
-        double RHSMean = (sumProductionLength+1) / totalOriginalProductions;
-
-        double alt = totalOriginalProductions / definedNonTerminals.size(); // media del numero di alternative per regola
-
-        System.out.println("Numero di regole di produzione: " + totalOriginalProductions);
-        System.out.println("Numero di produzioni unitarie: " + (totalOriginalUnitProductions-1));
-        System.out.println("RHS max: " + originalRHSMax);
-        System.out.println("RHS mean: " + RHSMean);
-        System.out.println("ALT: " + alt);
-        System.out.println("Numero di simboli ricorsivi rilevati: " + numRecursionSymbols);
-
-        int originalComplexity = calculateMcCabeForProductions(productions);
-        System.out.println("Complessità di McCabe della grammatica originale: " + originalComplexity);
-
-        // Calcola le metriche per l'input ottimizzato
-        System.out.println("\n📐CALCOLO DELLE METRICHE SULL'INPUT OTTIMIZZATO");
-
-        // Include both original non-terminals and newly created ones
-        Set<String> optimizedNonTerminals = new HashSet<>(definedNonTerminals);
-        optimizedNonTerminals.addAll(newNonTerminals);
-
-        System.out.println("Numero dei simboli non terminali: " + optimizedNonTerminals.size());
-        System.out.println("Numero dei simboli terminali: " + definedTerminals.size()); // I terminali non cambiano
-
-        // Calcola il numero totale di produzioni per l'input ottimizzato
-        double totalOptimizedProductions = 0;
-        int totalOptimizedUnitProductions = 0; // Contatore per produzioni unitarie
-        int optimizedRHSMax = 0; // Contatore per RHS max
-        int sumProductionLengthOpt = 0;
-
-        for (List<List<String>> productionList : optimizedProductions.values()) {
-            totalOptimizedProductions += productionList.size();
-            for (List<String> production : productionList) {
-                int actualElements = 0;
-                for (String element : production) {
-                    if (!delimiters.contains(element)) {
-                        actualElements++;
-                    }
-                }
-                if (actualElements == 1) { // Produzione unitaria
-                    totalOptimizedUnitProductions++;
-                }
-                if (actualElements > optimizedRHSMax) { // Aggiorna RHS max
-                    optimizedRHSMax = actualElements;
-                }
-
-                sumProductionLengthOpt += actualElements;
-            }
-        }
-
-        double OptimizedRHSMean = (double) (sumProductionLengthOpt + 1) / totalOptimizedProductions;
-
-        double alt_opt = totalOptimizedProductions / optimizedNonTerminals.size();
+    /**
+     * Stampa le metriche così come vengono scritte nel report di --metrics, senza correzioni
+     */
+    private void printMetrics(GrammarMetrics metrics) {
+        out.println("Numero dei simboli non terminali: " + metrics.getNonTerminalCount());
+        out.println("Numero dei simboli terminali: " + metrics.getTerminalCount());
+        out.println("Numero di regole di produzione: " + metrics.getProductionCount());
+        out.println("Numero di produzioni unitarie: " + metrics.getUnitProductionCount());
+        out.println("RHS max: " + metrics.getRhsMax());
+        out.println("RHS mean: " + metrics.getRhsMean());
+        out.println("ALT: " + metrics.getAlt());
+    }
 
-        System.out.println("Numero di regole di produzione: " + totalOptimizedProductions);
-        System.out.println("Numero di produzioni unitarie: " + (totalOptimizedUnitProductions-1));
-        System.out.println("RHS max: " + optimizedRHSMax);
-        System.out.println("RHS mean: " + OptimizedRHSMean);
-        System.out.println("ALT: " + alt_opt);
+    /**
+     * Gets the metrics of the input grammar computed by {@link #calcMetrics()}
+     * @return Metrics of the input productions, null before the computation
+     */
+    public GrammarMetrics getOriginalMetrics() {
+        return originalMetrics;
+    }
 
-        int optimizedComplexity = calculateMcCabeForProductions(optimizedProductions);
-        System.out.println("Complessità di McCabe della grammatica ottimizzata: " + optimizedComplexity);
+    /**
+     * Gets the metrics of the optimized grammar computed by {@link #calcMetrics()}
+     * @return Metrics of the generated parsing rules, null before the computation
+     */
+    public GrammarMetrics getOptimizedMetrics() {
+        return optimizedMetrics;
     }
 }
\ No newline at end of file